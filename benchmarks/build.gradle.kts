@@ -0,0 +1,37 @@
+plugins {
+    java
+    id("me.champeau.jmh") version "0.7.2"
+}
+
+java {
+    toolchain {
+        languageVersion.set(JavaLanguageVersion.of(21))
+    }
+}
+
+repositories {
+    mavenCentral()
+    maven("https://repo.papermc.io/repository/maven-public/")
+}
+
+dependencies {
+    jmh(project(":lib"))
+    // У плагіні API надає сервер; для бенчмарків кладемо його на classpath самі
+    jmh("io.papermc.paper:paper-api:1.21.1-R0.1-SNAPSHOT")
+    jmh("org.xerial:sqlite-jdbc:3.46.1.3")
+    // Розмір графа об'єктів для UserFootprintBench
+    jmh("org.openjdk.jol:jol-core:0.17")
+}
+
+jmh {
+    jmhVersion.set("1.37")
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    // Бенчмарки збереження тримають у пам'яті до мільйона записів
+    jvmArgs.set(listOf("-Xms2g", "-Xmx6g"))
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("reports/jmh/results.json"))
+    // Окремий бенчмарк: ./gradlew :benchmarks:jmh -PjmhIncludes=PasswordHasherBench
+    providers.gradleProperty("jmhIncludes").orNull?.let { includes.add(it) }
+}
@@ -0,0 +1,71 @@
+package city.bit.auth.bench;
+
+import city.bit.auth.model.AuthState;
+import city.bit.auth.ui.AuthGate;
+import city.bit.auth.ui.AuthGateListener;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Вартість обробки одного PlayerMoveEvent при 200 гравцях онлайн.
+ * legacyMove — колишня перевірка через мапу станів на кожну подію;
+ * gatedMove — {@link AuthGateListener}. Коли неавторизованих немає,
+ * на сервері цей слухач узагалі не зареєстрований, а тут видно ціну
+ * раннього виходу, якщо подія все ж дійде до нього.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AuthGateBench {
+
+    private static final int ONLINE = 200;
+
+    @Param({"0", "1", "20"})
+    public int unauthenticated;
+
+    private PlayerMoveEvent[] events;
+    private AuthGateListener listener;
+    private final Map<UUID, AuthState> legacyState = new ConcurrentHashMap<>();
+    private int next;
+
+    @Setup
+    public void setup() {
+        AuthGate gate = new AuthGate(() -> {});
+        listener = new AuthGateListener(gate);
+        World world = BenchPlugin.world();
+        events = new PlayerMoveEvent[ONLINE];
+        for (int i = 0; i < ONLINE; i++) {
+            UUID id = new UUID(0, i);
+            Player p = BenchPlugin.player(id, "Player" + i);
+            AuthState st = i < unauthenticated ? AuthState.UNAUTH : AuthState.AUTHENTICATED;
+            gate.track(id, st, "ua");
+            legacyState.put(id, st);
+            // Лише поворот голови: позиція не змінюється, як і в більшості подій руху
+            events[i] = new PlayerMoveEvent(p, new Location(world, i, 64, 0, 0, 0), new Location(world, i, 64, 0, 90, 0));
+        }
+    }
+
+    @Benchmark
+    public PlayerMoveEvent legacyMove() {
+        PlayerMoveEvent e = events[next++ % ONLINE];
+        if (legacyState.getOrDefault(e.getPlayer().getUniqueId(), AuthState.UNAUTH) != AuthState.AUTHENTICATED) {
+            if (e.getFrom().distanceSquared(e.getTo()) > 0) e.setTo(e.getFrom());
+        }
+        return e;
+    }
+
+    @Benchmark
+    public PlayerMoveEvent gatedMove() {
+        PlayerMoveEvent e = events[next++ % ONLINE];
+        listener.onMove(e);
+        return e;
+    }
+}
@@ -0,0 +1,140 @@
+package city.bit.auth.bench;
+
+import city.bit.auth.config.AuthSettings;
+import city.bit.auth.model.UserRecord;
+import city.bit.auth.sec.HashingPool;
+import city.bit.auth.sec.PasswordHasher;
+import city.bit.auth.service.AuthService;
+import org.bukkit.plugin.Plugin;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AuthService.register/verify під конкуренцією 1, 4 та 16 потоків.
+ * Сховище — {@link MemoryUserStore}, а кількість ітерацій PBKDF2 знижена
+ * параметром, щоб на фоні хешування було видно витрати на блокування.
+ *
+ * Групи contended і readOnly перевіряють, що isRegistered/isBlocked
+ * лишаються без блокувань: пропускна здатність читачів у contended (поруч
+ * працюють два потоки реєстрації) має бути близькою до readOnly.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class AuthServiceBench {
+
+    // Кількість акаунтів, серед яких випадково обирається той, що входить
+    private static final int ACCOUNTS = 1024;
+
+    @Param({"1000", "120000"})
+    public int iterations;
+
+    private PasswordHasher hasher;
+    private String stored;
+    private Path folder;
+    private HashingPool pool;
+    private AuthService auth;
+    private final AtomicLong seq = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void hashOnce() {
+        hasher = new PasswordHasher("bench-pepper", "pbkdf2", iterations);
+        // Один хеш на всі акаунти: підготовка не повинна займати хвилини
+        stored = hasher.hash("secret");
+    }
+
+    // Сервіс перестворюється на кожну ітерацію, щоб реєстрації не роздували мапу
+    @Setup(Level.Iteration)
+    public void setup() throws Exception {
+        Map<String, UserRecord> seed = new HashMap<>();
+        for (int i = 0; i < ACCOUNTS; i++) seed.put("player" + i, new UserRecord("player" + i, stored, "pbkdf2", "ua"));
+        folder = BenchPlugin.tempFolder();
+        pool = new HashingPool(1, 16);
+        Plugin plugin = BenchPlugin.create(folder);
+        AuthSettings settings = AuthSettings.load(plugin.getConfig());
+        auth = new AuthService(plugin, () -> settings, hasher, pool, new MemoryUserStore(seed));
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        auth.close();
+        pool.shutdown(1000);
+        BenchPlugin.deleteRecursively(folder);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String register1() {
+        return register();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String register4() {
+        return register();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public String register16() {
+        return register();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean verify1() {
+        return verify();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean verify4() {
+        return verify();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public boolean verify16() {
+        return verify();
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(8)
+    public boolean contendedRead() {
+        return lookup();
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(2)
+    public String contendedRegister() {
+        return register();
+    }
+
+    @Benchmark
+    @Group("readOnly")
+    @GroupThreads(8)
+    public boolean readOnlyRead() {
+        return lookup();
+    }
+
+    private boolean lookup() {
+        String nick = "player" + ThreadLocalRandom.current().nextInt(ACCOUNTS);
+        return auth.isRegistered(nick) && !auth.isBlocked(nick);
+    }
+
+    private String register() {
+        return auth.register("new" + seq.incrementAndGet(), "secret", "ua");
+    }
+
+    private boolean verify() {
+        return auth.verify("player" + ThreadLocalRandom.current().nextInt(ACCOUNTS), "secret");
+    }
+}
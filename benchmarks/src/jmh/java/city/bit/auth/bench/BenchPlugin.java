@@ -0,0 +1,113 @@
+package city.bit.auth.bench;
+
+import org.bukkit.World;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Заглушки Bukkit для бенчмарків: сервісам плагіна потрібен лише
+ * {@link Plugin} із конфігурацією, логером та папкою даних, тож
+ * сервер для вимірювань не потрібен.
+ */
+final class BenchPlugin {
+
+    private BenchPlugin() {}
+
+    /**
+     * Створює {@link Plugin} поверх тимчасової папки. Конфігурація — це
+     * config.yml з jar плагіна, поверх якого накладаються пари ключ/значення.
+     */
+    static Plugin create(Path dataFolder, Object... overrides) {
+        YamlConfiguration cfg = new YamlConfiguration();
+        try (InputStream in = BenchPlugin.class.getResourceAsStream("/config.yml")) {
+            if (in != null) cfg.loadFromString(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        } catch (Exception ex) {
+            throw new IllegalStateException("Cannot read config.yml", ex);
+        }
+        for (int i = 0; i + 1 < overrides.length; i += 2) cfg.set((String) overrides[i], overrides[i + 1]);
+        Logger log = Logger.getLogger("BitCityAuth-bench");
+        log.setLevel(Level.WARNING);
+        File folder = dataFolder.toFile();
+        return (Plugin) Proxy.newProxyInstance(Plugin.class.getClassLoader(), new Class<?>[]{Plugin.class},
+                (proxy, m, args) -> switch (m.getName()) {
+                    case "getConfig" -> cfg;
+                    case "getLogger" -> log;
+                    case "getDataFolder" -> folder;
+                    case "getName" -> "BitCityAuth";
+                    case "isEnabled" -> true;
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "BenchPlugin[" + folder + "]";
+                    default -> throw new UnsupportedOperationException("Not stubbed: " + m.getName());
+                });
+    }
+
+    /** Гравець-заглушка: відповідає лише на getUniqueId та getName. */
+    static Player player(UUID id, String name) {
+        return (Player) Proxy.newProxyInstance(Player.class.getClassLoader(), new Class<?>[]{Player.class},
+                (proxy, m, args) -> switch (m.getName()) {
+                    case "getUniqueId" -> id;
+                    case "getName" -> name;
+                    case "isOnline" -> true;
+                    case "hashCode" -> id.hashCode();
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "BenchPlayer[" + name + "]";
+                    default -> throw new UnsupportedOperationException("Not stubbed: " + m.getName());
+                });
+    }
+
+    /** Світ-заглушка для Location: порівнюється лише за посиланням. */
+    static World world() {
+        return (World) Proxy.newProxyInstance(World.class.getClassLoader(), new Class<?>[]{World.class},
+                (proxy, m, args) -> switch (m.getName()) {
+                    case "getName" -> "bench";
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "BenchWorld";
+                    default -> throw new UnsupportedOperationException("Not stubbed: " + m.getName());
+                });
+    }
+
+    /** Копіює ресурс із jar плагіна у папку даних (наприклад, messages_ua.yml). */
+    static void copyResource(Path dataFolder, String name) {
+        try (InputStream in = BenchPlugin.class.getResourceAsStream("/" + name)) {
+            if (in == null) throw new IllegalStateException("Missing resource " + name);
+            Files.copy(in, dataFolder.resolve(name), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    static Path tempFolder() {
+        try {
+            return Files.createTempDirectory("bcauth-bench");
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    static void deleteRecursively(Path dir) {
+        if (dir == null || !Files.exists(dir)) return;
+        try (Stream<Path> s = Files.walk(dir)) {
+            s.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
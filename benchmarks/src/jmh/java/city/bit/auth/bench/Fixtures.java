@@ -0,0 +1,42 @@
+package city.bit.auth.bench;
+
+import city.bit.auth.model.SessionRecord;
+import city.bit.auth.model.UserRecord;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/** Генератори синтетичних записів для бенчмарків збереження. */
+final class Fixtures {
+
+    // Хеш справжнього формату, щоб розмір записів на диску був реалістичним
+    static final String HASH = "pbkdf2:120000:c2FsdHNhbHRzYWx0c2FsdA==:ZGVyaXZlZGtleWRlcml2ZWRrZXlkZXJpdmVka2V5ISE=";
+
+    private Fixtures() {}
+
+    static Map<String, UserRecord> users(int n) {
+        Map<String, UserRecord> m = new HashMap<>(n * 2);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < n; i++) {
+            UserRecord u = new UserRecord("Player" + i, HASH, "pbkdf2", (i & 1) == 0 ? "ua" : "en");
+            u.lastLoginAt = now - i * 1000L;
+            m.put("player" + i, u);
+        }
+        return m;
+    }
+
+    static Map<String, SessionRecord> sessions(int n) {
+        Map<String, SessionRecord> m = new HashMap<>(n * 2);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < n; i++) {
+            SessionRecord s = new SessionRecord();
+            s.nickname = "Player" + i;
+            s.token = "token-" + i;
+            s.lastIp = "10." + (i >>> 16 & 255) + "." + (i >>> 8 & 255) + "." + (i & 255);
+            s.createdAt = now;
+            s.expiresAt = now + 14L * 24 * 3600_000L;
+            m.put("player" + i, s);
+        }
+        return m;
+    }
+}
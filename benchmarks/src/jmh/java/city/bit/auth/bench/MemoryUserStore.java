@@ -0,0 +1,31 @@
+package city.bit.auth.bench;
+
+import city.bit.auth.model.UserRecord;
+import city.bit.auth.storage.UserStore;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Сховище, що нічого не пише на диск. Потрібне, щоб у бенчмарках
+ * AuthService вимірювались хешування та блокування, а не файлова система.
+ * Початкові записи віддаються сервісу при старті.
+ */
+final class MemoryUserStore implements UserStore {
+
+    private final Map<String, UserRecord> seed;
+
+    MemoryUserStore() { this(Collections.emptyMap()); }
+
+    MemoryUserStore(Map<String, UserRecord> seed) { this.seed = seed; }
+
+    @Override public void loadAll(Map<String, UserRecord> into) { into.putAll(seed); }
+    @Override public void loadIndex(BiConsumer<String, Boolean> sink) { seed.forEach((k, u) -> sink.accept(k, u.blocked)); }
+    @Override public UserRecord load(String key) { return seed.get(key); }
+    @Override public void save(String key, UserRecord u) {}
+    @Override public void saveLoginTime(String key, UserRecord u) {}
+    @Override public void saveBatch(Map<String, UserRecord> batch) {}
+    @Override public void flush() {}
+    @Override public void close() {}
+}
@@ -0,0 +1,42 @@
+package city.bit.auth.bench;
+
+import city.bit.auth.i18n.MessageBundle;
+import city.bit.auth.i18n.Msg;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/** Вартість одного перекладу {@link MessageBundle#t(Msg, String)}. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MessageBundleBench {
+
+    @Param({"ua", "en"})
+    public String lang;
+
+    private Path folder;
+    private MessageBundle bundle;
+    private final Msg[] keys = Msg.values();
+    private int next;
+
+    @Setup
+    public void setup() {
+        folder = BenchPlugin.tempFolder();
+        BenchPlugin.copyResource(folder, "messages_ua.yml");
+        BenchPlugin.copyResource(folder, "messages_en.yml");
+        bundle = new MessageBundle(BenchPlugin.create(folder), "ua");
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchPlugin.deleteRecursively(folder);
+    }
+
+    @Benchmark
+    public String translate() {
+        Msg key = keys[next++ % keys.length];
+        return bundle.t(key, lang);
+    }
+}
@@ -0,0 +1,88 @@
+package city.bit.auth.bench;
+
+import city.bit.auth.config.AuthSettings;
+import city.bit.auth.network.LocalSessionBus;
+import city.bit.auth.network.NetworkSessions;
+import city.bit.auth.sec.SessionTokens;
+import city.bit.auth.service.SessionService;
+import city.bit.auth.storage.Storage;
+import org.bukkit.plugin.Plugin;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Перехід гравця між двома вузлами мережі через {@link LocalSessionBus}
+ * (транспорт у тому ж процесі). login — вхід на вузлі A разом із розсилкою
+ * й застосуванням події на вузлі B; resume — перевірка автологіну на B, тобто
+ * лише локальний пошук і перевірка підпису токена.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class NetworkSessionBench {
+
+    private static final int PLAYERS = 10_000;
+    private static final byte[] SECRET = new byte[32];
+
+    private Path folderA;
+    private Path folderB;
+    private Storage storageA;
+    private Storage storageB;
+    private SessionService nodeA;
+    private SessionService nodeB;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        LocalSessionBus bus = new LocalSessionBus();
+        folderA = BenchPlugin.tempFolder();
+        folderB = BenchPlugin.tempFolder();
+        Plugin pluginA = plugin(folderA);
+        Plugin pluginB = plugin(folderB);
+        storageA = Storage.open(folderA.toFile(), AuthSettings.load(pluginA.getConfig()), pluginA.getLogger());
+        storageB = Storage.open(folderB.toFile(), AuthSettings.load(pluginB.getConfig()), pluginB.getLogger());
+        nodeA = node("a", pluginA, folderA, storageA, bus);
+        nodeB = node("b", pluginB, folderB, storageB, bus);
+        for (int i = 0; i < PLAYERS; i++) nodeA.createOrRefresh("Player" + i, "10.0.0.1");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        nodeA.close(60_000);
+        nodeB.close(60_000);
+        storageA.close();
+        storageB.close();
+        BenchPlugin.deleteRecursively(folderA);
+        BenchPlugin.deleteRecursively(folderB);
+    }
+
+    @Benchmark
+    public void login() {
+        nodeA.createOrRefresh("Player" + (next++ % PLAYERS), "10.0.0.1");
+    }
+
+    @Benchmark
+    public boolean resume() {
+        return nodeB.canResume("Player" + (next++ % PLAYERS), "10.0.0.1");
+    }
+
+    private static Plugin plugin(Path folder) {
+        // Таймер і поріг write-behind вимкнені: вимірюємо лише пам'ять і мережу
+        return BenchPlugin.create(folder,
+                "storage.sessions.flush_interval_seconds", 3600,
+                "storage.sessions.flush_dirty_threshold", Integer.MAX_VALUE);
+    }
+
+    private static SessionService node(String id, Plugin plugin, Path folder, Storage storage, LocalSessionBus bus)
+            throws Exception {
+        AuthSettings settings = AuthSettings.load(plugin.getConfig());
+        // Однаковий секрет на обох вузлах, як у справжній мережі
+        SessionTokens tokens = new SessionTokens(SECRET, folder.toFile());
+        return new SessionService(plugin, () -> settings, storage.sessions, tokens,
+                new NetworkSessions(id, bus.connect(), tokens, plugin.getLogger()));
+    }
+}
@@ -0,0 +1,72 @@
+package city.bit.auth.bench;
+
+import city.bit.auth.model.UserRecord;
+import city.bit.auth.sec.PasswordHasher;
+import org.openjdk.jmh.annotations.*;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Вартість PBKDF2 при різній кількості ітерацій: створення хешу
+ * та перевірка правильного й неправильного пароля.
+ * verifyJca — попередня реалізація через SecretKeyFactory для порівняння,
+ * verifyParsed — як у AuthService: хеш щоразу розпаковується з
+ * {@link UserRecord#parsedHash()} без Base64, кешу розібраного хешу немає.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PasswordHasherBench {
+
+    private static final String PEPPER = "bench-pepper";
+
+    @Param({"10000", "60000", "120000"})
+    public int iterations;
+
+    private PasswordHasher hasher;
+    private String stored;
+    private UserRecord record;
+
+    @Setup
+    public void setup() {
+        hasher = new PasswordHasher(PEPPER, "pbkdf2", iterations);
+        stored = hasher.hash("correct horse");
+        record = new UserRecord("Steve", stored, "pbkdf2", "ua");
+    }
+
+    @Benchmark
+    public String hash() {
+        return hasher.hash("correct horse");
+    }
+
+    @Benchmark
+    public boolean verifyOk() {
+        return hasher.verify("correct horse", stored);
+    }
+
+    @Benchmark
+    public boolean verifyWrong() {
+        return hasher.verify("battery staple", stored);
+    }
+
+    @Benchmark
+    public boolean verifyParsed() {
+        return hasher.verify("correct horse", record.parsedHash());
+    }
+
+    @Benchmark
+    public boolean verifyJca() throws Exception {
+        String[] parts = stored.split(":");
+        byte[] salt = Base64.getDecoder().decode(parts[2]);
+        byte[] expected = Base64.getDecoder().decode(parts[3]);
+        PBEKeySpec spec = new PBEKeySpec(("correct horse" + PEPPER).toCharArray(), salt,
+                Integer.parseInt(parts[1]), expected.length * 8);
+        byte[] dk = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+        int diff = 0;
+        for (int i = 0; i < dk.length; i++) diff |= dk[i] ^ expected[i];
+        return diff == 0;
+    }
+}
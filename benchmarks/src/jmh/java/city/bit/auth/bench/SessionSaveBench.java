@@ -0,0 +1,76 @@
+package city.bit.auth.bench;
+
+import city.bit.auth.config.AuthSettings;
+import city.bit.auth.sec.SessionTokens;
+import city.bit.auth.service.SessionService;
+import city.bit.auth.storage.Storage;
+import org.bukkit.plugin.Plugin;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link SessionService#saveNow()} на 10k, 100k та 1M сесій. Перед кожним
+ * викликом оновлюється {@link #CHANGED} сесій — приблизно стільки змін
+ * накопичується між тактами write-behind під час масового входу.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class SessionSaveBench {
+
+    private static final int CHANGED = 1000;
+    private static final byte[] BENCH_SECRET = new byte[32];
+
+    @Param({"10000", "100000", "1000000"})
+    public int records;
+
+    @Param({"yaml", "sqlite"})
+    public String backend;
+
+    private Path folder;
+    private Storage storage;
+    private SessionService sessions;
+    private int round;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        folder = BenchPlugin.tempFolder();
+        // Таймер і поріг write-behind вимкнені: записом керує лише saveNow
+        Plugin plugin = BenchPlugin.create(folder,
+                "storage.backend", backend,
+                "storage.sessions.write_behind", true,
+                "storage.sessions.flush_interval_seconds", 3600,
+                "storage.sessions.flush_dirty_threshold", Integer.MAX_VALUE);
+        AuthSettings settings = AuthSettings.load(plugin.getConfig());
+        Storage seed = Storage.open(folder.toFile(), settings, plugin.getLogger());
+        seed.sessions.saveBatch(Fixtures.sessions(records), Collections.emptySet());
+        seed.sessions.close();
+        seed.close();
+
+        storage = Storage.open(folder.toFile(), settings, plugin.getLogger());
+        sessions = new SessionService(plugin, () -> settings, storage.sessions, new SessionTokens(BENCH_SECRET, folder.toFile()));
+    }
+
+    @Setup(Level.Invocation)
+    public void touch() {
+        int base = (round++ * CHANGED) % records;
+        for (int i = 0; i < CHANGED; i++) sessions.createOrRefresh("Player" + ((base + i) % records), "10.0.0.1");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        sessions.close(60_000);
+        storage.close();
+        BenchPlugin.deleteRecursively(folder);
+    }
+
+    @Benchmark
+    public void saveNow() {
+        sessions.saveNow();
+    }
+}
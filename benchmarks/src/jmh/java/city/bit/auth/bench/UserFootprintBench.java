@@ -0,0 +1,107 @@
+package city.bit.auth.bench;
+
+import city.bit.auth.model.UserRecord;
+import city.bit.auth.sec.ParsedHash;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jol.info.ClassLayout;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Скільки купи займає один акаунт у звичайному (eager) режимі: мапа
+ * "ключ -> запис" з усіма рядками й масивами, пораховано JOL
+ * ({@link GraphLayout}). legacy — попередній UserRecord з хешем-рядком,
+ * algo/lang рядками, окремим рядком нікнейма та закешованим після входу
+ * {@link ParsedHash}; compact — поточний, де нікнейм — це ключ мапи плюс
+ * маска регістру. Нікнейми "Player" + i мають велику літеру, як більшість
+ * справжніх. loggedIn імітує сервер, де кожен акаунт уже хоч раз входив.
+ *
+ * Результат — bytesPerAccount; розкладка полів обох класів друкується
+ * в лог прогону.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+public class UserFootprintBench {
+
+    @Param({"1000000"})
+    public int accounts;
+
+    @Param({"legacy", "compact"})
+    public String model;
+
+    @Param({"false", "true"})
+    public boolean loggedIn;
+
+    /** Розмір графа мапи на один акаунт, байт. */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public long bytesPerAccount;
+    }
+
+    @Setup(Level.Trial)
+    public void layout() {
+        System.out.println(ClassLayout.parseClass(LegacyUserRecord.class).toPrintable());
+        System.out.println(ClassLayout.parseClass(UserRecord.class).toPrintable());
+    }
+
+    @Benchmark
+    public Map<String, ?> measure(Footprint fp) {
+        Map<String, Object> users = new HashMap<>(accounts * 2);
+        Random rnd = new Random(42);
+        byte[] salt = new byte[16];
+        byte[] dk = new byte[32];
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < accounts; i++) {
+            rnd.nextBytes(salt);
+            rnd.nextBytes(dk);
+            // Унікальні сіль і ключ, як у справжній базі
+            String hash = "pbkdf2:210000:" + Base64.getEncoder().encodeToString(salt) + ":" + Base64.getEncoder().encodeToString(dk);
+            String nick = "Player" + i;
+            String lang = (i & 1) == 0 ? "ua" : "en";
+            if ("legacy".equals(model)) {
+                LegacyUserRecord u = new LegacyUserRecord(nick, hash, "pbkdf2", lang);
+                u.lastLoginAt = now;
+                if (loggedIn) u.parsed = ParsedHash.parse(u.passHash);
+                users.put(nick.toLowerCase(), u);
+            } else {
+                UserRecord u = new UserRecord(nick, hash, "pbkdf2", lang);
+                u.lastLoginAt = now;
+                if (loggedIn) u.parsedHash();
+                // Ключ мапи — той самий рядок, на який посилається запис
+                users.put(u.key(), u);
+            }
+        }
+        fp.bytesPerAccount = GraphLayout.parseInstance(users).totalSize() / accounts;
+        return users;
+    }
+
+    /** UserRecord до переходу на компактне подання (для порівняння). */
+    static final class LegacyUserRecord {
+        String nickname;
+        volatile String passHash;
+        volatile String algo;
+        volatile String email;
+        volatile String lang;
+        long createdAt;
+        volatile long lastLoginAt;
+        volatile boolean blocked;
+        volatile ParsedHash parsed;
+
+        LegacyUserRecord(String nickname, String passHash, String algo, String lang) {
+            this.nickname = nickname;
+            this.passHash = passHash;
+            this.algo = algo;
+            this.lang = lang;
+            this.createdAt = System.currentTimeMillis();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package city.bit.auth.bench;
+
+import city.bit.auth.config.AuthSettings;
+import city.bit.auth.sec.HashingPool;
+import city.bit.auth.sec.PasswordHasher;
+import city.bit.auth.service.AuthService;
+import city.bit.auth.storage.Storage;
+import org.bukkit.plugin.Plugin;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Повне збереження користувачів через {@link AuthService#saveNow()}
+ * на 10k, 100k та 1M записів для кожного бекенда сховища.
+ * Кожен виклик — один холодний прогін, тому режим SingleShotTime.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class UserSaveBench {
+
+    @Param({"10000", "100000", "1000000"})
+    public int records;
+
+    // yaml — повний перезапис, journal — ущільнення журналу, sqlite — база даних
+    @Param({"yaml", "journal", "sqlite"})
+    public String backend;
+
+    private Path folder;
+    private HashingPool pool;
+    private Storage storage;
+    private AuthService auth;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        folder = BenchPlugin.tempFolder();
+        Plugin plugin = BenchPlugin.create(folder,
+                "storage.backend", "sqlite".equals(backend) ? "sqlite" : "yaml",
+                "storage.users.mode", "journal".equals(backend) ? "journal" : "yaml");
+        // Наповнюємо сховище й закриваємо його, щоб сервіс стартував із готових файлів
+        AuthSettings settings = AuthSettings.load(plugin.getConfig());
+        Storage seed = Storage.open(folder.toFile(), settings, plugin.getLogger());
+        seed.users.saveBatch(Fixtures.users(records));
+        seed.users.close();
+        seed.close();
+
+        storage = Storage.open(folder.toFile(), settings, plugin.getLogger());
+        pool = new HashingPool(1, 16);
+        auth = new AuthService(plugin, () -> settings, new PasswordHasher("bench-pepper", "pbkdf2", 1000), pool, storage.users);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        auth.close();
+        storage.close();
+        pool.shutdown(1000);
+        BenchPlugin.deleteRecursively(folder);
+    }
+
+    @Benchmark
+    public void saveNow() {
+        auth.saveNow();
+    }
+}
@@ -0,0 +1,101 @@
+package city.bit.auth.bench;
+
+import city.bit.auth.config.AuthSettings;
+import city.bit.auth.model.UserRecord;
+import city.bit.auth.storage.Storage;
+import city.bit.auth.storage.YamlUserStore;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.plugin.Plugin;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Старт із users.yml: потоковий читач {@link YamlUserStore#loadAll} проти
+ * попереднього завантаження через дерево YamlConfiguration (dom).
+ * Крім часу, звітує пікове використання купи за прогін (peakHeapMb).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class YamlLoadBench {
+
+    @Param({"100000", "500000"})
+    public int records;
+
+    @Param({"stream", "dom"})
+    public String loader;
+
+    private Path folder;
+    private File file;
+
+    /** Пікова купа за один прогін, МіБ. */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Heap {
+        public long peakHeapMb;
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        folder = BenchPlugin.tempFolder();
+        Plugin plugin = BenchPlugin.create(folder);
+        Storage seed = Storage.open(folder.toFile(), AuthSettings.load(plugin.getConfig()), plugin.getLogger());
+        seed.users.saveBatch(Fixtures.users(records));
+        seed.users.close();
+        seed.close();
+        file = new File(folder.toFile(), "users.yml");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        BenchPlugin.deleteRecursively(folder);
+    }
+
+    @Benchmark
+    public Map<String, UserRecord> load(Heap heap) throws Exception {
+        System.gc();
+        for (MemoryPoolMXBean p : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (p.getType() == MemoryType.HEAP) p.resetPeakUsage();
+        }
+        Map<String, UserRecord> out = new HashMap<>();
+        if ("stream".equals(loader)) {
+            new YamlUserStore(folder.toFile(), false, 1, false, BenchPlugin.create(folder).getLogger()).loadAll(out);
+        } else {
+            loadDom(out);
+        }
+        long peak = 0;
+        for (MemoryPoolMXBean p : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (p.getType() == MemoryType.HEAP) peak += p.getPeakUsage().getUsed();
+        }
+        heap.peakHeapMb = peak >> 20;
+        return out;
+    }
+
+    /** Попередня реалізація YamlUserStore.loadAll для порівняння. */
+    private void loadDom(Map<String, UserRecord> out) {
+        YamlConfiguration y = YamlConfiguration.loadConfiguration(file);
+        for (String key : y.getConfigurationSection("users").getKeys(false)) {
+            String base = "users." + key + ".";
+            UserRecord u = new UserRecord();
+            u.setNickname(key, y.getString(base + "nickname", key));
+            u.setPassHash(y.getString(base + "passHash", ""));
+            u.setAlgo(y.getString(base + "algo", "pbkdf2"));
+            u.email = y.getString(base + "email", null);
+            u.setLang(y.getString(base + "lang", "ua"));
+            u.createdAt = y.getLong(base + "createdAt", System.currentTimeMillis());
+            u.lastLoginAt = y.getLong(base + "lastLoginAt", 0);
+            u.blocked = y.getBoolean(base + "blocked", false);
+            out.put(key, u);
+        }
+    }
+}
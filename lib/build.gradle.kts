@@ -24,6 +24,8 @@ dependencies {
     // Тести (залишаємо за замовчуванням; можна не використовувати)
     testImplementation(platform("org.junit:junit-bom:5.10.2"))
     testImplementation("org.junit.jupiter:junit-jupiter")
+    // compileOnly не потрапляє в тести; сервісам потрібні інтерфейси Bukkit
+    testImplementation("io.papermc.paper:paper-api:1.21.1-R0.1-SNAPSHOT")
 }
 
 tasks.test {
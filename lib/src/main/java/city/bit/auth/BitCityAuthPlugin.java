@@ -1,18 +1,38 @@
 package city.bit.auth;
 
-import city.bit.auth.config.ConfigKeys;
+import city.bit.auth.config.AuthSettings;
 import city.bit.auth.i18n.MessageBundle;
+import city.bit.auth.metrics.AuthMetrics;
+import city.bit.auth.metrics.MetricsExporter;
 import city.bit.auth.model.AuthState;
+import city.bit.auth.network.DirectorySessionTransport;
+import city.bit.auth.network.NetworkSessions;
+import city.bit.auth.network.PluginMessageSessionTransport;
+import city.bit.auth.network.SessionTransport;
+import city.bit.auth.sec.CommonPasswords;
+import city.bit.auth.sec.HashingPool;
 import city.bit.auth.sec.PasswordHasher;
+import city.bit.auth.sec.SessionTokens;
 import city.bit.auth.service.AuthService;
 import city.bit.auth.service.SessionService;
+import city.bit.auth.service.UserTransfer;
+import city.bit.auth.storage.Storage;
 import city.bit.auth.ui.AuthListener;
 import city.bit.auth.ui.GuiFactory;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
-import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 /**
  * Головний клас плагіна. Саме він підвантажується Spigot'ом при запуску сервера.
  * Тут ми створюємо всі необхідні сервіси, завантажуємо налаштування та
@@ -23,13 +43,31 @@ public class BitCityAuthPlugin extends JavaPlugin {
     // Статична змінна, що дозволяє отримати екземпляр плагіна з будь-якого місця
     private static BitCityAuthPlugin INSTANCE;
 
+    // Розібрані налаштування; /bcauth reload підміняє знімок цілком
+    private volatile AuthSettings settings;
+
     // Сервіси авторизації та роботи з сесіями
     private AuthService authService;
     private SessionService sessionService;
+    // Окремий пул потоків для хешування паролів
+    private HashingPool hashPool;
+    // Масовий імпорт/експорт акаунтів; одночасно виконується лише одна операція
+    private UserTransfer transfer;
+    private final AtomicBoolean transferRunning = new AtomicBoolean();
+    // Сховища користувачів і сесій (yaml або sqlite)
+    private Storage storage;
 
     // Фабрика для створення графічного інтерфейсу (інвентарів)
     private GuiFactory guiFactory;
 
+    // Фільтр поширених паролів; до завершення компіляції списку — порожній
+    private volatile CommonPasswords commonPasswords = CommonPasswords.empty();
+    // Старт, /bcauth reload і /bcauth passwords компілюють і підміняють список по черзі
+    private final Object commonPasswordsLock = new Object();
+
+    // Prometheus-ендпоінт і запис metrics.prom; null — експорт вимкнено
+    private MetricsExporter metricsExporter;
+
     // Обгортка для мовних файлів (локалізації)
     private MessageBundle messages;
 
@@ -53,40 +91,67 @@ public class BitCityAuthPlugin extends JavaPlugin {
         // означає "не перезаписувати, якщо файл вже існує".
         saveResource("messages_ua.yml", false);
         saveResource("messages_en.yml", false);
+        saveResource("common_passwords.txt", false);
 
-        // Читаємо налаштування з config.yml
-        FileConfiguration cfg = getConfig();
+        // Читаємо налаштування з config.yml один раз; помилки видно одразу при старті
+        AuthSettings cfg = AuthSettings.load(getConfig());
+        reportProblems(cfg.problems);
+        settings = cfg;
 
         // 2) Ініціалізуємо локалізацію
         // Користувач може задати мову за замовчуванням у config.yml, якщо ні — беремо "ua"
-        String defaultLang = cfg.getString("i18n.default_lang", "ua");
-        messages = new MessageBundle(this, defaultLang);
+        messages = new MessageBundle(this, cfg.defaultLang);
 
         // 3) Налаштовуємо лобі авторизації
         // Звідси будуть починати всі гравці, поки не увійдуть в акаунт
-        String world = cfg.getString("ui.lobby.world", "AuthLobby");
-        double x = cfg.getDouble("ui.lobby.spawn.x", 0);
-        double y = cfg.getDouble("ui.lobby.spawn.y", 80);
-        double z = cfg.getDouble("ui.lobby.spawn.z", 0);
-        float yaw = (float) cfg.getDouble("ui.lobby.spawn.yaw", 0);
-        float pitch = (float) cfg.getDouble("ui.lobby.spawn.pitch", 0);
-        lobbySpawn = new Location(Bukkit.getWorld(world), x, y, z, yaw, pitch);
+        lobbySpawn = new Location(Bukkit.getWorld(cfg.lobbyWorld), cfg.lobbyX, cfg.lobbyY, cfg.lobbyZ, cfg.lobbyYaw, cfg.lobbyPitch);
 
         // 4) Створюємо сервіси
-        // "pepper" — додатковий секретний рядок, який ускладнює підбір пароля
-        String pepper = cfg.getString("auth.crypto.pepper", "CHANGE_ME");
-        // Алгоритм хешування паролів. Поки що підтримується лише pbkdf2.
-        String algo = cfg.getString("auth.crypto.algo", "pbkdf2");
-        PasswordHasher hasher = new PasswordHasher(pepper, algo);
-        authService = new AuthService(this, hasher);
-        sessionService = new SessionService(this);
+        // "pepper" — додатковий секретний рядок, який ускладнює підбір пароля.
+        // Кількість ітерацій підбираємо під target_ms на цьому залізі; 0 — типове значення
+        int iterations = 0;
+        if (cfg.cryptoTargetMs > 0) {
+            iterations = PasswordHasher.calibrate(cfg.cryptoAlgo, cfg.cryptoTargetMs);
+            getLogger().info("Password hashing: " + cfg.cryptoAlgo + " with " + iterations
+                    + " iterations (~" + cfg.cryptoTargetMs + " ms)");
+        }
+        PasswordHasher hasher = new PasswordHasher(cfg.pepper, cfg.cryptoAlgo, iterations);
+        // Хешування виконується у власному обмеженому пулі, а не в потоці чату
+        hashPool = new HashingPool(cfg.hashThreads, cfg.hashQueue);
+        try {
+            storage = Storage.open(getDataFolder(), cfg, getLogger());
+            authService = new AuthService(this, this::settings, hasher, hashPool, storage.users);
+            // Ключ підпису токенів — з випадкового session_secret.key; вузли з тим самим файлом довіряють один одному
+            boolean secretExisted = new File(getDataFolder(), SessionTokens.SECRET_FILE).isFile();
+            SessionTokens tokens = new SessionTokens(SessionTokens.loadOrCreateSecret(getDataFolder()), getDataFolder());
+            tokens.load();
+            sessionService = new SessionService(this, this::settings, storage.sessions, tokens, openNetwork(cfg, tokens, secretExisted));
+            transfer = new UserTransfer(authService, hasher, cfg.hashThreads, getLogger());
+        } catch (IOException ex) {
+            // Без сховища працювати не можна: інакше гравці "перереєструються" поверх існуючих акаунтів
+            throw new IllegalStateException("Cannot open BitCityAuth storage", ex);
+        }
+
+        // Великий список паролів може компілюватись секунди, тож робимо це поза основним потоком
+        Bukkit.getScheduler().runTaskAsynchronously(this, () -> reloadCommonPasswords(cfg, false));
 
         // 5) Створюємо фабрику GUI та реєструємо слухача подій авторизації
         guiFactory = new GuiFactory(messages);
-        Bukkit.getPluginManager().registerEvents(
-                new AuthListener(this, messages, authService, sessionService, guiFactory, lobbySpawn),
-                this
-        );
+        AuthListener listener = new AuthListener(this, messages, authService, sessionService, guiFactory, lobbySpawn);
+        Bukkit.getPluginManager().registerEvents(listener, this);
+        // Після /reload гравці вже онлайн, а PlayerJoinEvent для них не буде
+        listener.adoptOnlinePlayers();
+
+        // Експорт метрик лише на loopback-адресу, щоб їх не було видно ззовні
+        if (cfg.metricsPrometheusPort > 0 || cfg.metricsDumpIntervalSeconds > 0) {
+            metricsExporter = new MetricsExporter(AuthMetrics.get(), getLogger());
+            try {
+                metricsExporter.start(cfg.metricsPrometheusPort, new File(getDataFolder(), "metrics.prom"),
+                        cfg.metricsDumpIntervalSeconds);
+            } catch (IOException ex) {
+                getLogger().warning("Start metrics exporter failed: " + ex);
+            }
+        }
 
         // 6) Реєструємо адміністративну команду /bcauth
         getCommand("bcauth").setExecutor((sender, cmd, label, args) -> {
@@ -96,7 +161,7 @@ public class BitCityAuthPlugin extends JavaPlugin {
                 return true;
             }
             if (args.length < 1) {
-                sender.sendMessage("/bcauth <whois|sessions|reset|block|unblock> <player>");
+                sender.sendMessage("/bcauth <whois|sessions|revoke|reset|block|unblock|stats|reload|passwords|import|export> <player|file>");
                 return true;
             }
             String sub = args[0].toLowerCase();
@@ -109,10 +174,24 @@ public class BitCityAuthPlugin extends JavaPlugin {
                     if (args.length < 2) { sender.sendMessage("Usage: /bcauth sessions <player>"); return true; }
                     sender.sendMessage(sessionService.debugSessions(args[1]));
                     return true;
+                case "revoke":
+                    if (args.length < 2) { sender.sendMessage("Usage: /bcauth revoke <player>"); return true; }
+                    sessionService.invalidate(args[1]);
+                    sender.sendMessage("Sessions revoked: " + args[1]);
+                    return true;
                 case "reset":
                     if (args.length < 2) { sender.sendMessage("Usage: /bcauth reset <player>"); return true; }
-                    String tmp = authService.adminResetPassword(args[1]);
-                    sender.sendMessage("Temporary password for " + args[1] + ": " + tmp);
+                    String target = args[1];
+                    authService.adminResetPasswordAsync(target).whenComplete((tmp, err) ->
+                            Bukkit.getScheduler().runTask(this, () -> {
+                                if (err != null) {
+                                    sender.sendMessage("Reset failed: " + err.getMessage());
+                                    return;
+                                }
+                                // Після скидання пароля старі сесії й cookie-токени не повинні пускати без нього
+                                sessionService.invalidate(target);
+                                sender.sendMessage("Temporary password for " + target + ": " + tmp);
+                            }));
                     return true;
                 case "block":
                     if (args.length < 2) { sender.sendMessage("Usage: /bcauth block <player>"); return true; }
@@ -124,6 +203,72 @@ public class BitCityAuthPlugin extends JavaPlugin {
                     authService.setBlocked(args[1], false);
                     sender.sendMessage("Unblocked: " + args[1]);
                     return true;
+                case "reload":
+                    // Файли читаємо поза основним потоком; нові знімки підміняються атомарно
+                    Bukkit.getScheduler().runTaskAsynchronously(this, () -> {
+                        AuthSettings next = readSettings();
+                        List<String> restart = settings.restartRequired(next);
+                        settings = next;
+                        messages.setDefaultLang(next.defaultLang);
+                        int langs = messages.languages().size();
+                        guiFactory.invalidate();
+                        reloadCommonPasswords(next, false);
+                        Bukkit.getScheduler().runTask(this, () -> {
+                            reportProblems(next.problems);
+                            for (String p : next.problems) sender.sendMessage("Config: " + p);
+                            if (!restart.isEmpty()) sender.sendMessage("Changes that need a restart: " + restart);
+                            sender.sendMessage("Reloaded: " + next.problems.size() + " config problems, "
+                                    + langs + " languages " + messages.languages());
+                        });
+                    });
+                    return true;
+                case "stats":
+                    sender.sendMessage(hashPool.debugStats());
+                    sender.sendMessage(authService.debugHashStats());
+                    sender.sendMessage(authService.debugCacheStats());
+                    sender.sendMessage(authService.debugRateLimitStats());
+                    sender.sendMessage(authService.debugQuotaStats());
+                    sender.sendMessage(sessionService.debugTokenStats());
+                    sender.sendMessage(sessionService.debugNetworkStats());
+                    sender.sendMessage(commonPasswords.debugStats());
+                    for (String line : AuthMetrics.get().statsLines()) sender.sendMessage(line);
+                    return true;
+                case "passwords":
+                    // Примусово перекомпільовуємо список поширених паролів
+                    Bukkit.getScheduler().runTaskAsynchronously(this, () -> {
+                        CommonPasswords next = reloadCommonPasswords(settings, true);
+                        Bukkit.getScheduler().runTask(this, () -> sender.sendMessage(next.debugStats()));
+                    });
+                    return true;
+                case "import":
+                case "export": {
+                    if (args.length < 2) { sender.sendMessage("Usage: /bcauth " + sub + " <file.csv|file.jsonl>"); return true; }
+                    File file = dataFile(args[1]);
+                    if (file == null) { sender.sendMessage("File must be inside the plugin folder: " + args[1]); return true; }
+                    if ("import".equals(sub) && !file.isFile()) { sender.sendMessage("No such file: " + args[1]); return true; }
+                    if (!transferRunning.compareAndSet(false, true)) { sender.sendMessage("Another import/export is running."); return true; }
+                    // Читання, хешування та запис — у фоні; основний потік лише отримує повідомлення
+                    Bukkit.getScheduler().runTaskAsynchronously(this, () -> {
+                        String done;
+                        try {
+                            if ("import".equals(sub)) {
+                                UserTransfer.Result r = transfer.importFile(file, settings.defaultLang,
+                                        msg -> Bukkit.getScheduler().runTask(this, () -> sender.sendMessage(msg)));
+                                done = "Imported " + file.getName() + ": " + r;
+                            } else {
+                                done = "Exported " + transfer.exportFile(file) + " users to " + file.getName();
+                            }
+                        } catch (IOException ex) {
+                            done = sub + " failed: " + ex.getMessage();
+                        } finally {
+                            transferRunning.set(false);
+                        }
+                        getLogger().info(done);
+                        String msg = done;
+                        if (isEnabled()) Bukkit.getScheduler().runTask(this, () -> sender.sendMessage(msg));
+                    });
+                    return true;
+                }
                 default:
                     sender.sendMessage("Unknown subcommand.");
                     return true;
@@ -135,15 +280,132 @@ public class BitCityAuthPlugin extends JavaPlugin {
 
     @Override
     public void onDisable() {
+        if (metricsExporter != null) metricsExporter.stop();
+        // Даємо завершитись уже прийнятим перевіркам паролів
+        if (hashPool != null) hashPool.shutdown(5000);
         // При зупинці сервера гарантуємо, що всі дані будуть збережені на диск
-        if (authService != null) authService.saveNow();
-        if (sessionService != null) sessionService.saveNow();
+        if (authService != null) authService.close();
+        boolean flushed = sessionService == null || sessionService.close(settings.sessionsShutdownFlushMs);
+        // Незавершений запис ще тримає з'єднання з базою; його закриє вихід JVM
+        if (storage != null && !flushed) {
+            getLogger().warning("Leaving storage open: session flush is still running");
+        } else if (storage != null) {
+            try {
+                storage.close();
+            } catch (IOException ex) {
+                getLogger().warning("Close storage failed: " + ex);
+            }
+        }
+    }
+
+    /**
+     * Читає config.yml з диска у новий знімок. Не чіпає {@link #getConfig()},
+     * тож безпечно викликається з асинхронного потоку.
+     */
+    private AuthSettings readSettings() {
+        YamlConfiguration y = YamlConfiguration.loadConfiguration(new File(getDataFolder(), "config.yml"));
+        try (Reader in = new InputStreamReader(getResource("config.yml"), StandardCharsets.UTF_8)) {
+            y.setDefaults(YamlConfiguration.loadConfiguration(in));
+        } catch (Exception ex) {
+            getLogger().warning("Cannot read bundled config.yml defaults: " + ex);
+        }
+        return AuthSettings.load(y);
+    }
+
+    /**
+     * Завантажує список поширених паролів і підміняє ним поточний. Виклики
+     * йдуть по черзі, тож повільніший старий не перезапише новіший результат.
+     */
+    private CommonPasswords reloadCommonPasswords(AuthSettings cfg, boolean force) {
+        synchronized (commonPasswordsLock) {
+            CommonPasswords next = loadCommonPasswords(cfg, force);
+            commonPasswords = next;
+            return next;
+        }
+    }
+
+    /**
+     * Відкриває скомпільований список поширених паролів. Текстовий список
+     * компілюється, якщо .bin ще немає, він старший за .txt або force = true.
+     * Викликається поза основним потоком; при помилці фільтр порожній.
+     */
+    private CommonPasswords loadCommonPasswords(AuthSettings cfg, boolean force) {
+        if (!cfg.disallowCommonPasswords) return CommonPasswords.empty();
+        File txt = new File(getDataFolder(), cfg.commonPasswordList);
+        String name = txt.getName();
+        int dot = name.lastIndexOf('.');
+        File bin = new File(txt.getParentFile(), (dot > 0 ? name.substring(0, dot) : name) + ".bin");
+        try {
+            if (txt.exists() && (force || !bin.exists() || txt.lastModified() > bin.lastModified())) {
+                long start = System.nanoTime();
+                int n = CommonPasswords.compile(txt, bin);
+                getLogger().info("Compiled " + n + " common passwords in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            }
+            if (!bin.exists()) {
+                getLogger().warning("Common password list not found: " + txt);
+                return CommonPasswords.empty();
+            }
+            return CommonPasswords.open(bin);
+        } catch (IOException ex) {
+            getLogger().warning("Load common passwords failed: " + ex);
+            return CommonPasswords.empty();
+        }
+    }
+
+    /** Мережеві сесії за network.sessions.mode; null — режим вимкнено. */
+    private NetworkSessions openNetwork(AuthSettings cfg, SessionTokens tokens, boolean secretExisted) {
+        if ("off".equals(cfg.networkSessionsMode)) return null;
+        // Чужий вузол зі стандартним pepper чи щойно згенерованим секретом не повинен потрапити в мережу
+        if (cfg.pepperWeak) {
+            getLogger().severe("Network sessions disabled: crypto pepper is the default or too short");
+            return null;
+        }
+        if (!secretExisted) {
+            getLogger().severe("Network sessions disabled: " + SessionTokens.SECRET_FILE
+                    + " was just created; copy the same file to every node and restart");
+            return null;
+        }
+        String node = cfg.networkNodeId.isEmpty()
+                ? UUID.randomUUID().toString().substring(0, 8) : cfg.networkNodeId;
+        SessionTransport transport;
+        switch (cfg.networkSessionsMode) {
+            case "plugin":
+                transport = new PluginMessageSessionTransport(this);
+                break;
+            case "directory":
+                // Відносний шлях — від папки плагіна; спільна тека має бути однією для всіх серверів
+                File dir = new File(cfg.networkSessionsDirectory);
+                if (!dir.isAbsolute()) dir = new File(getDataFolder(), cfg.networkSessionsDirectory);
+                transport = new DirectorySessionTransport(dir, node, cfg.networkSessionsPollMillis, getLogger());
+                break;
+            default:
+                return null;
+        }
+        getLogger().info("Network sessions: " + cfg.networkSessionsMode + " transport, node " + node);
+        return new NetworkSessions(node, transport, tokens, getLogger());
+    }
+
+    /** Файл у папці плагіна за ім'ям від адміністратора; null, якщо шлях веде за її межі. */
+    private File dataFile(String name) {
+        try {
+            File dir = getDataFolder().getCanonicalFile();
+            File f = new File(dir, name).getCanonicalFile();
+            return f.toPath().startsWith(dir.toPath()) ? f : null;
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    private void reportProblems(List<String> problems) {
+        for (String p : problems) getLogger().warning("config.yml: " + p);
     }
 
     // Далі йдуть гетери для зручного доступу до сервісів та ресурсів плагіна
+    public AuthSettings settings() { return settings; }
     public AuthService auth() { return authService; }
     public SessionService sessions() { return sessionService; }
     public GuiFactory gui() { return guiFactory; }
     public MessageBundle messages() { return messages; }
+    public CommonPasswords commonPasswords() { return commonPasswords; }
     public Location lobbySpawn() { return lobbySpawn; }
 }
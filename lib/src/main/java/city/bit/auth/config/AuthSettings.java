@@ -0,0 +1,266 @@
+package city.bit.auth.config;
+
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static city.bit.auth.config.ConfigKeys.*;
+
+/**
+ * Незмінний знімок налаштувань із config.yml.
+ *
+ * Файл розбирається один раз: при старті та по /bcauth reload. Код читає
+ * звичайні final-поля замість пошуку за рядковим шляхом на кожен виклик.
+ * Невідомі ключі та некоректні значення потрапляють у список проблем ще
+ * при завантаженні; замість некоректного значення береться типове.
+ */
+public final class AuthSettings {
+
+    // Стандартне значення pepper із config.yml, яке обов'язково треба змінити
+    private static final String DEFAULT_PEPPER = "CHANGE_ME_LONG_RANDOM";
+    // Коротший pepper легко перебрати
+    private static final int MIN_PEPPER_LENGTH = 16;
+
+    // auth
+    public final int sessionTtlDays;
+    public final String sessionIpMatch;       // strict | soft | off
+    public final int maxConcurrentSessions;
+    public final int maxRegistrationsPerIpPerDay;
+    public final int loginPerAccountPer5m;
+    public final int loginPerIpPer5m;
+    public final int rateLimitMaxTracked;
+    public final int passwordMinLength;
+    public final boolean disallowCommonPasswords;
+    public final String commonPasswordList;   // текстовий список у папці плагіна
+    public final String cryptoAlgo;           // pbkdf2 | pbkdf2-sha512
+    public final String pepper;
+    public final boolean pepperWeak;          // стандартний або закороткий pepper
+    public final int cryptoTargetMs;          // 0 — фіксована кількість ітерацій
+    public final int hashThreads;
+    public final int hashQueue;
+    // storage
+    public final String storageBackend;       // yaml | sqlite
+    public final String sqliteFile;
+    public final String usersMode;            // yaml | journal | binary
+    public final boolean usersLazy;
+    public final int usersCacheSize;
+    public final int usersCompactAfter;
+    public final boolean usersJournalFsync;
+    public final boolean sessionsWriteBehind;
+    public final int sessionsFlushIntervalSeconds;
+    public final int sessionsFlushDirtyThreshold;
+    public final long sessionsShutdownFlushMs;
+    public final int sessionsSweepIntervalSeconds;
+    public final int sessionsSweepBatch;
+    // ui
+    public final String lobbyWorld;
+    public final double lobbyX, lobbyY, lobbyZ;
+    public final float lobbyYaw, lobbyPitch;
+    public final int idleKickSeconds;
+    public final int guiReopenDebounceTicks;
+    // i18n
+    public final String defaultLang;
+    // network
+    public final String networkNodeId;        // порожньо — випадковий при кожному старті
+    public final String networkSessionsMode;  // off | plugin | directory
+    public final String networkSessionsDirectory;
+    public final int networkSessionsPollMillis;
+    // metrics
+    public final int metricsPrometheusPort;   // 0 — HTTP-ендпоінт вимкнено
+    public final int metricsDumpIntervalSeconds; // 0 — файл metrics.prom не пишеться
+
+    /** Знайдені при завантаженні проблеми: невідомі ключі та некоректні значення. */
+    public final List<String> problems;
+
+    private AuthSettings(Reader r) {
+        sessionTtlDays = r.intAt(SESSION_TTL_DAYS, 14, 1, 3650);
+        sessionIpMatch = r.choice(SESSION_IP_MATCH, "soft", "strict", "soft", "off");
+        maxConcurrentSessions = r.intAt(MAX_CONCURRENT_SESSIONS, 1, 1, 100);
+        maxRegistrationsPerIpPerDay = r.intAt(MAX_REGISTRATIONS_PER_IP, 3, 0, 10_000);
+        loginPerAccountPer5m = r.intAt(LOGIN_PER_ACCOUNT, 5, 1, 10_000);
+        loginPerIpPer5m = r.intAt(LOGIN_PER_IP, 20, 1, 100_000);
+        rateLimitMaxTracked = r.intAt(RATE_LIMIT_MAX_TRACKED, 50_000, 100, 10_000_000);
+        passwordMinLength = r.intAt(PASSWORD_MIN_LENGTH, 8, 1, 128);
+        disallowCommonPasswords = r.bool(PASSWORD_DISALLOW_COMMON, true);
+        commonPasswordList = r.str(PASSWORD_COMMON_LIST, "common_passwords.txt");
+        cryptoAlgo = r.choice(CRYPTO_ALGO, "pbkdf2", "pbkdf2", "pbkdf2-sha512");
+        pepper = r.str(CRYPTO_PEPPER, DEFAULT_PEPPER);
+        pepperWeak = DEFAULT_PEPPER.equals(pepper) || "CHANGE_ME".equals(pepper)
+                || pepper.length() < MIN_PEPPER_LENGTH;
+        if (pepperWeak) {
+            r.problem(CRYPTO_PEPPER + " is the default or shorter than " + MIN_PEPPER_LENGTH
+                    + " characters; set a long random secret");
+        }
+        cryptoTargetMs = r.intAt(CRYPTO_TARGET_MS, 50, 0, 5000);
+        hashThreads = r.intAt(CRYPTO_HASH_THREADS, 0, 0, 256);
+        hashQueue = r.intAt(CRYPTO_HASH_QUEUE, 128, 1, 100_000);
+
+        storageBackend = r.choice(STORAGE_BACKEND, "yaml", "yaml", "sqlite");
+        sqliteFile = r.str(SQLITE_FILE, "auth.db");
+        usersMode = r.choice(USERS_MODE, "yaml", "yaml", "journal", "binary");
+        usersLazy = "lazy".equals(r.choice(USERS_LOADING, "eager", "eager", "lazy"));
+        usersCacheSize = r.intAt(USERS_CACHE_SIZE, 5000, 16, 10_000_000);
+        usersCompactAfter = r.intAt(USERS_COMPACT_AFTER, 1000, 1, 100_000_000);
+        usersJournalFsync = r.bool(USERS_JOURNAL_FSYNC, false);
+        sessionsWriteBehind = r.bool(SESSIONS_WRITE_BEHIND, true);
+        sessionsFlushIntervalSeconds = r.intAt(SESSIONS_FLUSH_INTERVAL, 5, 1, 3600);
+        sessionsFlushDirtyThreshold = r.intAt(SESSIONS_FLUSH_THRESHOLD, 64, 1, Integer.MAX_VALUE);
+        sessionsShutdownFlushMs = r.intAt(SESSIONS_SHUTDOWN_FLUSH_MS, 5000, 0, 600_000);
+        sessionsSweepIntervalSeconds = r.intAt(SESSIONS_SWEEP_INTERVAL, 60, 1, 86_400);
+        sessionsSweepBatch = r.intAt(SESSIONS_SWEEP_BATCH, 1000, 1, 1_000_000);
+
+        lobbyWorld = r.str(LOBBY_WORLD, "AuthLobby");
+        lobbyX = r.num(LOBBY_X, 0);
+        lobbyY = r.num(LOBBY_Y, 80);
+        lobbyZ = r.num(LOBBY_Z, 0);
+        lobbyYaw = (float) r.num(LOBBY_YAW, 0);
+        lobbyPitch = (float) r.num(LOBBY_PITCH, 0);
+        idleKickSeconds = r.intAt(IDLE_KICK_SECONDS, 60, 5, 86_400);
+        guiReopenDebounceTicks = r.intAt(GUI_REOPEN_DEBOUNCE_TICKS, 3, 1, 200);
+
+        defaultLang = r.str(DEFAULT_LANG, "ua").toLowerCase(Locale.ROOT);
+
+        String nodeId = r.optStr(NETWORK_NODE_ID);
+        if (!nodeId.matches("[A-Za-z0-9_-]{0,32}")) {
+            r.problem(NETWORK_NODE_ID + ": up to 32 letters, digits, '_' or '-' expected, using a random id");
+            nodeId = "";
+        }
+        networkNodeId = nodeId;
+        String netMode = r.choice(NETWORK_SESSIONS_MODE, "off", "off", "plugin", "directory");
+        networkSessionsDirectory = r.optStr(NETWORK_SESSIONS_DIRECTORY);
+        if ("directory".equals(netMode) && networkSessionsDirectory.isBlank()) {
+            r.problem(NETWORK_SESSIONS_DIRECTORY + " is empty, network sessions are off");
+            netMode = "off";
+        }
+        networkSessionsMode = netMode;
+        networkSessionsPollMillis = r.intAt(NETWORK_SESSIONS_POLL_MILLIS, 250, 10, 60_000);
+
+        metricsPrometheusPort = r.intAt(METRICS_PROMETHEUS_PORT, 0, 0, 65_535);
+        metricsDumpIntervalSeconds = r.intAt(METRICS_DUMP_INTERVAL, 0, 0, 86_400);
+
+        r.reportUnknownKeys();
+        problems = List.copyOf(r.problems);
+    }
+
+    /** Розбирає конфігурацію у знімок. Ніколи не кидає виключень через значення. */
+    public static AuthSettings load(ConfigurationSection cfg) {
+        return new AuthSettings(new Reader(cfg));
+    }
+
+    /**
+     * Ключі, зміна яких набуде чинності лише після перезапуску
+     * (сховище, хешування, розмір лічильників входу, pepper, лобі, мережа, метрики).
+     */
+    public List<String> restartRequired(AuthSettings next) {
+        List<String> out = new ArrayList<>();
+        if (!pepper.equals(next.pepper)) out.add(CRYPTO_PEPPER);
+        if (!cryptoAlgo.equals(next.cryptoAlgo)) out.add(CRYPTO_ALGO);
+        if (cryptoTargetMs != next.cryptoTargetMs) out.add(CRYPTO_TARGET_MS);
+        if (hashThreads != next.hashThreads) out.add(CRYPTO_HASH_THREADS);
+        if (hashQueue != next.hashQueue) out.add(CRYPTO_HASH_QUEUE);
+        if (rateLimitMaxTracked != next.rateLimitMaxTracked) out.add(RATE_LIMIT_MAX_TRACKED);
+        if (!storageBackend.equals(next.storageBackend)) out.add(STORAGE_BACKEND);
+        if (!sqliteFile.equals(next.sqliteFile)) out.add(SQLITE_FILE);
+        if (!usersMode.equals(next.usersMode)) out.add(USERS_MODE);
+        if (usersLazy != next.usersLazy) out.add(USERS_LOADING);
+        if (usersCacheSize != next.usersCacheSize) out.add(USERS_CACHE_SIZE);
+        if (usersCompactAfter != next.usersCompactAfter) out.add(USERS_COMPACT_AFTER);
+        if (usersJournalFsync != next.usersJournalFsync) out.add(USERS_JOURNAL_FSYNC);
+        if (sessionsWriteBehind != next.sessionsWriteBehind) out.add(SESSIONS_WRITE_BEHIND);
+        if (sessionsFlushIntervalSeconds != next.sessionsFlushIntervalSeconds) out.add(SESSIONS_FLUSH_INTERVAL);
+        if (sessionsSweepIntervalSeconds != next.sessionsSweepIntervalSeconds) out.add(SESSIONS_SWEEP_INTERVAL);
+        if (!networkNodeId.equals(next.networkNodeId)) out.add(NETWORK_NODE_ID);
+        if (!networkSessionsMode.equals(next.networkSessionsMode)) out.add(NETWORK_SESSIONS_MODE);
+        if (!networkSessionsDirectory.equals(next.networkSessionsDirectory)) out.add(NETWORK_SESSIONS_DIRECTORY);
+        if (networkSessionsPollMillis != next.networkSessionsPollMillis) out.add(NETWORK_SESSIONS_POLL_MILLIS);
+        if (metricsPrometheusPort != next.metricsPrometheusPort) out.add(METRICS_PROMETHEUS_PORT);
+        if (metricsDumpIntervalSeconds != next.metricsDumpIntervalSeconds) out.add(METRICS_DUMP_INTERVAL);
+        if (!lobbyWorld.equals(next.lobbyWorld) || lobbyX != next.lobbyX || lobbyY != next.lobbyY
+                || lobbyZ != next.lobbyZ || lobbyYaw != next.lobbyYaw || lobbyPitch != next.lobbyPitch) out.add("ui.lobby");
+        return out;
+    }
+
+    /** Читання значень із перевіркою типу та меж. */
+    private static final class Reader {
+        private final ConfigurationSection cfg;
+        private final List<String> problems = new ArrayList<>();
+
+        Reader(ConfigurationSection cfg) {
+            this.cfg = cfg;
+        }
+
+        void problem(String msg) {
+            problems.add(msg);
+        }
+
+        int intAt(String path, int def, int min, int max) {
+            if (!cfg.contains(path)) return def;
+            if (!cfg.isInt(path)) {
+                problem(path + ": expected an integer, got '" + cfg.get(path) + "', using " + def);
+                return def;
+            }
+            int v = cfg.getInt(path);
+            if (v < min || v > max) {
+                int clamped = Math.max(min, Math.min(max, v));
+                problem(path + ": " + v + " is outside [" + min + ", " + max + "], using " + clamped);
+                return clamped;
+            }
+            return v;
+        }
+
+        double num(String path, double def) {
+            if (!cfg.contains(path)) return def;
+            if (!cfg.isDouble(path) && !cfg.isInt(path) && !cfg.isLong(path)) {
+                problem(path + ": expected a number, got '" + cfg.get(path) + "', using " + def);
+                return def;
+            }
+            return cfg.getDouble(path);
+        }
+
+        boolean bool(String path, boolean def) {
+            if (!cfg.contains(path)) return def;
+            if (!cfg.isBoolean(path)) {
+                problem(path + ": expected true/false, got '" + cfg.get(path) + "', using " + def);
+                return def;
+            }
+            return cfg.getBoolean(path);
+        }
+
+        String str(String path, String def) {
+            if (!cfg.contains(path)) return def;
+            String v = cfg.getString(path);
+            if (v == null || v.isBlank() || cfg.isConfigurationSection(path)) {
+                problem(path + ": expected a non-empty string, using '" + def + "'");
+                return def;
+            }
+            return v;
+        }
+
+        /** Необов'язковий рядок: відсутній чи порожній ключ дає "". */
+        String optStr(String path) {
+            if (!cfg.contains(path)) return "";
+            if (cfg.isConfigurationSection(path)) {
+                problem(path + ": expected a string, ignoring");
+                return "";
+            }
+            String v = cfg.getString(path);
+            return v == null ? "" : v.trim();
+        }
+
+        String choice(String path, String def, String... allowed) {
+            String v = str(path, def).toLowerCase(Locale.ROOT);
+            for (String a : allowed) if (a.equals(v)) return v;
+            problem(path + ": '" + v + "' is not one of " + String.join("|", allowed) + ", using '" + def + "'");
+            return def;
+        }
+
+        void reportUnknownKeys() {
+            for (String key : cfg.getKeys(true)) {
+                if (cfg.isConfigurationSection(key)) continue;
+                if (!ALL.contains(key)) problem("Unknown config key: " + key);
+            }
+        }
+    }
+}
@@ -1,13 +1,77 @@
 package city.bit.auth.config;
 
+import java.util.Set;
+
 /**
- * Клас-заготовка для констант ключів конфігурації.
- * 
- * Зараз він порожній, але у майбутньому сюди можна додавати
- * рядкові константи, які будуть використовуватись у коді
- * замість "магічних" рядків.
+ * Константи ключів конфігурації config.yml.
+ * Код читає налаштування лише через {@link AuthSettings}; ці константи
+ * замінюють "магічні" рядки, а {@link #ALL} дозволяє помітити ключі,
+ * яких плагін не знає (наприклад, друкарську помилку в назві).
  */
 public final class ConfigKeys {
+    // auth
+    public static final String SESSION_TTL_DAYS = "auth.session_ttl_days";
+    public static final String SESSION_IP_MATCH = "auth.session_ip_match";
+    public static final String MAX_CONCURRENT_SESSIONS = "auth.max_concurrent_sessions_per_account";
+    public static final String MAX_REGISTRATIONS_PER_IP = "auth.max_registrations_per_ip_per_day";
+    public static final String LOGIN_PER_ACCOUNT = "auth.rate_limits.login_per_account_per_5m";
+    public static final String LOGIN_PER_IP = "auth.rate_limits.login_per_ip_per_5m";
+    public static final String RATE_LIMIT_MAX_TRACKED = "auth.rate_limits.max_tracked_keys";
+    public static final String PASSWORD_MIN_LENGTH = "auth.password.min_length";
+    public static final String PASSWORD_DISALLOW_COMMON = "auth.password.disallow_common";
+    public static final String PASSWORD_COMMON_LIST = "auth.password.common_list";
+    public static final String CRYPTO_ALGO = "auth.crypto.algo";
+    public static final String CRYPTO_PEPPER = "auth.crypto.pepper";
+    public static final String CRYPTO_TARGET_MS = "auth.crypto.target_ms";
+    public static final String CRYPTO_HASH_THREADS = "auth.crypto.hash_threads";
+    public static final String CRYPTO_HASH_QUEUE = "auth.crypto.hash_queue";
+    // storage
+    public static final String STORAGE_BACKEND = "storage.backend";
+    public static final String SQLITE_FILE = "storage.sqlite.file";
+    public static final String USERS_MODE = "storage.users.mode";
+    public static final String USERS_LOADING = "storage.users.loading";
+    public static final String USERS_CACHE_SIZE = "storage.users.cache_size";
+    public static final String USERS_COMPACT_AFTER = "storage.users.compact_after";
+    public static final String USERS_JOURNAL_FSYNC = "storage.users.journal_fsync";
+    public static final String SESSIONS_WRITE_BEHIND = "storage.sessions.write_behind";
+    public static final String SESSIONS_FLUSH_INTERVAL = "storage.sessions.flush_interval_seconds";
+    public static final String SESSIONS_FLUSH_THRESHOLD = "storage.sessions.flush_dirty_threshold";
+    public static final String SESSIONS_SHUTDOWN_FLUSH_MS = "storage.sessions.shutdown_flush_ms";
+    public static final String SESSIONS_SWEEP_INTERVAL = "storage.sessions.sweep_interval_seconds";
+    public static final String SESSIONS_SWEEP_BATCH = "storage.sessions.sweep_batch";
+    // ui
+    public static final String LOBBY_WORLD = "ui.lobby.world";
+    public static final String LOBBY_X = "ui.lobby.spawn.x";
+    public static final String LOBBY_Y = "ui.lobby.spawn.y";
+    public static final String LOBBY_Z = "ui.lobby.spawn.z";
+    public static final String LOBBY_YAW = "ui.lobby.spawn.yaw";
+    public static final String LOBBY_PITCH = "ui.lobby.spawn.pitch";
+    public static final String IDLE_KICK_SECONDS = "ui.idle_kick_seconds";
+    public static final String GUI_REOPEN_DEBOUNCE_TICKS = "ui.gui_reopen_debounce_ticks";
+    // i18n
+    public static final String DEFAULT_LANG = "i18n.default_lang";
+    // network
+    public static final String NETWORK_NODE_ID = "network.node_id";
+    public static final String NETWORK_SESSIONS_MODE = "network.sessions.mode";
+    public static final String NETWORK_SESSIONS_DIRECTORY = "network.sessions.directory";
+    public static final String NETWORK_SESSIONS_POLL_MILLIS = "network.sessions.poll_millis";
+    // metrics
+    public static final String METRICS_PROMETHEUS_PORT = "metrics.prometheus_port";
+    public static final String METRICS_DUMP_INTERVAL = "metrics.dump_interval_seconds";
+
+    /** Усі відомі плагіну ключі-значення (без проміжних секцій). */
+    public static final Set<String> ALL = Set.of(
+            SESSION_TTL_DAYS, SESSION_IP_MATCH, MAX_CONCURRENT_SESSIONS, MAX_REGISTRATIONS_PER_IP,
+            LOGIN_PER_ACCOUNT, LOGIN_PER_IP, RATE_LIMIT_MAX_TRACKED, PASSWORD_MIN_LENGTH, PASSWORD_DISALLOW_COMMON, PASSWORD_COMMON_LIST,
+            CRYPTO_ALGO, CRYPTO_PEPPER, CRYPTO_TARGET_MS, CRYPTO_HASH_THREADS, CRYPTO_HASH_QUEUE,
+            STORAGE_BACKEND, SQLITE_FILE, USERS_MODE, USERS_LOADING, USERS_CACHE_SIZE,
+            USERS_COMPACT_AFTER, USERS_JOURNAL_FSYNC, SESSIONS_WRITE_BEHIND, SESSIONS_FLUSH_INTERVAL,
+            SESSIONS_FLUSH_THRESHOLD, SESSIONS_SHUTDOWN_FLUSH_MS, SESSIONS_SWEEP_INTERVAL, SESSIONS_SWEEP_BATCH,
+            LOBBY_WORLD, LOBBY_X, LOBBY_Y, LOBBY_Z, LOBBY_YAW, LOBBY_PITCH,
+            IDLE_KICK_SECONDS, GUI_REOPEN_DEBOUNCE_TICKS, DEFAULT_LANG,
+            NETWORK_NODE_ID, NETWORK_SESSIONS_MODE, NETWORK_SESSIONS_DIRECTORY, NETWORK_SESSIONS_POLL_MILLIS,
+            METRICS_PROMETHEUS_PORT, METRICS_DUMP_INTERVAL);
+
     // Приватний конструктор забороняє створювати екземпляри цього класу
     private ConfigKeys() {}
 }
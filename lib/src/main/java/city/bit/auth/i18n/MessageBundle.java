@@ -5,48 +5,143 @@ import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.plugin.Plugin;
 
 import java.io.File;
+import java.util.*;
 
 /**
  * Клас, що відповідає за завантаження та видачу локалізованих повідомлень.
  * Файли messages_ua.yml та messages_en.yml копіюються у папку плагіна
- * при першому запуску та зчитуються у вигляді YamlConfiguration.
+ * при першому запуску; крім них підхоплюється будь-який messages_*.yml,
+ * який адміністратор покладе поруч (наприклад, messages_pl.yml).
+ *
+ * Усі переклади обчислюються один раз при завантаженні у таблицю
+ * [мова][Msg.ordinal()] з уже застосованими кольоровими кодами, тож
+ * {@link #t(Msg, String)} — це лише читання з масиву.
+ * Ланцюжок запасних варіантів: мова гравця -> мова за замовчуванням -> en -> назва ключа.
+ * {@link #reload()} будує нову таблицю і підміняє її одним записом,
+ * тож читачі ніколи не бачать напівзавантажених даних.
  */
 public class MessageBundle {
+    private static final String PREFIX = "messages_";
+    private static final String SUFFIX = ".yml";
+
     private final Plugin plugin;
-    // Конфігурації для української та англійської мов
-    private YamlConfiguration ua;
-    private YamlConfiguration en;
     // Мова, яка використовується за замовчуванням
-    private String defaultLang;
+    private volatile String defaultLang;
+    // Поточна таблиця перекладів; замінюється цілком при перезавантаженні
+    private volatile Table table;
 
     public MessageBundle(Plugin plugin, String defaultLang) {
         this.plugin = plugin;
-        this.defaultLang = defaultLang;
+        this.defaultLang = normalize(defaultLang);
         // Завантажуємо yaml-файли з папки плагіна
-        ua = YamlConfiguration.loadConfiguration(new File(plugin.getDataFolder(), "messages_ua.yml"));
-        en = YamlConfiguration.loadConfiguration(new File(plugin.getDataFolder(), "messages_en.yml"));
+        this.table = build();
     }
 
     /**
      * Повертає переклад рядка за вказаним ключем та мовою.
-     * Якщо переклад відсутній, використовується англійська версія
-     * або назва ключа у вигляді запасного варіанта.
+     * Невідома мова замінюється мовою за замовчуванням.
      */
     public String t(Msg key, String lang) {
-        // В enum ключі записані як GUI_TITLE, тому переводимо їх у вигляд "gui.title"
-        String path = key.name().toLowerCase().replace('_', '.');
-        YamlConfiguration y = "en".equalsIgnoreCase(lang) ? en : ua;
-        String s = y.getString(path);
-        if (s == null) s = en.getString(path, key.name());
-        // Підтримуємо кольорові коди у стилі &6
-        return ChatColor.translateAlternateColorCodes('&', s);
+        Table tb = table;
+        Integer i = lang == null ? null : tb.index.get(lang);
+        if (i == null && lang != null) i = tb.index.get(normalize(lang));
+        return tb.texts[i == null ? tb.defaultIdx : i][key.ordinal()];
     }
 
     /**
      * Переклад із мовою за замовчуванням.
      */
-    public String t(Msg key) { return t(key, defaultLang); }
+    public String t(Msg key) {
+        Table tb = table;
+        return tb.texts[tb.defaultIdx][key.ordinal()];
+    }
+
+    /**
+     * Перечитує всі messages_*.yml і атомарно підміняє таблицю.
+     * Повертає кількість завантажених мов.
+     */
+    public int reload() {
+        Table tb = build();
+        table = tb;
+        return tb.langs.size();
+    }
+
+    /** Мови, для яких знайдено файли перекладів, у стабільному порядку. */
+    public List<String> languages() { return table.langs; }
+
+    /** Наступна мова у списку — для кнопки вибору мови в GUI. */
+    public String nextLang(String lang) {
+        Table tb = table;
+        Integer i = lang == null ? null : tb.index.get(normalize(lang));
+        int next = i == null ? tb.defaultIdx : (i + 1) % tb.langs.size();
+        return tb.langs.get(next);
+    }
 
     public String getDefaultLang() { return defaultLang; }
-    public void setDefaultLang(String defaultLang) { this.defaultLang = defaultLang; }
+
+    public void setDefaultLang(String defaultLang) {
+        this.defaultLang = normalize(defaultLang);
+        reload(); // Мова за замовчуванням входить у ланцюжок запасних варіантів
+    }
+
+    /** Будує нову таблицю з усіх файлів перекладів у папці плагіна. */
+    private Table build() {
+        // TreeMap — щоб порядок мов (і перемикання в GUI) не залежав від файлової системи
+        Map<String, YamlConfiguration> files = new TreeMap<>();
+        File[] list = plugin.getDataFolder().listFiles((dir, name) -> name.startsWith(PREFIX) && name.endsWith(SUFFIX));
+        if (list != null) {
+            for (File f : list) {
+                String name = f.getName();
+                String lang = normalize(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+                if (!lang.isEmpty()) files.put(lang, YamlConfiguration.loadConfiguration(f));
+            }
+        }
+        // Мова за замовчуванням є завжди, навіть без файлу: тоді працюють запасні варіанти
+        if (!files.containsKey(defaultLang)) files.put(defaultLang, new YamlConfiguration());
+
+        Msg[] keys = Msg.values();
+        String[] paths = new String[keys.length];
+        // В enum ключі записані як GUI_TITLE, тому переводимо їх у вигляд "gui.title"
+        for (Msg k : keys) paths[k.ordinal()] = k.name().toLowerCase(Locale.ROOT).replace('_', '.');
+
+        YamlConfiguration def = files.get(defaultLang);
+        YamlConfiguration en = files.get("en");
+        List<String> langs = new ArrayList<>(files.keySet());
+        Map<String, Integer> index = new HashMap<>();
+        String[][] texts = new String[langs.size()][];
+        for (int li = 0; li < langs.size(); li++) {
+            YamlConfiguration y = files.get(langs.get(li));
+            String[] row = new String[keys.length];
+            for (int k = 0; k < keys.length; k++) {
+                String s = y.getString(paths[k]);
+                if (s == null) s = def.getString(paths[k]);
+                if (s == null && en != null) s = en.getString(paths[k]);
+                if (s == null) s = keys[k].name();
+                // Підтримуємо кольорові коди у стилі &6
+                row[k] = ChatColor.translateAlternateColorCodes('&', s);
+            }
+            texts[li] = row;
+            index.put(langs.get(li), li);
+        }
+        return new Table(Collections.unmodifiableList(langs), index, texts, index.get(defaultLang));
+    }
+
+    private static String normalize(String lang) {
+        return lang == null ? "" : lang.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /** Незмінний знімок усіх перекладів. */
+    private static final class Table {
+        final List<String> langs;
+        final Map<String, Integer> index;
+        final String[][] texts;
+        final int defaultIdx;
+
+        Table(List<String> langs, Map<String, Integer> index, String[][] texts, int defaultIdx) {
+            this.langs = langs;
+            this.index = index;
+            this.texts = texts;
+            this.defaultIdx = defaultIdx;
+        }
+    }
 }
@@ -22,6 +22,7 @@ public enum Msg {
     ERROR_BLOCKED,
     ERROR_ALREADY_REGISTERED,
     ERROR_NOT_REGISTERED,
+    ERROR_REGISTRATION_LIMIT,
     SUCCESS_REGISTERED,
     SUCCESS_LOGGED_IN,
     BOSSBAR_TEXT_UA,
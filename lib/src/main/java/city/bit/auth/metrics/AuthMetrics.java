@@ -0,0 +1,118 @@
+package city.bit.auth.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Лічильники та гістограми затримок авторизації.
+ *
+ * Один екземпляр на процес ({@link #get()}): інструментовані класи
+ * (хешер, сервіси, слухач) звертаються до полів напряму, тож запис —
+ * це інкремент {@link LongAdder} або {@link Histogram}, без блокувань
+ * і без виділення пам'яті. Час рахується в наносекундах від System.nanoTime().
+ *
+ * Читають метрики /bcauth stats ({@link #statsLines()}) та
+ * {@link MetricsExporter} ({@link #toPrometheus()}).
+ */
+public final class AuthMetrics {
+
+    private static final AuthMetrics GLOBAL = new AuthMetrics();
+
+    // Події
+    public final LongAdder logins = new LongAdder();
+    public final LongAdder loginFailures = new LongAdder();
+    public final LongAdder rateLimited = new LongAdder();
+    public final LongAdder autoLogins = new LongAdder();
+    public final LongAdder cookieResumes = new LongAdder();
+    public final LongAdder registrations = new LongAdder();
+    public final LongAdder idleKicks = new LongAdder();
+    public final LongAdder bytesWritten = new LongAdder();
+
+    // Затримки, нс
+    public final Histogram hash = new Histogram();
+    public final Histogram verify = new Histogram();
+    public final Histogram lockWait = new Histogram();
+    public final Histogram usersSave = new Histogram();
+    public final Histogram sessionsSave = new Histogram();
+    public final Histogram joinToAuth = new Histogram();
+    // Розмір одного атомарного запису файлу, байти
+    public final Histogram fileWrite = new Histogram();
+
+    private final long startedAt = System.currentTimeMillis();
+
+    private AuthMetrics() {}
+
+    public static AuthMetrics get() { return GLOBAL; }
+
+    /** Рядки для /bcauth stats: лічильники та p50/p99/max у мілісекундах. */
+    public List<String> statsLines() {
+        List<String> out = new ArrayList<>();
+        out.add("auth events: logins=" + logins.sum() + " failures=" + loginFailures.sum()
+                + " rateLimited=" + rateLimited.sum() + " autoLogins=" + autoLogins.sum()
+                + " cookieResumes=" + cookieResumes.sum() + " registrations=" + registrations.sum()
+                + " idleKicks=" + idleKicks.sum());
+        out.add(latency("hash", hash) + " " + latency("verify", verify) + " " + latency("lockWait", lockWait));
+        out.add(latency("usersSave", usersSave) + " " + latency("sessionsSave", sessionsSave)
+                + " " + latency("joinToAuth", joinToAuth));
+        out.add("file writes: n=" + fileWrite.count() + " bytes=" + bytesWritten.sum()
+                + " p99=" + fileWrite.percentile(0.99) + "B max=" + fileWrite.max() + "B");
+        return out;
+    }
+
+    /** Текстовий формат Prometheus 0.0.4: лічильники та summary з квантилями. */
+    public String toPrometheus() {
+        StringBuilder sb = new StringBuilder(4096);
+        counter(sb, "bcauth_logins_total", "Successful password logins", logins);
+        counter(sb, "bcauth_login_failures_total", "Rejected passwords", loginFailures);
+        counter(sb, "bcauth_rate_limited_total", "Login attempts rejected by rate limits", rateLimited);
+        counter(sb, "bcauth_auto_logins_total", "Logins restored from a session", autoLogins);
+        counter(sb, "bcauth_cookie_resumes_total", "Sessions restored from a client cookie", cookieResumes);
+        counter(sb, "bcauth_registrations_total", "New accounts", registrations);
+        counter(sb, "bcauth_idle_kicks_total", "Players kicked for not logging in", idleKicks);
+        counter(sb, "bcauth_file_write_bytes_total", "Bytes written atomically to data files", bytesWritten);
+        summary(sb, "bcauth_hash_seconds", "Password hashing time", hash, 1e-9);
+        summary(sb, "bcauth_verify_seconds", "Password verification time", verify, 1e-9);
+        summary(sb, "bcauth_lock_wait_seconds", "Wait for an account stripe lock", lockWait, 1e-9);
+        summary(sb, "bcauth_users_save_seconds", "Users saveNow duration", usersSave, 1e-9);
+        summary(sb, "bcauth_sessions_save_seconds", "Sessions saveNow duration", sessionsSave, 1e-9);
+        summary(sb, "bcauth_join_to_auth_seconds", "Time from join to authenticated", joinToAuth, 1e-9);
+        summary(sb, "bcauth_file_write_bytes", "Size of one atomic file write", fileWrite, 1);
+        sb.append("# TYPE bcauth_start_time_seconds gauge\n")
+                .append("bcauth_start_time_seconds ").append(startedAt / 1000).append('\n');
+        return sb.toString();
+    }
+
+    private static String latency(String name, Histogram h) {
+        return name + "[n=" + h.count() + " p50=" + ms(h.percentile(0.5)) + " p99=" + ms(h.percentile(0.99))
+                + " max=" + ms(h.max()) + "ms]";
+    }
+
+    private static String ms(long nanos) {
+        return String.format(Locale.ROOT, "%.2f", nanos / 1e6);
+    }
+
+    private static void counter(StringBuilder sb, String name, String help, LongAdder v) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(" counter\n");
+        sb.append(name).append(' ').append(v.sum()).append('\n');
+    }
+
+    private static void summary(StringBuilder sb, String name, String help, Histogram h, double scale) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(" summary\n");
+        for (double q : new double[]{0.5, 0.9, 0.99}) {
+            sb.append(name).append("{quantile=\"").append(q).append("\"} ")
+                    .append(num(h.percentile(q) * scale)).append('\n');
+        }
+        sb.append(name).append("_sum ").append(num(h.sum() * scale)).append('\n');
+        sb.append(name).append("_count ").append(h.count()).append('\n');
+        sb.append("# TYPE ").append(name).append("_max gauge\n");
+        sb.append(name).append("_max ").append(num(h.max() * scale)).append('\n');
+    }
+
+    private static String num(double v) {
+        return v == Math.rint(v) && Math.abs(v) < 1e15 ? Long.toString((long) v) : Double.toString(v);
+    }
+}
@@ -0,0 +1,87 @@
+package city.bit.auth.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Гістограма у стилі HDR: кожен степінь двійки ділиться на 16 рівних
+ * кошиків, тож відносна похибка перцентилів не більша за 1/16 (~6%)
+ * на всьому діапазоні від 1 до 2^40 (для наносекунд — понад 18 хвилин).
+ *
+ * Запис — один атомарний інкремент кошика та два LongAdder, без блокувань
+ * і без виділення пам'яті. Значення поза діапазоном потрапляють в останній кошик.
+ */
+public final class Histogram {
+
+    private static final int SUB_BITS = 4;
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int MAX_EXP = 40;
+    private static final int BUCKETS = (MAX_EXP - SUB_BITS + 2) * SUB;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /** Записує одне значення; від'ємні вважаються нулем. */
+    public void record(long value) {
+        long v = Math.max(0, value);
+        counts.incrementAndGet(index(v));
+        count.increment();
+        sum.add(v);
+        if (v > max.get()) max.accumulateAndGet(v, Math::max);
+    }
+
+    /** Записує час, що минув від start (System.nanoTime()). */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public long count() { return count.sum(); }
+
+    public long sum() { return sum.sum(); }
+
+    public long max() { return max.get(); }
+
+    /**
+     * Значення, не більше за яке лежить частка q усіх записів (0..1).
+     * Повертає середину кошика; 0, якщо записів немає.
+     */
+    public long percentile(double q) {
+        long total = 0;
+        long[] snap = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snap[i] = counts.get(i);
+            total += snap[i];
+        }
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(q * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snap[i];
+            if (seen >= rank) return Math.min(max.get(), (lowerBound(i) + upperBound(i)) / 2);
+        }
+        return max.get();
+    }
+
+    static int index(long v) {
+        if (v < SUB) return (int) v;
+        int e = 63 - Long.numberOfLeadingZeros(v);
+        if (e > MAX_EXP) return BUCKETS - 1;
+        int sub = (int) (v >>> (e - SUB_BITS)) & (SUB - 1);
+        return (e - SUB_BITS + 1) * SUB + sub;
+    }
+
+    static long lowerBound(int i) {
+        if (i < SUB) return i;
+        int e = i / SUB + SUB_BITS - 1;
+        return (long) (SUB + i % SUB) << (e - SUB_BITS);
+    }
+
+    static long upperBound(int i) {
+        if (i < SUB) return i;
+        int e = i / SUB + SUB_BITS - 1;
+        return lowerBound(i) + (1L << (e - SUB_BITS)) - 1;
+    }
+}
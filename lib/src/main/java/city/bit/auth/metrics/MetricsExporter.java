@@ -0,0 +1,79 @@
+package city.bit.auth.metrics;
+
+import city.bit.auth.storage.AtomicFiles;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Віддає {@link AuthMetrics} назовні у текстовому форматі Prometheus.
+ *
+ * Два незалежні способи: HTTP-ендпоінт /metrics, прив'язаний лише до
+ * loopback-адреси (ззовні сервера його не видно), та періодичний запис
+ * metrics.prom у папку плагіна для textfile-колектора node_exporter.
+ * Обидва працюють в одному фоновому потоці-демоні й не чіпають основний потік.
+ */
+public final class MetricsExporter {
+
+    private final AuthMetrics metrics;
+    private final Logger log;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "BitCityAuth-metrics");
+        t.setDaemon(true);
+        return t;
+    });
+    private HttpServer server;
+
+    public MetricsExporter(AuthMetrics metrics, Logger log) {
+        this.metrics = metrics;
+        this.log = log;
+    }
+
+    /**
+     * Запускає експорт.
+     *
+     * @param port            порт HTTP-ендпоінта на 127.0.0.1; 0 — вимкнено
+     * @param file            куди писати знімок метрик
+     * @param intervalSeconds період запису файлу; 0 — вимкнено
+     */
+    public void start(int port, File file, int intervalSeconds) throws IOException {
+        if (port > 0) {
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 4);
+            server.createContext("/metrics", ex -> {
+                byte[] body = metrics.toPrometheus().getBytes(StandardCharsets.UTF_8);
+                ex.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                ex.sendResponseHeaders(200, body.length);
+                try (OutputStream out = ex.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+            server.setExecutor(executor);
+            server.start();
+            log.info("Metrics endpoint: http://" + server.getAddress().getHostString() + ":" + port + "/metrics");
+        }
+        if (intervalSeconds > 0) {
+            executor.scheduleWithFixedDelay(() -> {
+                try {
+                    AtomicFiles.writeString(file, metrics.toPrometheus());
+                } catch (IOException ex) {
+                    log.warning("Write " + file.getName() + " failed: " + ex);
+                }
+            }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /** Зупиняє ендпоінт і запис файлу. */
+    public void stop() {
+        if (server != null) server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -7,10 +7,19 @@ package city.bit.auth.model;
  */
 public class SessionRecord {
     public String nickname; // Нік гравця, до якого належить ця сесія
-    public String token;    // Випадковий токен (наразі не використовується, але може знадобитись)
+    public String token;    // Підписаний токен відновлення сесії (див. SessionTokens)
     public String lastIp;   // Остання IP-адреса, з якої заходив гравець
     public long createdAt;  // Час створення сесії
     public long expiresAt;  // Час, коли сесія стане недійсною
 
     public SessionRecord() {}
+
+    /** Копія запису для фонового збереження. */
+    public SessionRecord(SessionRecord o) {
+        this.nickname = o.nickname;
+        this.token = o.token;
+        this.lastIp = o.lastIp;
+        this.createdAt = o.createdAt;
+        this.expiresAt = o.expiresAt;
+    }
 }
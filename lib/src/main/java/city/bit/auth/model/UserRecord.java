@@ -1,35 +1,174 @@
 package city.bit.auth.model;
 
+import city.bit.auth.sec.ParsedHash;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 /**
  * Запис користувача, який зберігається у файлі users.yml.
  * Тут зберігається мінімальна інформація про акаунт без використання БД.
+ * Поля, що змінюються після додавання запису в мапу, позначені volatile:
+ * їх читають без блокувань із різних потоків.
+ *
+ * Записів у пам'яті може бути мільйони, тож вони компактні: хеш пароля
+ * лежить одним масивом байтів ({@link ParsedHash#pack}), а алгоритм і мова —
+ * номерами у спільній таблиці рядків. Нікнейм окремо не зберігається:
+ * запис посилається на той самий рядок-ключ, що й мапа акаунтів, а регістр
+ * літер тримає бітовою маскою. Назовні ці поля видно як звичайні рядки
+ * через {@link #nickname()}, {@link #passHash()}, {@link #algo()} та
+ * {@link #lang()}, тож формат файлів не змінюється.
  */
 public class UserRecord {
-    // Нікнейм гравця
-    public String nickname;
-    // Хеш пароля у форматі algo:iterations:salt:hashBase64
-    public String passHash;
-    // Назва алгоритму, наприклад "pbkdf2"
-    public String algo;
+    // Спільна таблиця значень algo і lang; їх лічені одиниці на весь сервер
+    private static final List<String> SYMBOLS = new CopyOnWriteArrayList<>();
+    private static final Map<String, Short> SYMBOL_IDS = new ConcurrentHashMap<>();
+    private static final short NONE = -1;
+    // Маска: name — сам нікнейм, бо з ключа його не відновити
+    private static final int AS_IS = -1;
+    // Найдовший нікнейм, регістр якого поміщається в маску (біт 31 зайнятий AS_IS)
+    private static final int MAX_MASKED = 31;
+
+    // Ключ запису (нікнейм у нижньому регістрі) або сам нікнейм, якщо caseMask == AS_IS
+    private String name;
+    // Біт i — символ i нікнейма є великою латинською літерою
+    private int caseMask;
+    // Хеш пароля, пакований з формату algo:iterations:salt:hashBase64
+    private volatile byte[] hash;
     // Електронна пошта (необов'язкове поле)
-    public String email;
-    // Обрана мова інтерфейсу, "ua" або "en"
-    public String lang;
+    public volatile String email;
     // Час створення акаунта в мілісекундах
     public long createdAt;
     // Час останнього входу
-    public long lastLoginAt;
+    public volatile long lastLoginAt;
+    // Номери назви алгоритму ("pbkdf2") та мови ("ua", "en") у SYMBOLS
+    private volatile short algo = NONE;
+    private volatile short lang = NONE;
     // Чи заблокований акаунт адміністратором
-    public boolean blocked;
+    public volatile boolean blocked;
 
     public UserRecord() {}
 
     public UserRecord(String nickname, String passHash, String algo, String lang) {
-        this.nickname = nickname;
-        this.passHash = passHash;
-        this.algo = algo;
-        this.lang = lang;
+        setNickname(nickname);
+        this.hash = ParsedHash.pack(passHash);
+        this.algo = symbol(algo);
+        this.lang = symbol(lang);
         this.createdAt = System.currentTimeMillis();
         this.blocked = false;
     }
+
+    /** Копія запису (наприклад, для запису знімка у фоновому потоці). */
+    public UserRecord(UserRecord o) {
+        this.name = o.name;
+        this.caseMask = o.caseMask;
+        this.hash = o.hash;
+        this.algo = o.algo;
+        this.email = o.email;
+        this.lang = o.lang;
+        this.createdAt = o.createdAt;
+        this.lastLoginAt = o.lastLoginAt;
+        this.blocked = o.blocked;
+    }
+
+    /** Нікнейм гравця з регістром, як при реєстрації (новий рядок, якщо в ньому є великі літери). */
+    public String nickname() {
+        if (caseMask == 0 || caseMask == AS_IS) return name;
+        char[] c = name.toCharArray();
+        for (int i = 0; i < c.length; i++) {
+            if ((caseMask & (1 << i)) != 0) c[i] = (char) (c[i] - ('a' - 'A'));
+        }
+        return new String(c);
+    }
+
+    /** Ключ запису — нікнейм у нижньому регістрі. */
+    public String key() {
+        return caseMask == AS_IS && name != null ? name.toLowerCase(Locale.ROOT) : name;
+    }
+
+    public void setNickname(String nickname) {
+        setNickname(nickname == null ? null : nickname.toLowerCase(Locale.ROOT), nickname);
+    }
+
+    /**
+     * Задає нікнейм для запису з ключем key. Щоб запис не тримав другий
+     * рядок, key варто передавати тим самим об'єктом, що лежить у мапі.
+     */
+    public void setNickname(String key, String nickname) {
+        if (nickname == null) nickname = key;
+        int mask = key == null ? AS_IS : caseMask(key, nickname);
+        this.name = mask == AS_IS ? nickname : key;
+        this.caseMask = mask;
+    }
+
+    /** Хеш пароля у форматі algo:iterations:salt:hashBase64 (новий рядок при кожному виклику). */
+    public String passHash() { return ParsedHash.unpack(hash); }
+
+    public void setPassHash(String passHash) { this.hash = ParsedHash.pack(passHash); }
+
+    /** Назва алгоритму, наприклад "pbkdf2". */
+    public String algo() { return name(algo); }
+
+    public void setAlgo(String algo) { this.algo = symbol(algo); }
+
+    /** Обрана мова інтерфейсу, "ua" або "en". */
+    public String lang() { return name(lang); }
+
+    public void setLang(String lang) { this.lang = symbol(lang); }
+
+    /**
+     * Розібраний поточний хеш пароля. Сіль і ключ копіюються з пакованого
+     * масиву без декодування Base64. null — формат хешу невідомий.
+     */
+    public ParsedHash parsedHash() {
+        return ParsedHash.unpacked(hash);
+    }
+
+    /** Чи однакові всі збережувані поля двох записів. */
+    public boolean sameAs(UserRecord o) {
+        return caseMask == o.caseMask && Objects.equals(name, o.name) && Arrays.equals(hash, o.hash)
+                && algo == o.algo && Objects.equals(email, o.email) && lang == o.lang
+                && createdAt == o.createdAt && lastLoginAt == o.lastLoginAt && blocked == o.blocked;
+    }
+
+    /** Маска великих літер, з якою nickname відновлюється з key, або AS_IS. */
+    private static int caseMask(String key, String nickname) {
+        int n = nickname.length();
+        if (n != key.length() || n > MAX_MASKED) return AS_IS;
+        int mask = 0;
+        for (int i = 0; i < n; i++) {
+            char k = key.charAt(i);
+            char c = nickname.charAt(i);
+            if (c == k) continue;
+            if (c < 'A' || c > 'Z' || k != c + ('a' - 'A')) return AS_IS;
+            mask |= 1 << i;
+        }
+        return mask;
+    }
+
+    private static String name(short id) {
+        return id == NONE ? null : SYMBOLS.get(id);
+    }
+
+    private static short symbol(String s) {
+        if (s == null) return NONE;
+        Short id = SYMBOL_IDS.get(s);
+        return id != null ? id : register(s);
+    }
+
+    private static synchronized short register(String s) {
+        Short id = SYMBOL_IDS.get(s);
+        if (id != null) return id;
+        if (SYMBOLS.size() == Short.MAX_VALUE) throw new IllegalStateException("Too many distinct algo/lang values");
+        // Спершу рядок, потім номер: хто бачить номер, той знайде і рядок
+        SYMBOLS.add(s);
+        short next = (short) (SYMBOLS.size() - 1);
+        SYMBOL_IDS.put(s, next);
+        return next;
+    }
 }
@@ -0,0 +1,124 @@
+package city.bit.auth.network;
+
+import city.bit.auth.storage.AtomicFiles;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Транспорт через спільну теку (network.sessions.mode: directory) — заміна
+ * plugin messaging для вузлів на одній машині або зі спільним диском.
+ *
+ * Кожна подія — окремий файл "час-номер-вузол.evt", записаний атомарно.
+ * Фоновий потік раз на poll_millis читає нові файли інших вузлів у порядку
+ * імен. Файли, старші за RETENTION_MS, видаляє будь-який вузол. Вузол,
+ * вимкнений довше, пропущених подій уже не отримає: такі гравці один раз
+ * увійдуть за паролем або за токеном із cookie.
+ */
+public final class DirectorySessionTransport implements SessionTransport {
+
+    private static final String SUFFIX = ".evt";
+    private static final long RETENTION_MS = 60_000;
+
+    private final File dir;
+    private final String node;
+    private final long pollMillis;
+    private final Logger log;
+    private final AtomicLong seq = new AtomicLong();
+    // Файли, які вже доставлено; лише з потоку транспорту
+    private final Set<String> seen = new HashSet<>();
+    private final ScheduledExecutorService worker;
+    private Consumer<byte[]> receiver;
+
+    /**
+     * @param node ідентифікатор вузла; лише літери, цифри, '_' і '-'
+     */
+    public DirectorySessionTransport(File dir, String node, long pollMillis, Logger log) {
+        this.dir = dir;
+        this.node = node;
+        this.pollMillis = Math.max(10, pollMillis);
+        this.log = log;
+        this.worker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "BitCityAuth-network");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @Override
+    public void start(Consumer<byte[]> receiver) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Cannot create directory " + dir);
+        this.receiver = receiver;
+        worker.scheduleWithFixedDelay(this::poll, 0, pollMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /** Файл пишеться у потоці транспорту, щоб не чекати fsync у потоці гравця. */
+    @Override
+    public void publish(byte[] message) {
+        String name = System.currentTimeMillis() + "-" + String.format("%06d", seq.incrementAndGet() % 1_000_000)
+                + "-" + node + SUFFIX;
+        worker.execute(() -> {
+            try {
+                AtomicFiles.write(new File(dir, name), message);
+            } catch (IOException ex) {
+                log.warning("Publish session event failed: " + ex);
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        worker.shutdown();
+        try {
+            worker.awaitTermination(2, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void poll() {
+        String[] names = dir.list((d, n) -> n.endsWith(SUFFIX));
+        if (names == null) return;
+        Arrays.sort(names);
+        long now = System.currentTimeMillis();
+        String own = "-" + node + SUFFIX;
+        // Забуваємо файли, яких уже немає; HashSet, щоб не шукати лінійно для кожного
+        seen.retainAll(new HashSet<>(Arrays.asList(names)));
+        for (String name : names) {
+            File f = new File(dir, name);
+            if (now - timeOf(name) > RETENTION_MS) {
+                // Прибирає будь-який вузол; паралельне видалення — не помилка
+                f.delete();
+                continue;
+            }
+            if (name.endsWith(own) || !seen.add(name)) continue;
+            try {
+                receiver.accept(Files.readAllBytes(f.toPath()));
+            } catch (NoSuchFileException ex) {
+                // Встигли видалити як застарілий
+            } catch (IOException | RuntimeException ex) {
+                log.warning("Read session event " + name + " failed: " + ex);
+            }
+        }
+    }
+
+    private static long timeOf(String name) {
+        int dash = name.indexOf('-');
+        try {
+            return dash > 0 ? Long.parseLong(name.substring(0, dash)) : 0;
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package city.bit.auth.network;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Транспорт усередині одного процесу: кілька {@link NetworkSessions}
+ * (кілька "вузлів") підключаються до однієї шини. Повідомлення
+ * доставляється всім іншим підключеним синхронно, у потоці відправника,
+ * тож після {@link SessionTransport#publish} подію вже застосовано.
+ *
+ * Для тестів і бенчмарків мережевих сесій без проксі та файлової системи.
+ */
+public final class LocalSessionBus {
+
+    private final List<Endpoint> endpoints = new CopyOnWriteArrayList<>();
+
+    /** Новий вузол на шині. */
+    public SessionTransport connect() {
+        return new Endpoint();
+    }
+
+    private final class Endpoint implements SessionTransport {
+        private volatile Consumer<byte[]> receiver;
+
+        @Override
+        public void start(Consumer<byte[]> receiver) {
+            this.receiver = receiver;
+            endpoints.add(this);
+        }
+
+        @Override
+        public void publish(byte[] message) {
+            for (Endpoint e : endpoints) {
+                Consumer<byte[]> r = e.receiver;
+                if (e != this && r != null) r.accept(message.clone());
+            }
+        }
+
+        @Override
+        public void close() {
+            endpoints.remove(this);
+            receiver = null;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package city.bit.auth.network;
+
+import city.bit.auth.sec.SessionTokens;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Мережеві сесії (network.sessions.mode): вузол розсилає події своїх сесій
+ * через {@link SessionTransport} і приймає події інших вузлів у локальну
+ * мапу {@link city.bit.auth.service.SessionService}. Тому автологін після
+ * переходу з іншого сервера — звичайний пошук у пам'яті цього вузла.
+ *
+ * Порядок подій задає версія: гібридний логічний годинник (мілісекунди
+ * зсунуті на 12 біт плюс лічильник) і 8 біт ідентифікатора вузла, щоб
+ * версії різних вузлів не збігались. Для кожного ключа пам'ятається
+ * найбільша відома версія, зокрема й після анулювання сесії, тож запізніле
+ * "створення" не воскресить анульовану сесію. Записи старші за термін дії
+ * сесії прибираються {@link #prune}.
+ *
+ * Кожне повідомлення підписане ключем, виведеним зі спільного
+ * session_secret.key ({@link SessionTokens#seal}): подію без правильного підпису вузол
+ * відкидає ще до розбору. Версія з майбутнього (далі за MAX_SKEW_MS)
+ * теж відкидається, щоб не відкрутити годинник уперед.
+ */
+public final class NetworkSessions {
+
+    private static final int NODE_BITS = 8;
+    private static final int COUNTER_BITS = 12;
+    // Допустимий випереджальний зсув годинника іншого вузла
+    private static final long MAX_SKEW_MS = 5 * 60_000L;
+
+    private final String node;
+    private final long nodeSalt;
+    private final SessionTransport transport;
+    private final SessionTokens tokens;
+    private final Logger log;
+    // Ключ -> найбільша застосована версія
+    private final Map<String, Long> versions = new ConcurrentHashMap<>();
+    // Останнє значення годинника (без біт вузла)
+    private long clock;
+
+    // Лічильники для /bcauth stats
+    private final LongAdder published = new LongAdder();
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder stale = new LongAdder();
+    private final LongAdder malformed = new LongAdder();
+    private final LongAdder forged = new LongAdder();
+
+    /**
+     * @param tokens токени цього вузла; їхнім ключем підписуються повідомлення
+     */
+    public NetworkSessions(String node, SessionTransport transport, SessionTokens tokens, Logger log) {
+        this.node = node;
+        this.nodeSalt = node.hashCode() & ((1 << NODE_BITS) - 1);
+        this.transport = transport;
+        this.tokens = tokens;
+        this.log = log;
+    }
+
+    /** Ідентифікатор цього вузла (поле origin у подіях). */
+    public String node() { return node; }
+
+    /**
+     * Починає приймати події інших вузлів. handler викликається з потоку
+     * транспорту; застосовувати подію він має лише після {@link #accept}.
+     */
+    public void start(Consumer<SessionEvent> handler) throws IOException {
+        transport.start(sealed -> {
+            byte[] message = tokens.open(sealed);
+            if (message == null) {
+                // Не логуємо кожне: інакше чужий відправник засипле лог
+                forged.increment();
+                return;
+            }
+            SessionEvent ev;
+            try {
+                ev = SessionEvent.decode(message);
+            } catch (IOException ex) {
+                malformed.increment();
+                log.warning("Dropping malformed session event: " + ex.getMessage());
+                return;
+            }
+            if (node.equals(ev.origin)) return;
+            long millis = ev.version >>> (COUNTER_BITS + NODE_BITS);
+            if (ev.version <= 0 || millis > System.currentTimeMillis() + MAX_SKEW_MS) {
+                malformed.increment();
+                log.warning("Dropping session event from " + ev.origin + " with a version "
+                        + (millis - System.currentTimeMillis()) + " ms ahead of the local clock");
+                return;
+            }
+            observe(ev.version);
+            handler.accept(ev);
+        });
+    }
+
+    /**
+     * Версія для локальної зміни ключа; одразу стає найбільшою відомою,
+     * тож старіші події інших вузлів для цього ключа вже не застосуються.
+     */
+    public long stamp(String key) {
+        long v = tick();
+        versions.merge(key, v, Math::max);
+        return v;
+    }
+
+    /**
+     * Чи новіша подія за все, що вузол уже знає про цей ключ. Якщо так —
+     * її версія запам'ятовується, і викликач має застосувати подію.
+     */
+    public boolean accept(String key, long version) {
+        boolean[] newer = {false};
+        versions.compute(key, (k, cur) -> {
+            if (cur != null && cur >= version) return cur;
+            newer[0] = true;
+            return version;
+        });
+        (newer[0] ? applied : stale).increment();
+        return newer[0];
+    }
+
+    /** Розсилає подію іншим вузлам. */
+    public void publish(SessionEvent ev) {
+        transport.publish(tokens.seal(ev.encode()));
+        published.increment();
+    }
+
+    /** Забуває версії, старші за вказаний момент (мс): їхні сесії вже точно прострочені. */
+    public void prune(long olderThanMillis) {
+        versions.values().removeIf(v -> v >>> (COUNTER_BITS + NODE_BITS) < olderThanMillis);
+    }
+
+    public void close() {
+        transport.close();
+    }
+
+    /** Короткий звіт для адміністратора. */
+    public String debugStats() {
+        return "network sessions: node=" + node + " published=" + published.sum() + " applied=" + applied.sum()
+                + " stale=" + stale.sum() + " malformed=" + malformed.sum() + " forged=" + forged.sum()
+                + " versions=" + versions.size();
+    }
+
+    private synchronized long tick() {
+        clock = Math.max(clock + 1, System.currentTimeMillis() << COUNTER_BITS);
+        return clock << NODE_BITS | nodeSalt;
+    }
+
+    /** Годинник не відстає від побачених версій інших вузлів. */
+    private synchronized void observe(long version) {
+        clock = Math.max(clock, version >>> NODE_BITS);
+    }
+}
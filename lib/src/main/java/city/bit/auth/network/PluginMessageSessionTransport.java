@@ -0,0 +1,108 @@
+package city.bit.auth.network;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.messaging.PluginMessageListener;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.*;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Транспорт через канал plugin messaging проксі (network.sessions.mode: plugin).
+ * Повідомлення йде командою Forward каналу "BungeeCord" (його розуміють
+ * і BungeeCord, і Velocity) на всі інші сервери мережі.
+ *
+ * Обмеження протоколу: повідомлення передається через з'єднання гравця,
+ * тож сервер без жодного гравця онлайн не може ні надіслати, ні отримати
+ * подію. Вихідні події чекають у черзі (до MAX_PENDING) першого гравця;
+ * вхідні, пропущені порожнім сервером, закриває токен із cookie.
+ */
+public final class PluginMessageSessionTransport implements SessionTransport, PluginMessageListener {
+
+    private static final String CHANNEL = "BungeeCord";
+    private static final String SUBCHANNEL = "BitCityAuthSessions";
+    private static final int MAX_PENDING = 1024;
+
+    private final Plugin plugin;
+    private final Queue<byte[]> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingSize = new AtomicInteger();
+    private volatile Consumer<byte[]> receiver;
+    private BukkitTask drainTask;
+
+    public PluginMessageSessionTransport(Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public void start(Consumer<byte[]> receiver) {
+        this.receiver = receiver;
+        plugin.getServer().getMessenger().registerOutgoingPluginChannel(plugin, CHANNEL);
+        plugin.getServer().getMessenger().registerIncomingPluginChannel(plugin, CHANNEL, this);
+        // Повідомлення надсилаються з основного потоку; раз на секунду — на випадок, якщо чекали гравця
+        drainTask = Bukkit.getScheduler().runTaskTimer(plugin, this::drain, 20, 20);
+    }
+
+    @Override
+    public void publish(byte[] message) {
+        pending.add(message);
+        // Черга обмежена: без гравців онлайн найстаріші події відкидаються
+        if (pendingSize.incrementAndGet() > MAX_PENDING && pending.poll() != null) pendingSize.decrementAndGet();
+        if (Bukkit.isPrimaryThread()) drain();
+    }
+
+    @Override
+    public void close() {
+        if (drainTask != null) drainTask.cancel();
+        drain();
+        plugin.getServer().getMessenger().unregisterIncomingPluginChannel(plugin, CHANNEL, this);
+        plugin.getServer().getMessenger().unregisterOutgoingPluginChannel(plugin, CHANNEL);
+        receiver = null;
+    }
+
+    @Override
+    public void onPluginMessageReceived(String channel, Player player, byte[] data) {
+        Consumer<byte[]> r = receiver;
+        if (!CHANNEL.equals(channel) || r == null) return;
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            if (!SUBCHANNEL.equals(in.readUTF())) return;
+            byte[] message = new byte[in.readUnsignedShort()];
+            in.readFully(message);
+            r.accept(message);
+        } catch (IOException ex) {
+            plugin.getLogger().warning("Malformed session message from proxy: " + ex);
+        }
+    }
+
+    /** Надсилає чергу через будь-якого гравця онлайн. Лише з основного потоку. */
+    private void drain() {
+        if (pending.isEmpty()) return;
+        Iterator<? extends Player> online = Bukkit.getOnlinePlayers().iterator();
+        if (!online.hasNext()) return;
+        Player carrier = online.next();
+        byte[] message;
+        while ((message = pending.poll()) != null) {
+            pendingSize.decrementAndGet();
+            carrier.sendPluginMessage(plugin, CHANNEL, forward(message));
+        }
+    }
+
+    private static byte[] forward(byte[] message) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(message.length + 48);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF("Forward");
+            out.writeUTF("ALL");
+            out.writeUTF(SUBCHANNEL);
+            out.writeShort(message.length);
+            out.write(message);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,95 @@
+package city.bit.auth.network;
+
+import city.bit.auth.model.SessionRecord;
+
+import java.io.*;
+
+/**
+ * Подія сесії, якою обмінюються вузли мережі: створення, оновлення або
+ * анулювання сесії одного акаунта.
+ *
+ * version — мітка логічного годинника вузла-джерела ({@link NetworkSessions}):
+ * вузол застосовує подію, лише якщо її версія більша за відому йому для
+ * цього ключа, тож запізніле чи повторне повідомлення нічого не зламає.
+ * generation — покоління токенів акаунта на вузлі-джерелі
+ * ({@link city.bit.auth.sec.SessionTokens}).
+ */
+public final class SessionEvent {
+
+    public enum Type { CREATE, REFRESH, INVALIDATE }
+
+    // Версія формату повідомлення
+    private static final int FORMAT = 1;
+    // Рядок, якого немає (DataOutput.writeUTF не вміє null)
+    private static final String NULL = "\u0000";
+
+    public final Type type;
+    public final String origin;
+    public final String key;
+    public final long version;
+    public final int generation;
+    /** Стан сесії після події; null для INVALIDATE. */
+    public final SessionRecord session;
+
+    public SessionEvent(Type type, String origin, String key, long version, int generation, SessionRecord session) {
+        this.type = type;
+        this.origin = origin;
+        this.key = key;
+        this.version = version;
+        this.generation = generation;
+        this.session = session;
+    }
+
+    /** Кодує подію для транспорту. */
+    public byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(160);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT);
+            out.writeByte(type.ordinal());
+            out.writeUTF(origin);
+            out.writeUTF(key);
+            out.writeLong(version);
+            out.writeInt(generation);
+            if (session != null) {
+                out.writeUTF(str(session.nickname));
+                out.writeUTF(str(session.token));
+                out.writeUTF(str(session.lastIp));
+                out.writeLong(session.createdAt);
+                out.writeLong(session.expiresAt);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex); // запис у масив не падає
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Розбирає повідомлення; IOException — пошкоджене чи іншого формату. */
+    public static SessionEvent decode(byte[] message) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(message))) {
+            if (in.readUnsignedByte() != FORMAT) throw new IOException("Unknown session event format");
+            int t = in.readUnsignedByte();
+            if (t >= Type.values().length) throw new IOException("Unknown session event type " + t);
+            Type type = Type.values()[t];
+            String origin = in.readUTF();
+            String key = in.readUTF();
+            long version = in.readLong();
+            int generation = in.readInt();
+            SessionRecord s = null;
+            if (type != Type.INVALIDATE) {
+                s = new SessionRecord();
+                s.nickname = unstr(in.readUTF());
+                s.token = unstr(in.readUTF());
+                s.lastIp = unstr(in.readUTF());
+                s.createdAt = in.readLong();
+                s.expiresAt = in.readLong();
+            }
+            return new SessionEvent(type, origin, key, version, generation, s);
+        } catch (EOFException ex) {
+            throw new IOException("Truncated session event", ex);
+        }
+    }
+
+    private static String str(String v) { return v == null ? NULL : v; }
+
+    private static String unstr(String v) { return NULL.equals(v) ? null : v; }
+}
@@ -0,0 +1,24 @@
+package city.bit.auth.network;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Канал, яким вузли розсилають один одному події сесій
+ * ({@link SessionEvent#encode()}).
+ *
+ * Доставка "щонайменше раз" і без гарантії порядку: порядок відновлює
+ * версія події. Власні повідомлення вузла транспорт назад не доставляє
+ * (а якщо й доставить — {@link NetworkSessions} їх відкине за origin).
+ */
+public interface SessionTransport {
+
+    /** Починає доставку вхідних повідомлень; receiver викликається з потоку транспорту. */
+    void start(Consumer<byte[]> receiver) throws IOException;
+
+    /** Розсилає повідомлення іншим вузлам. Не блокує надовго. */
+    void publish(byte[] message);
+
+    /** Зупиняє доставку та звільняє ресурси. */
+    void close();
+}
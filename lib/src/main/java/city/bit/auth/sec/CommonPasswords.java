@@ -0,0 +1,136 @@
+package city.bit.auth.sec;
+
+import city.bit.auth.storage.AtomicFiles;
+
+import java.io.*;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Фільтр поширених паролів для auth.password.disallow_common.
+ *
+ * Текстовий список (один пароль на рядок) компілюється у файл відсортованих
+ * 64-бітних хешів. Файл відображається в пам'ять через NIO і шукається
+ * бінарним пошуком, тож навіть мільйони записів не створюють жодного
+ * String у купі, а перевірка — це хеш рядка та ~25 читань з відображення.
+ *
+ * Порівняння без урахування регістру. Хибні збіги можливі лише при колізії
+ * 64-бітного хешу: для 10 млн записів імовірність близько 5e-13 на перевірку.
+ *
+ * Формат файлу: MAGIC, VERSION (int), кількість (long), далі хеші (long, big-endian).
+ */
+public final class CommonPasswords {
+
+    private static final int MAGIC = 0x42435057; // "BCPW"
+    private static final int VERSION = 1;
+    private static final int HEADER = 16;
+
+    private static final CommonPasswords EMPTY = new CommonPasswords(LongBuffer.allocate(0), 0);
+
+    private final LongBuffer hashes;
+    private final int count;
+
+    private CommonPasswords(LongBuffer hashes, int count) {
+        this.hashes = hashes;
+        this.count = count;
+    }
+
+    /** Порожній фільтр: нічого не вважається поширеним. */
+    public static CommonPasswords empty() {
+        return EMPTY;
+    }
+
+    /** Відкриває скомпільований файл і відображає його в пам'ять. */
+    public static CommonPasswords open(File bin) throws IOException {
+        try (FileChannel ch = FileChannel.open(bin.toPath(), StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size < HEADER) throw new IOException("Truncated password list: " + bin);
+            MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            map.order(ByteOrder.BIG_ENDIAN);
+            if (map.getInt(0) != MAGIC || map.getInt(4) != VERSION) throw new IOException("Not a compiled password list: " + bin);
+            long n = map.getLong(8);
+            if (n < 0 || HEADER + n * Long.BYTES != size) throw new IOException("Corrupt password list: " + bin);
+            // Відображення лишається дійсним і після закриття каналу
+            return new CommonPasswords(map.position(HEADER).slice().order(ByteOrder.BIG_ENDIAN).asLongBuffer(), (int) n);
+        }
+    }
+
+    /**
+     * Компілює текстовий список у файл хешів. Рядки читаються потоком,
+     * у пам'яті живе лише масив long. Порожні рядки та рядки з # пропускаються.
+     * Повертає кількість унікальних записів.
+     */
+    public static int compile(File txt, File bin) throws IOException {
+        long[] buf = new long[1 << 16];
+        int n = 0;
+        try (BufferedReader in = Files.newBufferedReader(txt.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isEmpty() || line.charAt(0) == '#') continue;
+                if (n == buf.length) buf = Arrays.copyOf(buf, buf.length * 2);
+                buf[n++] = hash(line);
+            }
+        }
+        Arrays.sort(buf, 0, n);
+        int unique = 0;
+        for (int i = 0; i < n; i++) {
+            if (unique == 0 || buf[i] != buf[unique - 1]) buf[unique++] = buf[i];
+        }
+        long[] sorted = buf;
+        int count = unique;
+        AtomicFiles.write(bin, os -> {
+            DataOutputStream out = new DataOutputStream(os);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(count);
+            for (int i = 0; i < count; i++) out.writeLong(sorted[i]);
+            out.flush();
+        });
+        return unique;
+    }
+
+    /** Чи є пароль у списку (без урахування регістру). */
+    public boolean contains(String password) {
+        if (count == 0) return false;
+        long h = hash(password);
+        int lo = 0, hi = count - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long v = hashes.get(mid);
+            if (v < h) lo = mid + 1;
+            else if (v > h) hi = mid - 1;
+            else return true;
+        }
+        return false;
+    }
+
+    public int size() { return count; }
+
+    /** Короткий звіт для адміністратора. */
+    public String debugStats() {
+        return "common passwords: entries=" + count + " mapped=" + (long) count * Long.BYTES / 1024 + "KiB";
+    }
+
+    /**
+     * 64-бітний хеш пароля у нижньому регістрі: FNV-1a по символах
+     * і перемішування splitmix64. Не залежить від JVM, тож файл переносний.
+     */
+    static long hash(String password) {
+        String s = password.toLowerCase(Locale.ROOT);
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001B3L;
+        }
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 31);
+    }
+}
@@ -0,0 +1,45 @@
+package city.bit.auth.sec;
+
+import java.util.Locale;
+
+/**
+ * Реєстр алгоритмів хешування паролів.
+ *
+ * Ідентифікатор записується першим полем рядка хешу (algo:iterations:salt:hash)
+ * і слугує версією формату: новий алгоритм чи інша довжина ключа — це нова
+ * константа з новим ідентифікатором, а наявні константи ніколи не змінюються,
+ * інакше старі хеші перестануть перевірятись.
+ */
+public enum HashAlgorithm {
+    PBKDF2_SHA256("pbkdf2", "PBKDF2WithHmacSHA256", "SHA-256", 64, 256, 100_000),
+    PBKDF2_SHA512("pbkdf2-sha512", "PBKDF2WithHmacSHA512", "SHA-512", 128, 512, 50_000);
+
+    /** Ідентифікатор у конфігурації та в рядку хешу. */
+    public final String id;
+    /** Назва алгоритму для SecretKeyFactory. */
+    public final String jcaName;
+    /** Геш-функція під HMAC і розмір її блоку в байтах (для {@link Pbkdf2}). */
+    public final String digestName;
+    public final int blockSize;
+    /** Довжина ключа у бітах. */
+    public final int keyBits;
+    /** Нижня межа ітерацій, нижче якої калібрування не опускається. */
+    public final int minIterations;
+
+    HashAlgorithm(String id, String jcaName, String digestName, int blockSize, int keyBits, int minIterations) {
+        this.id = id;
+        this.jcaName = jcaName;
+        this.digestName = digestName;
+        this.blockSize = blockSize;
+        this.keyBits = keyBits;
+        this.minIterations = minIterations;
+    }
+
+    /** Знаходить алгоритм за ідентифікатором; null, якщо такого немає. */
+    public static HashAlgorithm byId(String id) {
+        if (id == null) return null;
+        String v = id.toLowerCase(Locale.ROOT);
+        for (HashAlgorithm a : values()) if (a.id.equals(v)) return a;
+        return null;
+    }
+}
@@ -0,0 +1,106 @@
+package city.bit.auth.sec;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Окремий пул потоків для важких операцій хешування паролів (PBKDF2).
+ * Пул обмежений і за кількістю потоків, і за довжиною черги: якщо черга
+ * заповнена, нове завдання одразу відхиляється, а не накопичується в пам'яті.
+ * Паралельно ведуться прості лічильники: глибина черги та час очікування.
+ */
+public class HashingPool {
+
+    private final ThreadPoolExecutor executor;
+    private final int threads;
+    private final int queueCapacity;
+
+    // Лічильники для команди /bcauth stats
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder waitNanosTotal = new LongAdder();
+    private final AtomicLong waitNanosMax = new AtomicLong();
+
+    /**
+     * @param threads       кількість потоків; 0 або менше — половина доступних ядер
+     * @param queueCapacity максимальна кількість завдань, що чекають у черзі
+     */
+    public HashingPool(int threads, int queueCapacity) {
+        this.threads = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        this.queueCapacity = Math.max(1, queueCapacity);
+        AtomicInteger seq = new AtomicInteger();
+        ThreadFactory tf = r -> {
+            Thread t = new Thread(r, "BitCityAuth-hash-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+        this.executor = new ThreadPoolExecutor(this.threads, this.threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(this.queueCapacity), tf, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Ставить завдання у чергу пулу. Якщо черга переповнена, повернутий
+     * future завершується з {@link RejectedExecutionException}.
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> job) {
+        CompletableFuture<T> f = new CompletableFuture<>();
+        long enqueuedAt = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                long waited = System.nanoTime() - enqueuedAt;
+                waitNanosTotal.add(waited);
+                waitNanosMax.accumulateAndGet(waited, Math::max);
+                try {
+                    f.complete(job.get());
+                } catch (Throwable t) {
+                    f.completeExceptionally(t);
+                } finally {
+                    completed.increment();
+                }
+            });
+            submitted.increment();
+        } catch (RejectedExecutionException ex) {
+            rejected.increment();
+            f.completeExceptionally(ex);
+        }
+        return f;
+    }
+
+    /** Кількість завдань, що зараз чекають у черзі. */
+    public int queueDepth() { return executor.getQueue().size(); }
+
+    /** Середній час очікування завдання у черзі в мілісекундах. */
+    public double avgWaitMillis() {
+        long done = completed.sum();
+        return done == 0 ? 0 : waitNanosTotal.sum() / 1e6 / done;
+    }
+
+    /** Короткий звіт для адміністратора. */
+    public String debugStats() {
+        return "hash pool: threads=" + threads
+                + " active=" + executor.getActiveCount()
+                + " queue=" + queueDepth() + "/" + queueCapacity
+                + " submitted=" + submitted.sum()
+                + " completed=" + completed.sum()
+                + " rejected=" + rejected.sum()
+                + String.format(" waitAvg=%.1fms waitMax=%.1fms", avgWaitMillis(), waitNanosMax.get() / 1e6);
+    }
+
+    /**
+     * Зупиняє пул. Завдання, що вже стоять у черзі, ще отримують шанс
+     * завершитись протягом вказаного часу.
+     */
+    public void shutdown(long timeoutMs) {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(timeoutMs, TimeUnit.MILLISECONDS)) executor.shutdownNow();
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package city.bit.auth.sec;
+
+import java.io.IOException;
+import java.net.InetAddress;
+
+/**
+ * Пакування IP-адрес у long для лічильників і токенів сесій.
+ * IPv4 — 32 біти з позначкою в 33-му біті, IPv6 — префікс /64
+ * (зазвичай це одна машина чи один клієнт провайдера).
+ */
+final class IpKeys {
+
+    private static final long V4_TAG = 1L << 32;
+
+    private IpKeys() {}
+
+    /**
+     * Пакує адресу у long. Рядок приходить із getHostAddress(),
+     * тобто це завжди літерал і DNS не чіпається.
+     */
+    static long pack(String ip) {
+        try {
+            byte[] b = InetAddress.getByName(ip).getAddress();
+            long v = 0;
+            int n = Math.min(b.length, 8);
+            for (int i = 0; i < n; i++) v = (v << 8) | (b[i] & 0xFF);
+            // Позначаємо IPv4 окремим бітом, щоб він не збігся з жодним префіксом IPv6
+            return b.length == 4 ? v | V4_TAG : v;
+        } catch (IOException ex) {
+            return ip.hashCode();
+        }
+    }
+
+    /** Ширша мережа для м'якого порівняння: IPv4 /24, IPv6 /48. */
+    static long softPrefix(long key) {
+        return (key >>> 32) == 1 ? key & ~0xFFL : key & ~0xFFFFL;
+    }
+}
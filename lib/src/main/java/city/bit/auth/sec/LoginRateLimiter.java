@@ -0,0 +1,211 @@
+package city.bit.auth.sec;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Обмеження кількості спроб входу за ковзним вікном у 5 хвилин,
+ * окремо для акаунта та для IP.
+ *
+ * Лічильник одного ключа — це одне число long: номер вікна (32 біти),
+ * кількість спроб у попередньому вікні (16 біт) і в поточному (16 біт).
+ * Оцінка ковзного вікна: поточні + попередні * частка попереднього вікна,
+ * що ще потрапляє в останні 5 хвилин. Оновлення — CAS без блокувань.
+ *
+ * Пам'ять обмежена: у кожній мапі живе не більше maxTracked ключів,
+ * прострочені ключі прибираються періодично. Якщо мапа заповнена,
+ * нові ключі рахуються у спільних смугах (ключі з однаковим хешем
+ * ділять лічильник) — це може обмежити сумлінного гравця трохи раніше,
+ * але ніколи не пропустить зайві спроби. Перед видаленням прострочений
+ * лічильник позначається як DEAD, тож спроба, що саме його збільшує,
+ * не загубиться разом із ним: вона побачить позначку й візьме новий.
+ */
+public class LoginRateLimiter {
+
+    public static final long WINDOW_MS = 5 * 60_000L;
+    // Кількість спільних смуг для ключів, що не вмістились у мапу
+    private static final int OVERFLOW_STRIPES = 4096;
+    // Прибирання прострочених ключів — раз на стільки викликів
+    private static final int SWEEP_EVERY = 1024;
+    // Приблизна вартість одного ключа в мапі: вузол, AtomicLong і рядок ключа
+    private static final int BYTES_PER_ENTRY = 120;
+    private static final int MAX_COUNT = 0xFFFF;
+    // Стан лічильника, який sweep уже прибирає з мапи; справжнє вікно таким не буває
+    private static final long DEAD = -1L;
+    // Результати acquire: спробу не зараховано / зараховано в мапі / у спільній смузі
+    private static final int REJECTED = 0;
+    private static final int TRACKED = 1;
+    private static final int STRIPED = 2;
+
+    private final int maxTracked;
+    private final Map<String, AtomicLong> accounts = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> ips = new ConcurrentHashMap<>();
+    private final AtomicLongArray accountOverflow = new AtomicLongArray(OVERFLOW_STRIPES);
+    private final AtomicLongArray ipOverflow = new AtomicLongArray(OVERFLOW_STRIPES);
+    private final AtomicInteger calls = new AtomicInteger();
+
+    // Лічильники для /bcauth stats
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder rejectedAccount = new LongAdder();
+    private final LongAdder rejectedIp = new LongAdder();
+    private final LongAdder overflowed = new LongAdder();
+
+    public LoginRateLimiter(int maxTracked) {
+        this.maxTracked = Math.max(1, maxTracked);
+    }
+
+    /**
+     * Реєструє спробу входу. Повертає false, якщо ліміт для акаунта
+     * або IP вже вичерпано; тоді спроба не зараховується ні акаунту, ні IP.
+     *
+     * @param ip може бути null — тоді перевіряється лише акаунт
+     */
+    public boolean tryAcquire(String account, String ip, int accountLimit, int ipLimit) {
+        long now = System.currentTimeMillis();
+        if ((calls.incrementAndGet() & (SWEEP_EVERY - 1)) == 0) sweep(now);
+        int slot = acquire(accounts, accountOverflow, account, accountLimit, now);
+        if (slot == REJECTED) {
+            rejectedAccount.increment();
+            return false;
+        }
+        if (ip != null && acquire(ips, ipOverflow, ip, ipLimit, now) == REJECTED) {
+            // Інакше перебір з одного IP вичерпував би ліміт чужого акаунта
+            release(accounts, accountOverflow, account, slot, now);
+            rejectedIp.increment();
+            return false;
+        }
+        allowed.increment();
+        return true;
+    }
+
+    /** Після успішного входу лічильник акаунта скидається. */
+    public void onSuccess(String account) {
+        accounts.remove(account);
+    }
+
+    /** Прибирає ключі, в яких за останні два вікна не було спроб. */
+    public void sweep(long now) {
+        sweep(accounts, now / WINDOW_MS);
+        sweep(ips, now / WINDOW_MS);
+    }
+
+    private static void sweep(Map<String, AtomicLong> map, long w) {
+        for (Map.Entry<String, AtomicLong> e : map.entrySet()) {
+            AtomicLong c = e.getValue();
+            long cur = c.get();
+            // Позначка DEAD лише якщо за цей час ніхто не рахував спробу
+            if (cur != DEAD && windowOf(cur) < w - 1 && c.compareAndSet(cur, DEAD)) map.remove(e.getKey(), c);
+        }
+    }
+
+    /** Приблизний обсяг пам'яті під лічильники у байтах. */
+    public long approxBytes() {
+        return (long) (accounts.size() + ips.size()) * BYTES_PER_ENTRY + 2L * OVERFLOW_STRIPES * Long.BYTES;
+    }
+
+    /** Короткий звіт для адміністратора. */
+    public String debugStats() {
+        return "rate limit: allowed=" + allowed.sum()
+                + " rejectedAccount=" + rejectedAccount.sum()
+                + " rejectedIp=" + rejectedIp.sum()
+                + " tracked=" + accounts.size() + "/" + ips.size() + " (max " + maxTracked + ")"
+                + " overflowed=" + overflowed.sum()
+                + " mem~" + approxBytes() / 1024 + "KiB";
+    }
+
+    private int acquire(Map<String, AtomicLong> map, AtomicLongArray overflow, String key, int limit, long now) {
+        while (true) {
+            AtomicLong c = map.get(key);
+            if (c == null) {
+                if (map.size() < maxTracked) {
+                    c = map.computeIfAbsent(key, k -> new AtomicLong());
+                } else {
+                    overflowed.increment();
+                    return acquireStripe(overflow, stripe(key), limit, now) ? STRIPED : REJECTED;
+                }
+            }
+            long cur = c.get();
+            if (cur == DEAD) {
+                // sweep саме прибирає цей лічильник — допомагаємо й беремо новий
+                map.remove(key, c);
+                continue;
+            }
+            long next = tryIncrement(cur, limit, now);
+            if (next == cur) return REJECTED;
+            if (c.compareAndSet(cur, next)) return TRACKED;
+        }
+    }
+
+    /** Повертає щойно зараховану спробу, якщо вікно ще не змінилось. */
+    private static void release(Map<String, AtomicLong> map, AtomicLongArray overflow, String key, int slot, long now) {
+        long w = now / WINDOW_MS;
+        if (slot == TRACKED) {
+            // Лічильник могли скинути (onSuccess) — тоді й повертати нічого
+            AtomicLong c = map.get(key);
+            while (c != null) {
+                long cur = c.get();
+                if (cur == DEAD || windowOf(cur) != w || curOf(cur) == 0) return;
+                if (c.compareAndSet(cur, cur - 1)) return;
+            }
+            return;
+        }
+        int i = stripe(key);
+        while (true) {
+            long cur = overflow.get(i);
+            if (windowOf(cur) != w || curOf(cur) == 0) return;
+            if (overflow.compareAndSet(i, cur, cur - 1)) return;
+        }
+    }
+
+    private static int stripe(String key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (OVERFLOW_STRIPES - 1);
+    }
+
+    private boolean acquireStripe(AtomicLongArray overflow, int i, int limit, long now) {
+        while (true) {
+            long cur = overflow.get(i);
+            long next = tryIncrement(cur, limit, now);
+            if (next == cur) return false;
+            if (overflow.compareAndSet(i, cur, next)) return true;
+        }
+    }
+
+    /**
+     * Обчислює новий стан лічильника після ще однієї спроби.
+     * Якщо ліміт вичерпано, повертає той самий стан.
+     */
+    private static long tryIncrement(long state, int limit, long now) {
+        long w = now / WINDOW_MS;
+        long stored = windowOf(state);
+        int prev, cur;
+        if (stored == w) {
+            prev = prevOf(state);
+            cur = curOf(state);
+        } else if (stored == w - 1) {
+            // Вікно змінилось: поточне стає попереднім
+            prev = curOf(state);
+            cur = 0;
+        } else {
+            prev = 0;
+            cur = 0;
+        }
+        // Яка частка попереднього вікна ще потрапляє в останні WINDOW_MS
+        long remaining = WINDOW_MS - (now % WINDOW_MS);
+        double estimate = cur + prev * (double) remaining / WINDOW_MS;
+        if (estimate >= limit) return state;
+        return pack(w, prev, Math.min(MAX_COUNT, cur + 1));
+    }
+
+    private static long pack(long window, int prev, int cur) {
+        return (window << 32) | ((long) prev << 16) | cur;
+    }
+
+    private static long windowOf(long state) { return state >>> 32; }
+    private static int prevOf(long state) { return (int) (state >>> 16) & MAX_COUNT; }
+    private static int curOf(long state) { return (int) state & MAX_COUNT; }
+}
@@ -0,0 +1,116 @@
+package city.bit.auth.sec;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Розібраний рядок хешу algo:iterations:salt:hashBase64.
+ * Незмінний; створюється на час перевірки пароля. З пакованого хешу він
+ * збирається без Base64 і без рядків: копіюються лише сіль і ключ, а сам
+ * рядок ({@link #source()}) будується, тільки якщо його попросили.
+ *
+ * Для зберігання в пам'яті рядок пакується у один масив ({@link #pack}):
+ * номер алгоритму, ітерації, довжина солі, сіль і ключ сирими байтами.
+ * Рядок, який не відновлюється з такого подання байт у байт (чужий
+ * формат, інше кодування Base64), зберігається як є у UTF-8.
+ */
+public final class ParsedHash {
+    final HashAlgorithm algo;
+    final int iterations;
+    final byte[] salt;
+    final byte[] hash;
+    // Чи отримано з пакованого (канонічного) подання, а не з довільного рядка
+    final boolean canonical;
+    // Рядок хешу; для пакованого будується ліниво
+    private String source;
+
+    private ParsedHash(String source, HashAlgorithm algo, int iterations, byte[] salt, byte[] hash, boolean canonical) {
+        this.source = source;
+        this.algo = algo;
+        this.iterations = iterations;
+        this.salt = salt;
+        this.hash = hash;
+        this.canonical = canonical;
+    }
+
+    /** Рядок хешу algo:iterations:salt:hashBase64, з якого отримано цей об'єкт. */
+    public String source() {
+        String s = source;
+        if (s == null) source = s = format(algo, iterations, salt, hash);
+        return s;
+    }
+
+    // Перший байт пакованого хешу: 0 — далі рядок як є, інакше номер алгоритму + 1
+    private static final int RAW = 0;
+    private static final int PACKED_HEADER = 6;
+
+    /** Пакує рядок хешу; null лишається null. */
+    public static byte[] pack(String stored) {
+        if (stored == null) return null;
+        ParsedHash p = parse(stored);
+        if (p == null || p.salt.length > 255 || !stored.equals(format(p.algo, p.iterations, p.salt, p.hash))) {
+            byte[] text = stored.getBytes(StandardCharsets.UTF_8);
+            byte[] out = new byte[1 + text.length];
+            out[0] = RAW;
+            System.arraycopy(text, 0, out, 1, text.length);
+            return out;
+        }
+        ByteBuffer b = ByteBuffer.allocate(PACKED_HEADER + p.salt.length + p.hash.length);
+        b.put((byte) (p.algo.ordinal() + 1)).putInt(p.iterations).put((byte) p.salt.length).put(p.salt).put(p.hash);
+        return b.array();
+    }
+
+    /** Відновлює з пакованого хешу вихідний рядок. */
+    public static String unpack(byte[] packed) {
+        if (packed == null) return null;
+        if (packed[0] == RAW) return new String(packed, 1, packed.length - 1, StandardCharsets.UTF_8);
+        ByteBuffer b = ByteBuffer.wrap(packed);
+        HashAlgorithm a = HashAlgorithm.values()[b.get() - 1];
+        int iter = b.getInt();
+        int saltLen = b.get() & 0xFF;
+        return format(a, iter, Arrays.copyOfRange(packed, PACKED_HEADER, PACKED_HEADER + saltLen),
+                Arrays.copyOfRange(packed, PACKED_HEADER + saltLen, packed.length));
+    }
+
+    /**
+     * Розбирає пакований хеш без декодування Base64; null, якщо формат невідомий.
+     * Непакований (RAW) рядок розбирається повністю, тож такий хеш
+     * {@link PasswordHasher#needsRehash} просить перерахувати при вході.
+     */
+    public static ParsedHash unpacked(byte[] packed) {
+        if (packed == null) return null;
+        if (packed[0] == RAW) return parse(unpack(packed));
+        ByteBuffer b = ByteBuffer.wrap(packed);
+        HashAlgorithm a = HashAlgorithm.values()[b.get() - 1];
+        int iter = b.getInt();
+        int saltLen = b.get() & 0xFF;
+        byte[] salt = Arrays.copyOfRange(packed, PACKED_HEADER, PACKED_HEADER + saltLen);
+        byte[] hash = Arrays.copyOfRange(packed, PACKED_HEADER + saltLen, packed.length);
+        return new ParsedHash(null, a, iter, salt, hash, true);
+    }
+
+    private static String format(HashAlgorithm a, int iterations, byte[] salt, byte[] hash) {
+        return a.id + ":" + iterations + ":" + Base64.getEncoder().encodeToString(salt)
+                + ":" + Base64.getEncoder().encodeToString(hash);
+    }
+
+    /** Розбирає рядок хешу; null, якщо формат чи алгоритм невідомі. */
+    public static ParsedHash parse(String stored) {
+        if (stored == null) return null;
+        try {
+            String[] parts = stored.split(":");
+            if (parts.length != 4) return null;
+            HashAlgorithm a = HashAlgorithm.byId(parts[0]);
+            int iter = Integer.parseInt(parts[1]);
+            if (a == null || iter <= 0) return null;
+            byte[] hash = Base64.getDecoder().decode(parts[3]);
+            if (hash.length == 0) return null;
+            return new ParsedHash(stored, a, iter, Base64.getDecoder().decode(parts[2]), hash, false);
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException теж сюди
+            return null;
+        }
+    }
+}
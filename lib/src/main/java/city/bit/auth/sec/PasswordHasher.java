@@ -1,33 +1,92 @@
 package city.bit.auth.sec;
 
-import javax.crypto.SecretKeyFactory;
-import javax.crypto.spec.PBEKeySpec;
+import city.bit.auth.metrics.AuthMetrics;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
 import java.security.SecureRandom;
+import java.util.Arrays;
 import java.util.Base64;
 
 /**
  * Клас, що відповідає за хешування та перевірку паролів.
- * Використовується алгоритм PBKDF2WithHmacSHA256 із "pepper" та випадковою "sаlt".
+ * Алгоритм береться з реєстру {@link HashAlgorithm} (за замовчуванням
+ * PBKDF2WithHmacSHA256) із "pepper" та випадковою "sаlt".
  * Формат збереження: algo:iterations:salt:hashBase64
+ *
+ * Нові хеші створюються поточним алгоритмом і кількістю ітерацій; перевірка
+ * бере алгоритм та ітерації із самого збереженого рядка, тож старі хеші
+ * працюють і після зміни налаштувань. {@link #needsRehash} підказує, що хеш
+ * варто перерахувати під поточну політику.
+ *
+ * Саме обчислення PBKDF2 виконує {@link Pbkdf2} на дайджестах потоку.
+ * Пароль разом із pepper живе лише в масивах char[]/byte[], які обнуляються
+ * одразу після обчислення.
+ *
+ * Час кожного хешування та перевірки записується в {@link AuthMetrics}.
  */
 public class PasswordHasher {
     // Довжина випадкової "солі" у байтах
     private static final int SALT_LEN = 16;
-    // Кількість ітерацій алгоритму PBKDF2
+    // Кількість ітерацій алгоритму PBKDF2, якщо калібрування вимкнене
     private static final int ITER = 120_000;
-    // Довжина отриманого ключа (у бітах)
-    private static final int KEY_LEN = 256;
+    // Верхня межа ітерацій для калібрування
+    private static final int MAX_ITER = 10_000_000;
+    // Кількість ітерацій пробного хешу при калібруванні
+    private static final int PROBE_ITER = 10_000;
 
     private final SecureRandom rng = new SecureRandom();
     private final String pepper; // Додатковий секрет, зчитаний із конфігурації
-    private final String algo;   // Назва алгоритму (поки що завжди "pbkdf2")
+    private final HashAlgorithm algo; // Алгоритм для нових хешів
+    private final int iterations; // Ітерації для нових хешів
 
     public PasswordHasher(String pepper, String algo) {
+        this(pepper, algo, ITER);
+    }
+
+    /**
+     * Варіант із явною кількістю ітерацій для нових хешів (бенчмарки, калібрування).
+     * Перевірка завжди бере кількість ітерацій із самого збереженого хешу.
+     *
+     * @throws IllegalArgumentException якщо алгоритму немає в {@link HashAlgorithm}
+     */
+    public PasswordHasher(String pepper, String algo, int iterations) {
         this.pepper = pepper == null ? "" : pepper;
-        // У цій реалізації ми ігноруємо параметр algo та завжди використовуємо PBKDF2
-        this.algo = "pbkdf2";
+        HashAlgorithm a = HashAlgorithm.byId(algo);
+        if (a == null) throw new IllegalArgumentException("Unknown hash algorithm: " + algo);
+        this.algo = a;
+        this.iterations = iterations > 0 ? iterations : ITER;
     }
 
+    /**
+     * Підбирає кількість ітерацій, за якої один хеш на цьому залізі займає
+     * приблизно targetMs. Пробний хеш виконується кілька разів, береться
+     * найшвидший результат (перші запуски йдуть ще без JIT). Результат не
+     * менший за {@link HashAlgorithm#minIterations} і округлений до тисяч.
+     */
+    public static int calibrate(String algo, long targetMs) {
+        HashAlgorithm a = HashAlgorithm.byId(algo);
+        if (a == null) throw new IllegalArgumentException("Unknown hash algorithm: " + algo);
+        PasswordHasher probe = new PasswordHasher("calibration", a.id, PROBE_ITER);
+        byte[] salt = new byte[SALT_LEN];
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            long start = System.nanoTime();
+            probe.derive(a, "calibration-password", salt, PROBE_ITER, new byte[a.keyBits / 8]);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        double perIter = (double) Math.max(1, best) / PROBE_ITER;
+        long iter = Math.round(targetMs * 1_000_000.0 / perIter / 1000.0) * 1000;
+        return (int) Math.max(a.minIterations, Math.min(MAX_ITER, iter));
+    }
+
+    /** Ідентифікатор алгоритму для нових хешів. */
+    public String algo() { return algo.id; }
+
+    /** Кількість ітерацій для нових хешів. */
+    public int iterations() { return iterations; }
+
     /**
      * Створює хеш для заданого пароля. Результат містить усі необхідні дані
      * для подальшої перевірки (алгоритм, ітерації, сіль).
@@ -35,8 +94,11 @@ public class PasswordHasher {
     public String hash(String password) {
         byte[] salt = new byte[SALT_LEN];
         rng.nextBytes(salt); // генеруємо випадкову сіль
-        byte[] dk = pbkdf2(password, salt, ITER, KEY_LEN);
-        return algo + ":" + ITER + ":" + b64(salt) + ":" + b64(dk);
+        byte[] dk = new byte[algo.keyBits / 8];
+        long start = System.nanoTime();
+        derive(algo, password, salt, iterations, dk);
+        AuthMetrics.get().hash.recordSince(start);
+        return algo.id + ":" + iterations + ":" + b64(salt) + ":" + b64(dk);
     }
 
     /**
@@ -44,15 +106,21 @@ public class PasswordHasher {
      * Повертає true, якщо все добре, і false у разі невідповідності або помилки.
      */
     public boolean verify(String password, String stored) {
+        return verify(password, ParsedHash.parse(stored));
+    }
+
+    /**
+     * Перевірка за вже розібраним хешем (див. {@link ParsedHash}).
+     * null — неправильний формат, перевірка неуспішна.
+     */
+    public boolean verify(String password, ParsedHash stored) {
+        if (stored == null) return false;
+        byte[] expected = stored.hash;
+        byte[] dk = new byte[expected.length];
+        long start = System.nanoTime();
         try {
-            String[] parts = stored.split(":");
-            if (parts.length != 4) return false; // неправильний формат
-            int iter = Integer.parseInt(parts[1]);
-            byte[] salt = b64d(parts[2]);
-            byte[] expected = b64d(parts[3]);
             // Генеруємо ключ для введеного пароля
-            byte[] dk = pbkdf2(password, salt, iter, expected.length * 8);
-            if (dk.length != expected.length) return false;
+            derive(stored.algo, password, stored.salt, stored.iterations, dk);
             // Порівнюємо масиви байтів у "постійному" часі, щоб уникнути атак по часу
             int diff = 0;
             for (int i = 0; i < dk.length; i++) diff |= dk[i] ^ expected[i];
@@ -60,20 +128,51 @@ public class PasswordHasher {
         } catch (Exception e) {
             // У разі будь-якої помилки вважаємо перевірку неуспішною
             return false;
+        } finally {
+            Arrays.fill(dk, (byte) 0);
+            AuthMetrics.get().verify.recordSince(start);
         }
     }
 
-    private byte[] pbkdf2(String password, byte[] salt, int iter, int keyLen) {
+    /**
+     * Чи варто перерахувати збережений хеш під поточну політику: інший
+     * алгоритм, або ітерацій менше ніж 3/4 чи більше ніж удвічі від поточних.
+     * Допуск не дає хешам "гойдатись" між вузлами з дещо різним залізом.
+     * Хеш у неканонічному записі (інше кодування Base64 тощо) теж
+     * перераховується: після цього він зберігається пакованим.
+     */
+    public boolean needsRehash(ParsedHash stored) {
+        if (stored == null) return false;
+        if (!stored.canonical || stored.algo != algo) return true;
+        long iter = stored.iterations;
+        return iter * 4 < iterations * 3L || iter > iterations * 2L;
+    }
+
+    /** Короткий звіт для адміністратора. */
+    public String debugStats() {
+        return "hasher: algo=" + algo.id + " iterations=" + iterations;
+    }
+
+    /**
+     * Обчислює PBKDF2 від пароля з "pepper" у out. Пароль кодується в UTF-8
+     * так само, як це робить SunJCE, тож хеші сумісні з попередньою реалізацією.
+     */
+    private void derive(HashAlgorithm a, String password, byte[] salt, int iter, byte[] out) {
+        // До пароля додаємо "pepper" для додаткового захисту, не створюючи нового String
+        char[] chars = new char[password.length() + pepper.length()];
+        password.getChars(0, password.length(), chars, 0);
+        pepper.getChars(0, pepper.length(), chars, password.length());
+        ByteBuffer encoded = StandardCharsets.UTF_8.encode(CharBuffer.wrap(chars));
+        byte[] bytes = new byte[encoded.remaining()];
+        encoded.get(bytes);
+        Arrays.fill(chars, '\0');
+        Arrays.fill(encoded.array(), (byte) 0);
         try {
-            // До пароля додаємо "pepper" для додаткового захисту
-            PBEKeySpec spec = new PBEKeySpec((password + pepper).toCharArray(), salt, iter, keyLen);
-            SecretKeyFactory skf = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
-            return skf.generateSecret(spec).getEncoded();
-        } catch (Exception e) {
-            throw new RuntimeException("PBKDF2 error", e);
+            Pbkdf2.forThread(a).derive(bytes, salt, iter, out);
+        } finally {
+            Arrays.fill(bytes, (byte) 0);
         }
     }
 
     private static String b64(byte[] a) { return Base64.getEncoder().encodeToString(a); }
-    private static byte[] b64d(String s) { return Base64.getDecoder().decode(s); }
 }
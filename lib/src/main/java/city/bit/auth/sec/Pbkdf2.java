@@ -0,0 +1,128 @@
+package city.bit.auth.sec;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * PBKDF2-HMAC (RFC 8018) з попередньо обчисленим станом HMAC-ключа.
+ *
+ * HMAC(K, m) = H((K ^ opad) || H((K ^ ipad) || m)). Блоки K ^ ipad та K ^ opad
+ * однакові для всіх ітерацій, тож вони поглинаються у два "шаблонні" дайджести
+ * один раз на виклик. Кожна ітерація лише клонує шаблон і дописує 32/64 байти:
+ * дві компресії SHA замість чотирьох у javax.crypto.Mac, який на кожному
+ * doFinal заново хешує ipad/opad. Клонування — єдиний публічний спосіб
+ * відновити стан дайджесту; це короткоживучі об'єкти без пошуку провайдера,
+ * а апаратні інтринсики SHA лишаються задіяними.
+ *
+ * Базові дайджести та буфери U/T живуть у потоці й перевикористовуються.
+ * Результат побітово збігається з PBKDF2WithHmacSHA256/512 із SunJCE.
+ */
+final class Pbkdf2 {
+
+    private static final ThreadLocal<Pbkdf2[]> LOCAL =
+            ThreadLocal.withInitial(() -> new Pbkdf2[HashAlgorithm.values().length]);
+
+    private final MessageDigest base;
+    private final int hLen;
+    private final int blockSize;
+    // Буфери одного потоку: блок ключа, U_i, внутрішній геш і накопичений T_i
+    private final byte[] pad;
+    private final byte[] u;
+    private final byte[] inner;
+    private final byte[] t;
+    private final byte[] counter = new byte[4];
+
+    private Pbkdf2(HashAlgorithm a) throws NoSuchAlgorithmException {
+        this.base = MessageDigest.getInstance(a.digestName);
+        this.hLen = base.getDigestLength();
+        this.blockSize = a.blockSize;
+        this.pad = new byte[blockSize];
+        this.u = new byte[hLen];
+        this.inner = new byte[hLen];
+        this.t = new byte[hLen];
+    }
+
+    /** Рушій поточного потоку для заданого алгоритму. */
+    static Pbkdf2 forThread(HashAlgorithm a) {
+        Pbkdf2[] all = LOCAL.get();
+        Pbkdf2 p = all[a.ordinal()];
+        if (p == null) {
+            try {
+                p = new Pbkdf2(a);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("Digest not available: " + a.digestName, e);
+            }
+            all[a.ordinal()] = p;
+        }
+        return p;
+    }
+
+    /**
+     * Обчислює ключ у out (довжина out — бажана довжина ключа).
+     * Масив password не змінюється: обнуляє його той, хто викликав.
+     */
+    void derive(byte[] password, byte[] salt, int iterations, byte[] out) {
+        try {
+            // Ключ, довший за блок, спершу хешується (RFC 2104)
+            byte[] key = password;
+            if (key.length > blockSize) {
+                base.reset();
+                key = base.digest(password);
+            }
+            Arrays.fill(pad, (byte) 0);
+            System.arraycopy(key, 0, pad, 0, key.length);
+            if (key != password) Arrays.fill(key, (byte) 0);
+
+            for (int i = 0; i < blockSize; i++) pad[i] ^= 0x36;
+            base.reset();
+            base.update(pad);
+            MessageDigest ipad = (MessageDigest) base.clone();
+            for (int i = 0; i < blockSize; i++) pad[i] ^= 0x36 ^ 0x5c;
+            base.reset();
+            base.update(pad);
+            MessageDigest opad = (MessageDigest) base.clone();
+            Arrays.fill(pad, (byte) 0);
+
+            int blocks = (out.length + hLen - 1) / hLen;
+            for (int b = 1; b <= blocks; b++) {
+                counter[0] = (byte) (b >>> 24);
+                counter[1] = (byte) (b >>> 16);
+                counter[2] = (byte) (b >>> 8);
+                counter[3] = (byte) b;
+                // U_1 = HMAC(P, S || INT(b))
+                MessageDigest in = (MessageDigest) ipad.clone();
+                in.update(salt);
+                in.update(counter);
+                in.digest(inner, 0, hLen);
+                MessageDigest outer = (MessageDigest) opad.clone();
+                outer.update(inner);
+                outer.digest(u, 0, hLen);
+                System.arraycopy(u, 0, t, 0, hLen);
+                // U_j = HMAC(P, U_{j-1}); T ^= U_j
+                for (int i = 1; i < iterations; i++) {
+                    in = (MessageDigest) ipad.clone();
+                    in.update(u);
+                    in.digest(inner, 0, hLen);
+                    outer = (MessageDigest) opad.clone();
+                    outer.update(inner);
+                    outer.digest(u, 0, hLen);
+                    for (int k = 0; k < hLen; k++) t[k] ^= u[k];
+                }
+                int off = (b - 1) * hLen;
+                System.arraycopy(t, 0, out, off, Math.min(hLen, out.length - off));
+            }
+            ipad.reset();
+            opad.reset();
+        } catch (CloneNotSupportedException | DigestException e) {
+            throw new IllegalStateException("PBKDF2 error", e);
+        } finally {
+            // Проміжні значення похідні від пароля — не лишаємо їх у буферах потоку
+            Arrays.fill(u, (byte) 0);
+            Arrays.fill(inner, (byte) 0);
+            Arrays.fill(t, (byte) 0);
+            base.reset();
+        }
+    }
+}
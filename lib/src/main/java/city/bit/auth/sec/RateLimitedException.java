@@ -0,0 +1,12 @@
+package city.bit.auth.sec;
+
+/**
+ * Спробу входу відхилено {@link LoginRateLimiter}: ліміт для акаунта
+ * або IP за останні 5 хвилин вичерпано. Хешування при цьому не запускалось.
+ */
+public class RateLimitedException extends RuntimeException {
+
+    public RateLimitedException(String message) {
+        super(message, null, false, false); // стек не потрібен: це очікувана відмова
+    }
+}
@@ -0,0 +1,181 @@
+package city.bit.auth.sec;
+
+import city.bit.auth.storage.AtomicFiles;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Денна квота реєстрацій з одного IP (auth.max_registrations_per_ip_per_day).
+ *
+ * Лічильники живуть у count-min sketch фіксованого розміру: DEPTH рядків
+ * по WIDTH комірок, тобто завжди 256 КіБ незалежно від кількості різних
+ * адрес. Адреса спершу пакується у long ({@link IpKeys}): IPv4 — 32 біти,
+ * IPv6 — префікс /64.
+ *
+ * Оцінка ніколи не буває меншою за справжню кількість, тож ліміт не можна
+ * обійти. Завищення з імовірністю не менше 1 - e^-DEPTH (~98%) не перевищує
+ * e * N / WIDTH, де N — кількість реєстрацій за день: близько 1.7 на кожні
+ * 10 000 реєстрацій. Консервативне оновлення (збільшуються лише мінімальні
+ * комірки) на практиці дає ще меншу похибку.
+ *
+ * Доба рахується за UTC; з новою добою всі лічильники обнуляються.
+ * Стан між перезапусками зберігається у компактний знімок: лише ненульові комірки.
+ */
+public class RegistrationQuota {
+
+    private static final int DEPTH = 4;
+    private static final int WIDTH = 1 << 14;
+    private static final long DAY_MS = 86_400_000L;
+    // Заголовок файлу знімка та версія формату
+    private static final int MAGIC = 0x42435251; // "BCRQ"
+    private static final int VERSION = 1;
+    private static final long[] SEEDS = {
+            0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L
+    };
+
+    private final int[] cells = new int[DEPTH * WIDTH];
+    private long day;
+
+    // Лічильники для /bcauth stats
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder released = new LongAdder();
+
+    public RegistrationQuota() {
+        this.day = System.currentTimeMillis() / DAY_MS;
+    }
+
+    /**
+     * Зараховує реєстрацію з адреси. Повертає false, якщо за сьогодні з цієї
+     * адреси вже було limit реєстрацій; тоді нічого не зараховується.
+     *
+     * @param ip    адреса гравця; null — квота не перевіряється
+     * @param limit ліміт на добу; 0 вимикає перевірку
+     */
+    public synchronized boolean tryAcquire(String ip, int limit) {
+        if (ip == null || limit <= 0) return true;
+        rollDay(System.currentTimeMillis());
+        long key = IpKeys.pack(ip);
+        int[] idx = new int[DEPTH];
+        int est = Integer.MAX_VALUE;
+        for (int r = 0; r < DEPTH; r++) {
+            idx[r] = r * WIDTH + slot(key, r);
+            est = Math.min(est, cells[idx[r]]);
+        }
+        if (est >= limit) {
+            rejected.increment();
+            return false;
+        }
+        // Консервативне оновлення: піднімаємо лише комірки, менші за нову оцінку
+        for (int i : idx) if (cells[i] <= est) cells[i] = est + 1;
+        allowed.increment();
+        return true;
+    }
+
+    /**
+     * Повертає слот, зарахований {@link #tryAcquire}, якщо реєстрація не
+     * відбулась (пул відхилив завдання, нік уже зайняли). Знижуються лише
+     * комірки, що дорівнюють поточній оцінці адреси — ті самі, які підняло
+     * консервативне оновлення. Якщо з такою коміркою збігся інший IP з тією
+     * ж оцінкою, його лічильник може стати на одиницю меншим; це ціна
+     * повернення слотів у скетчі без окремих лічильників на адресу.
+     *
+     * @param limit той самий ліміт, що й у tryAcquire; 0 — нічого не робить
+     */
+    public synchronized void release(String ip, int limit) {
+        if (ip == null || limit <= 0) return;
+        rollDay(System.currentTimeMillis());
+        long key = IpKeys.pack(ip);
+        int est = Integer.MAX_VALUE;
+        for (int r = 0; r < DEPTH; r++) est = Math.min(est, cells[r * WIDTH + slot(key, r)]);
+        // Нуль означає, що доба змінилась між зарахуванням і поверненням
+        if (est == 0) return;
+        for (int r = 0; r < DEPTH; r++) {
+            int i = r * WIDTH + slot(key, r);
+            if (cells[i] == est) cells[i]--;
+        }
+        released.increment();
+    }
+
+    /** Короткий звіт для адміністратора. */
+    public synchronized String debugStats() {
+        int used = 0;
+        for (int c : cells) if (c != 0) used++;
+        return "registration quota: allowed=" + allowed.sum()
+                + " rejected=" + rejected.sum()
+                + " released=" + released.sum()
+                + " cells=" + used + "/" + cells.length
+                + " mem=" + (long) cells.length * Integer.BYTES / 1024 + "KiB";
+    }
+
+    /**
+     * Записує знімок: доба, розміри та пари (індекс, значення) ненульових комірок.
+     */
+    public void save(File file) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(buf)) {
+            synchronized (this) {
+                rollDay(System.currentTimeMillis());
+                int used = 0;
+                for (int c : cells) if (c != 0) used++;
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(day);
+                out.writeInt(DEPTH);
+                out.writeInt(WIDTH);
+                out.writeInt(used);
+                for (int i = 0; i < cells.length; i++) {
+                    if (cells[i] == 0) continue;
+                    out.writeInt(i);
+                    out.writeInt(cells[i]);
+                }
+            }
+        }
+        AtomicFiles.write(file, buf.toByteArray());
+    }
+
+    /**
+     * Відновлює стан зі знімка. Знімок за іншу добу або з іншими розмірами
+     * ігнорується; відсутній файл — не помилка.
+     */
+    public void load(File file) throws IOException {
+        if (!file.exists()) return;
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(file.toPath())))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) throw new IOException("Not a quota snapshot: " + file);
+            long savedDay = in.readLong();
+            if (in.readInt() != DEPTH || in.readInt() != WIDTH) return;
+            synchronized (this) {
+                if (savedDay != System.currentTimeMillis() / DAY_MS) return;
+                int used = in.readInt();
+                for (int n = 0; n < used; n++) {
+                    int i = in.readInt();
+                    int v = in.readInt();
+                    if (i < 0 || i >= cells.length) throw new IOException("Corrupt quota snapshot: " + file);
+                    cells[i] = v;
+                }
+                day = savedDay;
+            }
+        }
+    }
+
+    /** Обнуляє лічильники, якщо почалась нова доба. Викликається під замком. */
+    private void rollDay(long now) {
+        long d = now / DAY_MS;
+        if (d != day) {
+            Arrays.fill(cells, 0);
+            day = d;
+        }
+    }
+
+    private static int slot(long key, int row) {
+        long z = key + SEEDS[row];
+        // Змішування splitmix64
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z ^= z >>> 31;
+        return (int) z & (WIDTH - 1);
+    }
+}
@@ -0,0 +1,258 @@
+package city.bit.auth.sec;
+
+import city.bit.auth.storage.AtomicFiles;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Підписані токени відновлення сесії.
+ *
+ * Токен — 33 байти (44 символи Base64url):
+ * версія (1) | покоління акаунта (4) | кінець дії в секундах (4) |
+ * упакований IP (8, див. {@link IpKeys}) | HMAC-SHA256, обрізаний до 16 байт.
+ * Ключ акаунта в токен не пишеться, але входить у підпис, тож токен
+ * іншого гравця не підійде.
+ *
+ * Перевірка не читає сховище сесій: лише підпис, час, IP і невелика мапа
+ * поколінь. {@link #revoke} збільшує покоління акаунта, і всі видані
+ * раніше токени стають недійсними. У мапі лише акаунти, які хоч раз
+ * відкликали; вона зберігається у session_gen.txt.
+ *
+ * Ключ підпису виводиться з випадкового секрету у session_secret.key,
+ * який створюється при першому старті ({@link #loadOrCreateSecret}). Не з
+ * pepper: стандартний pepper із config.yml відомий усім, і з нього будь-хто
+ * зібрав би дійсний токен. Вузли мережі приймають токени один одного,
+ * якщо на всі скопійовано той самий файл секрету. З цього ж ключа
+ * виводиться окремий ключ для повідомлень між вузлами ({@link #seal}/{@link #open}).
+ */
+public class SessionTokens {
+
+    private static final byte VERSION = 1;
+    private static final int BODY = 17;
+    private static final int MAC_LEN = 16;
+    // Наскільки покоління з іншого вузла може випереджати локальне
+    private static final int MAX_GENERATION_STEP = 1024;
+    /** Файл спільного секрету в папці плагіна. */
+    public static final String SECRET_FILE = "session_secret.key";
+    private static final int SECRET_LEN = 32;
+
+    private final byte[] key;
+    private final ThreadLocal<Mac> macs;
+    private final ThreadLocal<Mac> messageMacs;
+    private final Map<String, Integer> generations = new ConcurrentHashMap<>();
+    private final File genFile;
+
+    // Лічильники для /bcauth stats
+    private final LongAdder issued = new LongAdder();
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * @param secret випадковий секрет (див. {@link #loadOrCreateSecret})
+     */
+    public SessionTokens(byte[] secret, File dataFolder) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update("BitCityAuth session token v2\0".getBytes(StandardCharsets.UTF_8));
+            this.key = md.digest(secret);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        this.macs = ThreadLocal.withInitial(() -> hmac(key));
+        // Окремий ключ, щоб підпис повідомлення ніколи не збігся з підписом токена
+        byte[] messageKey = macs.get().doFinal("BitCityAuth network message v1".getBytes(StandardCharsets.UTF_8));
+        this.messageMacs = ThreadLocal.withInitial(() -> hmac(messageKey));
+        this.genFile = new File(dataFolder, "session_gen.txt");
+    }
+
+    /**
+     * Читає секрет із {@link #SECRET_FILE} (Base64). Якщо файлу немає,
+     * створює новий із {@link SecureRandom} і дає читати його лише власнику.
+     */
+    public static byte[] loadOrCreateSecret(File dataFolder) throws IOException {
+        File f = new File(dataFolder, SECRET_FILE);
+        if (f.exists()) {
+            byte[] secret;
+            try {
+                secret = Base64.getDecoder().decode(Files.readString(f.toPath(), StandardCharsets.US_ASCII).trim());
+            } catch (IllegalArgumentException ex) {
+                throw new IOException("Corrupt " + SECRET_FILE + ": " + ex.getMessage());
+            }
+            if (secret.length < SECRET_LEN) throw new IOException(SECRET_FILE + " is shorter than " + SECRET_LEN + " bytes");
+            return secret;
+        }
+        byte[] secret = new byte[SECRET_LEN];
+        new SecureRandom().nextBytes(secret);
+        AtomicFiles.writeString(f, Base64.getEncoder().encodeToString(secret) + "\n");
+        // Найкраще, що можна зробити переносимо: прибрати читання для всіх, крім власника
+        f.setReadable(false, false);
+        f.setReadable(true, true);
+        return secret;
+    }
+
+    /** Завантажує покоління акаунтів. Відсутній файл — не помилка. */
+    public void load() throws IOException {
+        if (!genFile.exists()) return;
+        for (String line : Files.readAllLines(genFile.toPath(), StandardCharsets.UTF_8)) {
+            int sp = line.lastIndexOf(' ');
+            if (sp <= 0) continue;
+            try {
+                generations.put(line.substring(0, sp), Integer.parseInt(line.substring(sp + 1)));
+            } catch (NumberFormatException ignored) {
+                // Пошкоджений рядок пропускаємо
+            }
+        }
+    }
+
+    /** Видає токен для акаунта, IP та моменту завершення сесії. */
+    public String issue(String account, String ip, long expiresAt) {
+        String k = account.toLowerCase(Locale.ROOT);
+        ByteBuffer b = ByteBuffer.allocate(BODY + MAC_LEN);
+        b.put(VERSION);
+        b.putInt(generations.getOrDefault(k, 0));
+        b.putInt((int) Math.min(0xFFFF_FFFFL, expiresAt / 1000));
+        b.putLong(ip == null ? 0 : IpKeys.pack(ip));
+        b.put(sign(k, b.array()), 0, MAC_LEN);
+        issued.increment();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(b.array());
+    }
+
+    /**
+     * Перевіряє токен: підпис, версію, покоління, час дії та IP.
+     *
+     * @param ipMatch strict — IP має збігатися точно, soft — в межах /24 (IPv6 /48)
+     */
+    public boolean verify(String account, String ip, String token, String ipMatch) {
+        boolean ok = check(account, ip, token, ipMatch);
+        (ok ? accepted : rejected).increment();
+        return ok;
+    }
+
+    /** Чи схожий рядок на токен цього формату (старий UUID має 36 символів). */
+    public static boolean isSigned(String token) {
+        return token != null && token.length() == 44;
+    }
+
+    /** Робить недійсними всі видані раніше токени акаунта. */
+    public synchronized void revoke(String account) throws IOException {
+        generations.merge(account.toLowerCase(Locale.ROOT), 1, Integer::sum);
+        saveGenerations();
+    }
+
+    /** Поточне покоління акаунта (0 — токени акаунта ще не відкликали). */
+    public int generation(String account) {
+        return generations.getOrDefault(account.toLowerCase(Locale.ROOT), 0);
+    }
+
+    /**
+     * Підтягує покоління акаунта до отриманого з іншого вузла, якщо воно
+     * більше за локальне. Повторне чи застаріле значення нічого не змінює,
+     * а стрибок більше ніж на MAX_GENERATION_STEP відкидається. Змінюється
+     * лише пам'ять; на диск мапу записує {@link #saveGenerations()}.
+     *
+     * @return true, якщо покоління змінилось і мапу варто зберегти
+     */
+    public synchronized boolean observe(String account, int generation) {
+        String k = account.toLowerCase(Locale.ROOT);
+        int cur = generations.getOrDefault(k, 0);
+        if (generation <= cur || generation - cur > MAX_GENERATION_STEP) return false;
+        generations.put(k, generation);
+        return true;
+    }
+
+    /**
+     * Підписує повідомлення для інших вузлів: MAC (16 байт) | повідомлення.
+     */
+    public byte[] seal(byte[] message) {
+        Mac m = messageMacs.get();
+        byte[] out = new byte[MAC_LEN + message.length];
+        System.arraycopy(m.doFinal(message), 0, out, 0, MAC_LEN);
+        System.arraycopy(message, 0, out, MAC_LEN, message.length);
+        return out;
+    }
+
+    /** Перевіряє підпис {@link #seal}; повертає повідомлення або null, якщо підпис не той. */
+    public byte[] open(byte[] sealed) {
+        if (sealed == null || sealed.length <= MAC_LEN) return null;
+        Mac m = messageMacs.get();
+        m.update(sealed, MAC_LEN, sealed.length - MAC_LEN);
+        byte[] mac = m.doFinal();
+        int diff = 0;
+        for (int i = 0; i < MAC_LEN; i++) diff |= mac[i] ^ sealed[i];
+        return diff == 0 ? Arrays.copyOfRange(sealed, MAC_LEN, sealed.length) : null;
+    }
+
+    /** Записує мапу поколінь у session_gen.txt. */
+    public synchronized void saveGenerations() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Integer> e : generations.entrySet()) {
+            sb.append(e.getKey()).append(' ').append(e.getValue()).append('\n');
+        }
+        AtomicFiles.writeString(genFile, sb.toString());
+    }
+
+    /** Короткий звіт для адміністратора. */
+    public String debugStats() {
+        return "session tokens: issued=" + issued.sum() + " accepted=" + accepted.sum()
+                + " rejected=" + rejected.sum() + " revokedAccounts=" + generations.size();
+    }
+
+    private boolean check(String account, String ip, String token, String ipMatch) {
+        if (token == null || ip == null || "off".equals(ipMatch)) return false;
+        byte[] raw;
+        try {
+            raw = Base64.getUrlDecoder().decode(token);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        if (raw.length != BODY + MAC_LEN || raw[0] != VERSION) return false;
+        String k = account.toLowerCase(Locale.ROOT);
+        byte[] mac = sign(k, raw);
+        // Порівняння в постійному часі
+        int diff = 0;
+        for (int i = 0; i < MAC_LEN; i++) diff |= mac[i] ^ raw[BODY + i];
+        if (diff != 0) return false;
+        ByteBuffer b = ByteBuffer.wrap(raw, 1, BODY - 1);
+        int gen = b.getInt();
+        long expiresAt = (b.getInt() & 0xFFFF_FFFFL) * 1000;
+        long ipKey = b.getLong();
+        if (gen != generations.getOrDefault(k, 0)) return false;
+        if (System.currentTimeMillis() > expiresAt) return false;
+        long cur = IpKeys.pack(ip);
+        return "soft".equals(ipMatch) ? IpKeys.softPrefix(cur) == IpKeys.softPrefix(ipKey) : cur == ipKey;
+    }
+
+    private static Mac hmac(byte[] key) {
+        try {
+            Mac m = Mac.getInstance("HmacSHA256");
+            m.init(new SecretKeySpec(key, "HmacSHA256"));
+            return m;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 not available", e);
+        }
+    }
+
+    /** HMAC від ключа акаунта та тіла токена (перші BODY байт). */
+    private byte[] sign(String account, byte[] raw) {
+        Mac m = macs.get();
+        m.update(account.getBytes(StandardCharsets.UTF_8));
+        m.update((byte) 0);
+        m.update(raw, 0, BODY);
+        return m.doFinal();
+    }
+}
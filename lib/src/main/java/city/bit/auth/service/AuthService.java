@@ -1,75 +1,238 @@
 package city.bit.auth.service;
 
-import city.bit.auth.BitCityAuthPlugin;
+import city.bit.auth.config.AuthSettings;
+import city.bit.auth.metrics.AuthMetrics;
 import city.bit.auth.model.UserRecord;
+import city.bit.auth.sec.HashingPool;
+import city.bit.auth.sec.LoginRateLimiter;
+import city.bit.auth.sec.ParsedHash;
 import city.bit.auth.sec.PasswordHasher;
-import org.bukkit.configuration.file.YamlConfiguration;
+import city.bit.auth.sec.RateLimitedException;
+import city.bit.auth.sec.RegistrationQuota;
+import city.bit.auth.storage.UserIndex;
+import city.bit.auth.storage.UserStore;
+import org.bukkit.plugin.Plugin;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 
 /**
  * Сервіс, що відповідає за роботу з користувачами:
- * реєстрацію, перевірку паролів, блокування та збереження даних у файл.
+ * реєстрацію, перевірку паролів, блокування та збереження даних.
+ *
+ * Записи живуть у {@link ConcurrentHashMap}: читання (isRegistered, isBlocked,
+ * пошук запису перед перевіркою пароля) не беруть жодних блокувань.
+ * Зміни одного акаунта серіалізуються замком-смугою (lock striping),
+ * тож реєстрація одного гравця не заважає іншим. Хешування паролів
+ * завжди виконується поза замком, асинхронні варіанти методів ставлять
+ * роботу у {@link HashingPool}. Перед тим як поставити перевірку пароля
+ * в пул, спроба проходить через {@link LoginRateLimiter}: підбір пароля
+ * впирається в ліміти з auth.rate_limits, а не в процесор. Так само
+ * реєстрація спершу проходить денну квоту на IP ({@link RegistrationQuota}).
+ *
+ * Як саме записи лежать на диску, вирішує {@link UserStore}.
+ *
+ * У лінивому режимі (storage.users.loading: lazy) у пам'яті постійно живе
+ * лише компактний індекс "ключ -> заблокований". Повні записи читаються зі
+ * сховища на вимогу й тримаються в обмеженому LRU-кеші, а записи гравців
+ * онлайн закріплені до їхнього виходу ({@link #pin}/{@link #unpin}).
+ *
+ * Очікування замка-смуги при змінах, тривалість {@link #saveNow} та
+ * реєстрації записуються в {@link AuthMetrics}.
  */
 public class AuthService {
 
-    private final BitCityAuthPlugin plugin;
+    // Кількість замків-смуг; степінь двійки, щоб індекс рахувався маскою
+    private static final int STRIPES = 64;
+
+    private final Plugin plugin;
+    // Поточний знімок налаштувань (після /bcauth reload повертає новий)
+    private final Supplier<AuthSettings> settings;
     private final PasswordHasher hasher;
+    private final HashingPool hashPool;
+    private final UserStore store;
+    // Ліміти спроб входу на акаунт і на IP
+    private final LoginRateLimiter limiter;
+    // Денна квота реєстрацій на IP; знімок лежить у reg_quota.bin
+    private final RegistrationQuota quota = new RegistrationQuota();
+    private final File quotaFile;
 
-    // Усі користувачі тримаються у пам'яті у вигляді мапи "нік -> запис"
-    private final Map<String, UserRecord> users = new HashMap<>();
-    // Файл, у який зберігатиметься база користувачів
-    private final File file;
+    // Записи в пам'яті: у звичайному режимі — всі, у лінивому — лише закріплені
+    private final Map<String, UserRecord> users = new ConcurrentHashMap<>();
+    // Лінивий режим: індекс усіх ключів із прапорцем блокування (від сховища) та LRU-кеш записів
+    private final boolean lazy;
+    private final UserIndex index;
+    private final UserCache cache;
+    // Замки для змін: один акаунт завжди потрапляє в ту саму смугу
+    private final Object[] stripes = new Object[STRIPES];
+    // Скільки хешів перераховано під поточну політику після входу
+    private final LongAdder rehashed = new LongAdder();
+    private final AuthMetrics metrics = AuthMetrics.get();
 
-    public AuthService(BitCityAuthPlugin plugin, PasswordHasher hasher) {
+    public AuthService(Plugin plugin, Supplier<AuthSettings> settings, PasswordHasher hasher, HashingPool hashPool,
+                       UserStore store) throws IOException {
         this.plugin = plugin;
+        this.settings = settings;
         this.hasher = hasher;
-        this.file = new File(plugin.getDataFolder(), "users.yml");
-        load(); // Завантажуємо існуючі дані при старті
+        this.hashPool = hashPool;
+        this.store = store;
+        for (int i = 0; i < STRIPES; i++) stripes[i] = new Object();
+        AuthSettings cfg = settings.get();
+        this.limiter = new LoginRateLimiter(cfg.rateLimitMaxTracked);
+        this.quotaFile = new File(plugin.getDataFolder(), "reg_quota.bin");
+        try {
+            quota.load(quotaFile);
+        } catch (IOException ex) {
+            // Квота лише захисна: почати день заново краще, ніж не стартувати
+            plugin.getLogger().warning("Load registration quota failed, starting empty: " + ex);
+        }
+        this.lazy = cfg.usersLazy;
+        if (lazy) {
+            cache = new UserCache(cfg.usersCacheSize);
+            index = store.openIndex(); // У пам'ять потрапляють лише ключі (або нічого, якщо індекс на диску)
+        } else {
+            index = null;
+            cache = null;
+            store.loadAll(users); // Завантажуємо існуючі дані при старті
+        }
     }
 
     /** Чи зареєстрований користувач із даним ніком? */
-    public synchronized boolean isRegistered(String nick) {
-        return users.containsKey(nick.toLowerCase(Locale.ROOT));
+    public boolean isRegistered(String nick) {
+        String key = nick.toLowerCase(Locale.ROOT);
+        return lazy ? index.contains(key) : users.containsKey(key);
     }
 
     /** Перевіряє, чи заблоковано користувача адміністратором. */
-    public synchronized boolean isBlocked(String nick) {
-        UserRecord u = users.get(nick.toLowerCase(Locale.ROOT));
+    public boolean isBlocked(String nick) {
+        String key = nick.toLowerCase(Locale.ROOT);
+        if (lazy) return index.isBlocked(key);
+        UserRecord u = users.get(key);
         return u != null && u.blocked;
     }
 
     /** Реєстрація нового користувача. Повертає "ok" або "exists". */
-    public synchronized String register(String nick, String password, String lang) {
+    public String register(String nick, String password, String lang) {
         String key = nick.toLowerCase(Locale.ROOT);
-        if (users.containsKey(key)) return "exists";
+        if (isRegistered(key)) return "exists";
+        // Хешуємо поза блокуванням, щоб не тримати інших гравців у черзі
         String h = hasher.hash(password);
-        users.put(key, new UserRecord(nick, h, "pbkdf2", lang));
-        saveNow();
+        long waitStart = System.nanoTime();
+        synchronized (lockFor(key)) {
+            metrics.lockWait.recordSince(waitStart);
+            // Поки ми хешували, акаунт міг зареєструвати хтось інший
+            if (isRegistered(key)) return "exists";
+            UserRecord u = new UserRecord(nick, h, hasher.algo(), lang);
+            u.setNickname(key, nick); // запис ділить рядок ключа з мапою
+            add(key, u);
+            persist(key, u);
+        }
+        metrics.registrations.increment();
         return "ok";
     }
 
-    /** Перевіряє пароль користувача. */
-    public synchronized boolean verify(String nick, String password) {
-        UserRecord u = users.get(nick.toLowerCase(Locale.ROOT));
+    /**
+     * Асинхронна реєстрація у пулі хешування. Повертає "ok", "exists" або
+     * "quota", якщо з цього IP сьогодні вже зареєстровано забагато акаунтів;
+     * в останньому випадку хешування не запускається. Слот квоти займається
+     * до хешування (щоб паралельні спроби не проскочили ліміт) і повертається,
+     * якщо акаунт так і не створено.
+     *
+     * @param ip адреса гравця; null — квота не перевіряється
+     */
+    public CompletableFuture<String> registerAsync(String nick, String password, String lang, String ip) {
+        if (isRegistered(nick)) return CompletableFuture.completedFuture("exists");
+        int limit = settings.get().maxRegistrationsPerIpPerDay;
+        if (!quota.tryAcquire(ip, limit)) {
+            return CompletableFuture.completedFuture("quota");
+        }
+        return hashPool.submit(() -> register(nick, password, lang)).whenComplete((r, ex) -> {
+            if (ex != null || !"ok".equals(r)) quota.release(ip, limit);
+        });
+    }
+
+    /**
+     * Перевіряє пароль користувача. Якщо хеш створено іншим алгоритмом або
+     * з помітно іншою кількістю ітерацій, після успішної перевірки він
+     * перераховується під поточну політику — пароль саме зараз відомий.
+     */
+    public boolean verify(String nick, String password) {
+        String key = nick.toLowerCase(Locale.ROOT);
+        UserRecord u = find(key);
         if (u == null) return false;
         if (u.blocked) return false;
-        boolean ok = hasher.verify(password, u.passHash);
-        if (ok) {
-            // Оновлюємо час останнього входу
+        ParsedHash stored = u.parsedHash();
+        boolean ok = hasher.verify(password, stored);
+        if (ok && hasher.needsRehash(stored)) rehash(key, u, stored.source(), password);
+        if (!ok) {
+            metrics.loginFailures.increment();
+        } else {
+            metrics.logins.increment();
+            limiter.onSuccess(key);
+            // Оновлюємо час останнього входу (поле volatile, замок не потрібен)
             u.lastLoginAt = System.currentTimeMillis();
+            try {
+                store.saveLoginTime(key, u);
+            } catch (IOException ex) {
+                plugin.getLogger().warning("Save login time for " + key + " failed: " + ex);
+            }
         }
         return ok;
     }
 
+    /**
+     * Асинхронна перевірка пароля у пулі хешування. Якщо ліміт спроб
+     * для акаунта чи IP вичерпано, future одразу завершується з
+     * {@link RateLimitedException}, і хешування не запускається.
+     *
+     * @param ip адреса гравця; null — перевіряється лише ліміт акаунта
+     */
+    public CompletableFuture<Boolean> verifyAsync(String nick, String password, String ip) {
+        String key = nick.toLowerCase(Locale.ROOT);
+        AuthSettings cfg = settings.get();
+        if (!limiter.tryAcquire(key, ip, cfg.loginPerAccountPer5m, cfg.loginPerIpPer5m)) {
+            metrics.rateLimited.increment();
+            return CompletableFuture.failedFuture(new RateLimitedException("Too many login attempts for " + key));
+        }
+        return hashPool.submit(() -> verify(nick, password));
+    }
+
+    /**
+     * Замінює хеш новим під поточну політику. Хешуємо поза замком; якщо за
+     * цей час пароль встиг змінитись (скидання адміністратором), нічого не пишемо.
+     */
+    private void rehash(String key, UserRecord u, String old, String password) {
+        String h = hasher.hash(password);
+        long waitStart = System.nanoTime();
+        synchronized (lockFor(key)) {
+            metrics.lockWait.recordSince(waitStart);
+            if (!old.equals(u.passHash())) return;
+            u.setPassHash(h);
+            u.setAlgo(hasher.algo());
+            persist(key, u);
+        }
+        rehashed.increment();
+    }
+
     /** Встановлює прапорець блокування для користувача. */
-    public synchronized void setBlocked(String nick, boolean v) {
-        UserRecord u = users.get(nick.toLowerCase(Locale.ROOT));
-        if (u != null) {
-            u.blocked = v;
-            saveNow();
+    public void setBlocked(String nick, boolean v) {
+        String key = nick.toLowerCase(Locale.ROOT);
+        long waitStart = System.nanoTime();
+        synchronized (lockFor(key)) {
+            metrics.lockWait.recordSince(waitStart);
+            UserRecord u = find(key);
+            if (u != null) {
+                u.blocked = v;
+                if (lazy) index.put(key, v);
+                persist(key, u);
+            }
         }
     }
 
@@ -78,30 +241,90 @@ public class AuthService {
      * Якщо користувач не існує — він буде створений із тимчасовим паролем.
      * Метод повертає цей тимчасовий пароль.
      */
-    public synchronized String adminResetPassword(String nick) {
+    public String adminResetPassword(String nick) {
         String key = nick.toLowerCase(Locale.ROOT);
-        UserRecord u = users.get(key);
-        if (u == null) {
-            // Автоматично створимо користувача з тимчасовим паролем
-            String tmp = genTmp();
-            String h = hasher.hash(tmp);
-            u = new UserRecord(nick, h, "pbkdf2", plugin.messages().getDefaultLang());
-            users.put(key, u);
-            saveNow();
-            return tmp;
-        } else {
-            String tmp = genTmp();
-            u.passHash = hasher.hash(tmp);
-            saveNow();
-            return tmp;
+        String tmp = genTmp();
+        String h = hasher.hash(tmp);
+        long waitStart = System.nanoTime();
+        synchronized (lockFor(key)) {
+            metrics.lockWait.recordSince(waitStart);
+            UserRecord u = find(key);
+            if (u == null) {
+                // Автоматично створимо користувача з тимчасовим паролем
+                u = new UserRecord(nick, h, hasher.algo(), settings.get().defaultLang);
+                u.setNickname(key, nick);
+                add(key, u);
+            } else {
+                u.setPassHash(h);
+                u.setAlgo(hasher.algo());
+            }
+            persist(key, u);
         }
+        return tmp;
+    }
+
+    /** Асинхронне скидання пароля, щоб команда адміністратора не хешувала в основному потоці. */
+    public CompletableFuture<String> adminResetPasswordAsync(String nick) {
+        return hashPool.submit(() -> adminResetPassword(nick));
     }
 
     /** Повертає базову інформацію про користувача для команди /bcauth whois. */
-    public synchronized String debugWhois(String nick) {
-        UserRecord u = users.get(nick.toLowerCase(Locale.ROOT));
+    public String debugWhois(String nick) {
+        UserRecord u = find(nick.toLowerCase(Locale.ROOT));
         if (u == null) return "No user";
-        return "nick=" + u.nickname + " blocked=" + u.blocked + " lastLoginAt=" + u.lastLoginAt + " lang=" + u.lang;
+        return "nick=" + u.nickname() + " blocked=" + u.blocked + " lastLoginAt=" + u.lastLoginAt + " lang=" + u.lang();
+    }
+
+    /**
+     * Додає пакет готових записів (імпорт). Наявні акаунти не чіпаються.
+     * Записи потрапляють у сховище однією операцією {@link UserStore#saveBatch},
+     * а не перезаписом файлу на кожен акаунт. Повертає кількість доданих.
+     */
+    public int importBatch(List<UserRecord> batch) {
+        Map<String, UserRecord> added = new LinkedHashMap<>();
+        for (UserRecord u : batch) {
+            String key = u.key();
+            long waitStart = System.nanoTime();
+            synchronized (lockFor(key)) {
+                metrics.lockWait.recordSince(waitStart);
+                if (isRegistered(key) || added.containsKey(key)) continue;
+                add(key, u);
+                added.put(key, u);
+            }
+        }
+        if (added.isEmpty()) return 0;
+        try {
+            store.saveBatch(added);
+        } catch (IOException ex) {
+            plugin.getLogger().warning("Save batch of " + added.size() + " imported users failed: " + ex);
+        }
+        metrics.registrations.add(added.size());
+        return added.size();
+    }
+
+    /**
+     * Обходить усі акаунти (експорт). У лінивому режимі незакріплені записи
+     * читаються зі сховища по одному й не витісняють кеш.
+     */
+    public void forEachUser(BiConsumer<String, UserRecord> action) throws IOException {
+        if (!lazy) {
+            for (Map.Entry<String, UserRecord> e : users.entrySet()) action.accept(e.getKey(), e.getValue());
+            return;
+        }
+        try {
+            index.forEachKey(key -> {
+                UserRecord u = users.get(key);
+                try {
+                    // Сховище пишеться наскрізно, тож воно не відстає від кешу
+                    if (u == null) u = store.load(key);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+                if (u != null) action.accept(key, u);
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
     }
 
     /** Генерує випадковий тимчасовий пароль. */
@@ -113,46 +336,132 @@ public class AuthService {
         return sb.toString();
     }
 
-    /** Завантажує користувачів із файлу users.yml. */
-    private void load() {
-        users.clear();
-        if (!file.exists()) return;
-        YamlConfiguration y = YamlConfiguration.loadConfiguration(file);
-        if (!y.isConfigurationSection("users")) return;
-        for (String key : y.getConfigurationSection("users").getKeys(false)) {
-            String base = "users." + key + ".";
-            UserRecord u = new UserRecord();
-            u.nickname = y.getString(base + "nickname", key);
-            u.passHash = y.getString(base + "passHash", "");
-            u.algo = y.getString(base + "algo", "pbkdf2");
-            u.email = y.getString(base + "email", null);
-            u.lang = y.getString(base + "lang", "ua");
-            u.createdAt = y.getLong(base + "createdAt", System.currentTimeMillis());
-            u.lastLoginAt = y.getLong(base + "lastLoginAt", 0);
-            u.blocked = y.getBoolean(base + "blocked", false);
+    /**
+     * Закріплює запис гравця, що заходить на сервер, щоб кеш його не витіснив.
+     * У звичайному режимі нічого не робить: там у пам'яті й так усі записи.
+     */
+    public void pin(String nick) {
+        if (!lazy) return;
+        String key = nick.toLowerCase(Locale.ROOT);
+        if (users.containsKey(key) || !index.contains(key)) return;
+        synchronized (lockFor(key)) {
+            UserRecord u = find(key);
+            if (u != null) {
+                users.put(key, u);
+                cache.remove(key);
+            }
+        }
+    }
+
+    /** Знімає закріплення після виходу гравця; запис переходить у LRU-кеш. */
+    public void unpin(String nick) {
+        if (!lazy) return;
+        String key = nick.toLowerCase(Locale.ROOT);
+        synchronized (lockFor(key)) {
+            UserRecord u = users.remove(key);
+            if (u != null) cache.put(key, u);
+        }
+    }
+
+    /** Статистика кешу для /bcauth stats. */
+    public String debugCacheStats() {
+        if (!lazy) return "user cache: eager mode, " + users.size() + " records resident";
+        return cache.debugStats() + " pinned=" + users.size() + " indexed=" + index.size();
+    }
+
+    /** Поточна політика хешування та кількість перерахованих хешів для /bcauth stats. */
+    public String debugHashStats() {
+        return hasher.debugStats() + " rehashed=" + rehashed.sum();
+    }
+
+    /** Статистика лімітів входу для /bcauth stats: відмови та пам'ять лічильників. */
+    public String debugRateLimitStats() {
+        return limiter.debugStats();
+    }
+
+    /** Статистика денної квоти реєстрацій для /bcauth stats. */
+    public String debugQuotaStats() {
+        return quota.debugStats();
+    }
+
+    /**
+     * Знаходить запис за ключем. У лінивому режимі при промаху кешу читає
+     * його зі сховища під замком смуги, щоб для одного ключа в пам'яті
+     * ніколи не було двох різних об'єктів.
+     */
+    private UserRecord find(String key) {
+        UserRecord u = users.get(key);
+        if (u != null || !lazy) return u;
+        u = cache.get(key);
+        if (u != null || !index.contains(key)) return u;
+        synchronized (lockFor(key)) {
+            u = users.get(key);
+            if (u == null) u = cache.get(key);
+            if (u == null) {
+                try {
+                    u = store.load(key);
+                } catch (IOException ex) {
+                    plugin.getLogger().warning("Load user " + key + " failed: " + ex);
+                    return null;
+                }
+                if (u != null) cache.put(key, u);
+            }
+            return u;
+        }
+    }
+
+    /** Додає новий запис. Викликається під замком смуги цього ключа. */
+    private void add(String key, UserRecord u) {
+        if (lazy) {
+            index.put(key, u.blocked);
+            cache.put(key, u);
+        } else {
             users.put(key, u);
         }
     }
 
-    /** Зберігає актуальні дані користувачів у файл users.yml. */
-    public synchronized void saveNow() {
-        YamlConfiguration y = new YamlConfiguration();
-        for (Map.Entry<String, UserRecord> e : users.entrySet()) {
-            String base = "users." + e.getKey() + ".";
-            UserRecord u = e.getValue();
-            y.set(base + "nickname", u.nickname);
-            y.set(base + "passHash", u.passHash);
-            y.set(base + "algo", u.algo);
-            y.set(base + "email", u.email);
-            y.set(base + "lang", u.lang);
-            y.set(base + "createdAt", u.createdAt);
-            y.set(base + "lastLoginAt", u.lastLoginAt);
-            y.set(base + "blocked", u.blocked);
+    /** Замок-смуга для заданого ключа. */
+    private Object lockFor(String key) {
+        int h = key.hashCode();
+        return stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+
+    /** Фіксує зміну одного запису у сховищі. Викликається під замком смуги цього ключа. */
+    private void persist(String key, UserRecord u) {
+        try {
+            store.save(key, u);
+        } catch (IOException ex) {
+            plugin.getLogger().warning("Save user " + key + " failed: " + ex);
         }
+    }
+
+    /** Гарантує, що всі зміни користувачів лежать на диску. */
+    public void saveNow() {
+        long start = System.nanoTime();
+        try {
+            store.flush();
+        } catch (IOException ex) {
+            plugin.getLogger().warning("Save users failed: " + ex);
+        }
+        saveQuota();
+        metrics.usersSave.recordSince(start);
+    }
+
+    private void saveQuota() {
+        try {
+            quota.save(quotaFile);
+        } catch (IOException ex) {
+            plugin.getLogger().warning("Save registration quota failed: " + ex);
+        }
+    }
+
+    /** Завершує роботу сервісу: записує все та закриває сховище. */
+    public void close() {
+        saveQuota();
         try {
-            y.save(file);
+            store.close();
         } catch (IOException ex) {
-            plugin.getLogger().warning("Save users.yml failed: " + ex);
+            plugin.getLogger().warning("Close user store failed: " + ex);
         }
     }
 }
@@ -1,68 +1,233 @@
 package city.bit.auth.service;
 
-import city.bit.auth.BitCityAuthPlugin;
+import city.bit.auth.config.AuthSettings;
+import city.bit.auth.metrics.AuthMetrics;
 import city.bit.auth.model.SessionRecord;
-import org.bukkit.configuration.file.YamlConfiguration;
+import city.bit.auth.network.NetworkSessions;
+import city.bit.auth.network.SessionEvent;
+import city.bit.auth.sec.SessionTokens;
+import city.bit.auth.storage.SessionStore;
+import org.bukkit.plugin.Plugin;
 
-import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
 
 /**
  * Сервіс для керування сесіями користувачів.
- * Зберігає інформацію про останній вхід у sessions.yml
+ * Зберігає інформацію про останній вхід (через {@link SessionStore})
  * та дозволяє автоматично авторизувати гравця за збігом IP.
+ *
+ * У режимі write-behind (storage.sessions.write_behind) зміни лише
+ * позначаються як "брудні", а фоновий потік записує їх одним пакетом:
+ * раз на flush_interval_seconds або одразу, коли брудних ключів
+ * накопичилось flush_dirty_threshold.
+ *
+ * Прострочені сесії прибирає фоновий прибиральник: він бере їх із черги,
+ * впорядкованої за expiresAt, невеликими порціями та зберігає результат
+ * одним записом. Метод {@link #get(String)} диска не торкається.
+ *
+ * Кожна сесія несе підписаний токен ({@link SessionTokens}). Автологін
+ * перевіряє підпис, термін, IP та покоління акаунта; той самий токен,
+ * принесений гравцем з іншого вузла, перевіряється взагалі без сховища.
+ *
+ * У мережевому режимі ({@link NetworkSessions}) створення, оновлення та
+ * анулювання сесії розсилаються іншим вузлам, а їхні події застосовуються
+ * до локальної мапи, якщо новіші за відому версію ключа. Автологін після
+ * переходу між серверами так і лишається пошуком у пам'яті.
+ *
+ * Тривалість кожного пакетного запису потрапляє в {@link AuthMetrics}.
  */
 public class SessionService {
 
-    private final BitCityAuthPlugin plugin;
+    private final Plugin plugin;
+    // Поточний знімок налаштувань
+    private final Supplier<AuthSettings> settings;
     // Мапа активних сесій: нік -> сесія
     private final Map<String, SessionRecord> sessions = new HashMap<>();
-    // Файл для збереження сесій
-    private final File file;
-    // Термін життя сесії у днях
-    private final int ttlDays;
+    // Ключі, змінені після останнього запису на диск
+    private final Set<String> dirty = new HashSet<>();
+    // Індекс закінчення сесій: найближча до завершення — на вершині.
+    // Записи не видаляються при оновленні сесії, застарілі просто пропускаються.
+    private final PriorityQueue<Expiry> expiries = new PriorityQueue<>();
+    // Сховище сесій на диску
+    private final SessionStore store;
+    // Видача та перевірка підписаних токенів
+    private final SessionTokens tokens;
+    // Обмін сесіями з іншими вузлами; null — лише локальні сесії
+    private final NetworkSessions network;
+    // Фоновий потік: записувач змін і прибиральник прострочених сесій
+    private final ScheduledExecutorService bg;
+    private final boolean writeBehind;
+    private final int dirtyThreshold;
+    // Скільки сесій прибиральник видаляє за одне захоплення монітора
+    private final int sweepBatch;
+    private boolean flushQueued;
 
-    public SessionService(BitCityAuthPlugin plugin) {
+    public SessionService(Plugin plugin, Supplier<AuthSettings> settings, SessionStore store,
+                          SessionTokens tokens) throws IOException {
+        this(plugin, settings, store, tokens, null);
+    }
+
+    /**
+     * @param network мережеві сесії; null — вузол працює лише зі своїми сесіями
+     */
+    public SessionService(Plugin plugin, Supplier<AuthSettings> settings, SessionStore store,
+                          SessionTokens tokens, NetworkSessions network) throws IOException {
         this.plugin = plugin;
-        this.file = new File(plugin.getDataFolder(), "sessions.yml");
-        this.ttlDays = plugin.getConfig().getInt("auth.session_ttl_days", 14);
+        this.settings = settings;
+        this.store = store;
+        this.tokens = tokens;
+        this.network = network;
+        AuthSettings cfg = settings.get();
+        this.dirtyThreshold = cfg.sessionsFlushDirtyThreshold;
+        this.sweepBatch = cfg.sessionsSweepBatch;
+        this.writeBehind = cfg.sessionsWriteBehind;
         load(); // Після створення одразу завантажуємо існуючі сесії
+        bg = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "BitCityAuth-sessions");
+            t.setDaemon(true);
+            return t;
+        });
+        if (writeBehind) {
+            long interval = cfg.sessionsFlushIntervalSeconds;
+            bg.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.SECONDS);
+        }
+        long sweepEvery = cfg.sessionsSweepIntervalSeconds;
+        // Перший прохід одразу після старту прибирає все, що протермінувалось, поки сервер був вимкнений
+        bg.scheduleWithFixedDelay(this::sweep, 1, sweepEvery, TimeUnit.SECONDS);
+        if (network != null) network.start(this::applyRemote);
     }
 
     /** Повертає сесію користувача або null, якщо вона відсутня чи протермінована. */
     public synchronized SessionRecord get(String nick) {
-        SessionRecord s = sessions.get(nick.toLowerCase(Locale.ROOT));
+        String key = nick.toLowerCase(Locale.ROOT);
+        SessionRecord s = sessions.get(key);
         if (s == null) return null;
-        if (System.currentTimeMillis() > s.expiresAt) {
-            // Сесія прострочена — видаляємо її
-            sessions.remove(nick.toLowerCase(Locale.ROOT));
-            saveNow();
-            return null;
-        }
+        // Прострочену сесію просто не віддаємо; видалить її прибиральник
+        if (System.currentTimeMillis() > s.expiresAt) return null;
         return s;
     }
 
     /** Створює нову сесію або оновлює наявну, встановлюючи нову дату завершення. */
-    public synchronized void createOrRefresh(String nick, String ip) {
+    public void createOrRefresh(String nick, String ip) {
         String key = nick.toLowerCase(Locale.ROOT);
-        SessionRecord s = sessions.get(key);
-        if (s == null) {
-            s = new SessionRecord();
-            s.nickname = nick;
-            s.token = UUID.randomUUID().toString();
-            s.createdAt = System.currentTimeMillis();
+        SessionEvent ev = null;
+        synchronized (this) {
+            SessionRecord s = sessions.get(key);
+            SessionEvent.Type type = SessionEvent.Type.REFRESH;
+            if (s == null) {
+                s = new SessionRecord();
+                s.nickname = nick;
+                s.createdAt = System.currentTimeMillis();
+                type = SessionEvent.Type.CREATE;
+            }
+            s.lastIp = ip;
+            s.expiresAt = System.currentTimeMillis() + settings.get().sessionTtlDays * 24L * 3600_000L;
+            s.token = tokens.issue(key, ip, s.expiresAt);
+            sessions.put(key, s);
+            index(key, s.expiresAt);
+            markDirty(key);
+            if (network != null) {
+                ev = new SessionEvent(type, network.node(), key, network.stamp(key), tokens.generation(key),
+                        new SessionRecord(s));
+            }
         }
-        s.lastIp = ip;
-        s.expiresAt = System.currentTimeMillis() + ttlDays * 24L * 3600_000L;
-        sessions.put(key, s);
-        saveNow();
+        // Розсилаємо вже без монітора: транспорт може доставляти синхронно
+        if (ev != null) network.publish(ev);
     }
 
-    /** Повністю анулює сесію користувача. */
-    public synchronized void invalidate(String nick) {
-        sessions.remove(nick.toLowerCase(Locale.ROOT));
-        saveNow();
+    /**
+     * Чи можна впустити гравця без пароля за його збереженою сесією.
+     * Сесії зі старим токеном-UUID перевіряються за збігом IP, як раніше.
+     */
+    public boolean canResume(String nick, String ip) {
+        String mode = settings.get().sessionIpMatch;
+        SessionRecord s = get(nick);
+        if (s == null || ip == null || "off".equals(mode)) return false;
+        if (SessionTokens.isSigned(s.token)) return tokens.verify(nick, ip, s.token, mode);
+        return ip.equals(s.lastIp);
+    }
+
+    /** Перевіряє токен, який приніс сам гравець (наприклад, з іншого вузла). Сховище не читається. */
+    public boolean canResumeWithToken(String nick, String ip, String token) {
+        return tokens.verify(nick, ip, token, settings.get().sessionIpMatch);
+    }
+
+    /** Поточний токен сесії гравця або null. */
+    public String token(String nick) {
+        SessionRecord s = get(nick);
+        return s == null ? null : s.token;
+    }
+
+    /** Повністю анулює сесію користувача та відкликає всі його токени. */
+    public void invalidate(String nick) {
+        String key = nick.toLowerCase(Locale.ROOT);
+        long version = 0;
+        synchronized (this) {
+            sessions.remove(key);
+            markDirty(key);
+            if (network != null) version = network.stamp(key);
+        }
+        try {
+            tokens.revoke(key);
+        } catch (IOException ex) {
+            plugin.getLogger().warning("Save session generations failed: " + ex);
+        }
+        if (network != null) {
+            network.publish(new SessionEvent(SessionEvent.Type.INVALIDATE, network.node(), key, version,
+                    tokens.generation(key), null));
+        }
+    }
+
+    /**
+     * Застосовує подію іншого вузла (підпис і версію вже перевірив
+     * {@link NetworkSessions}). Покоління токенів підтягується завжди
+     * (воно лише зростає), а сама сесія — лише якщо подія новіша за відому
+     * версію ключа. Перевірка версії та зміна мапи виконуються під тим самим
+     * монітором, що й локальні зміни, тож вони не переставляються.
+     *
+     * Викликається з потоку транспорту (для plugin messaging — основний
+     * потік), тому тут змінюється лише пам'ять, а файли пише фоновий потік.
+     */
+    private void applyRemote(SessionEvent ev) {
+        // Непідписана сесія відновлювалась би за самою IP-адресою; з мережі приймаємо лише підписані
+        if (ev.session != null && !SessionTokens.isSigned(ev.session.token)) return;
+        if (tokens.observe(ev.key, ev.generation)) bg.execute(this::saveGenerations);
+        synchronized (this) {
+            if (!network.accept(ev.key, ev.version)) return;
+            if (ev.type == SessionEvent.Type.INVALIDATE) {
+                sessions.remove(ev.key);
+            } else {
+                sessions.put(ev.key, ev.session);
+                index(ev.key, ev.session.expiresAt);
+            }
+            dirty.add(ev.key);
+            // Без write-behind теж не пишемо тут: запис віддаємо фоновому потоку
+            if ((!writeBehind || dirty.size() >= dirtyThreshold) && !flushQueued) {
+                flushQueued = true;
+                bg.execute(this::flush);
+            }
+        }
+    }
+
+    private void saveGenerations() {
+        try {
+            tokens.saveGenerations();
+        } catch (IOException ex) {
+            plugin.getLogger().warning("Save session generations failed: " + ex);
+        }
+    }
+
+    /** Статистика токенів для /bcauth stats. */
+    public String debugTokenStats() {
+        return tokens.debugStats();
+    }
+
+    /** Статистика мережевих сесій для /bcauth stats. */
+    public String debugNetworkStats() {
+        return network == null ? "network sessions: off" : network.debugStats();
     }
 
     /** Невелика допоміжна команда для адміністратора. */
@@ -79,40 +244,210 @@ public class SessionService {
         return i > 0 ? ip.substring(0, i) + ".*" : ip;
     }
 
-    /** Завантажує сесії з файлу sessions.yml. */
-    private void load() {
-        sessions.clear();
-        if (!file.exists()) return;
-        YamlConfiguration y = YamlConfiguration.loadConfiguration(file);
-        if (!y.isConfigurationSection("sessions")) return;
-        for (String key : y.getConfigurationSection("sessions").getKeys(false)) {
-            String base = "sessions." + key + ".";
-            SessionRecord s = new SessionRecord();
-            s.nickname = y.getString(base + "nickname", key);
-            s.token = y.getString(base + "token", "");
-            s.lastIp = y.getString(base + "lastIp", null);
-            s.createdAt = y.getLong(base + "createdAt", System.currentTimeMillis());
-            s.expiresAt = y.getLong(base + "expiresAt", 0);
-            sessions.put(key, s);
+    /**
+     * Позначає ключ як змінений. Викликається під монітором сервісу.
+     * Без write-behind одразу перезаписує файл, як і раніше.
+     */
+    private void markDirty(String key) {
+        dirty.add(key);
+        if (!writeBehind) {
+            writeDirty();
+            return;
+        }
+        if (dirty.size() >= dirtyThreshold && !flushQueued) {
+            // Багато змін за раз (наприклад, масовий вхід) — не чекаємо таймера
+            flushQueued = true;
+            bg.execute(this::flush);
+        }
+    }
+
+    /** Додає запис в індекс закінчення. Викликається під монітором сервісу. */
+    private void index(String key, long expiresAt) {
+        expiries.add(new Expiry(expiresAt, key));
+        // Кожне оновлення сесії лишає в черзі застарілий запис; коли їх забагато — перебудовуємо
+        if (expiries.size() > sessions.size() * 2 + 1024) {
+            expiries.clear();
+            for (Map.Entry<String, SessionRecord> e : sessions.entrySet()) {
+                expiries.add(new Expiry(e.getValue().expiresAt, e.getKey()));
+            }
+        }
+    }
+
+    /**
+     * Прибирає прострочені сесії порціями по sweepBatch, відпускаючи монітор
+     * між порціями, щоб не затримувати вхід гравців. Усі видалення
+     * потрапляють на диск одним записом. Виконується у фоновому потоці.
+     */
+    private void sweep() {
+        int removed = 0;
+        long now = System.currentTimeMillis();
+        boolean more = true;
+        while (more) {
+            synchronized (this) {
+                int n = 0;
+                while (n < sweepBatch) {
+                    Expiry top = expiries.peek();
+                    if (top == null || top.at >= now) {
+                        more = false;
+                        break;
+                    }
+                    expiries.poll();
+                    n++;
+                    SessionRecord s = sessions.get(top.key);
+                    // Сесію могли оновити після того, як цей запис потрапив у чергу
+                    if (s != null && s.expiresAt == top.at) {
+                        sessions.remove(top.key);
+                        dirty.add(top.key);
+                        removed++;
+                    }
+                }
+            }
         }
+        if (removed > 0) {
+            plugin.getLogger().fine("Swept " + removed + " expired sessions");
+            flush();
+        }
+        // Версії старші за термін дії сесії вже нічого не захищають
+        if (network != null) network.prune(now - settings.get().sessionTtlDays * 24L * 3600_000L);
     }
 
-    /** Зберігає актуальні сесії у файл sessions.yml. */
-    public synchronized void saveNow() {
-        YamlConfiguration y = new YamlConfiguration();
+    /**
+     * Записує всі накопичені зміни одним пакетом. Під монітором лише
+     * копіюються записи, сам файл пишеться вже без блокування.
+     * У режимі write-behind виконується тільки у фоновому потоці, тож
+     * пакети ніколи не записуються навперейми.
+     */
+    private void flush() {
+        if (!writeBehind) {
+            // Без write-behind усі записи йдуть під монітором, як і раніше
+            synchronized (this) {
+                flushQueued = false;
+                writeDirty();
+            }
+            return;
+        }
+        Map<String, SessionRecord> changed = new HashMap<>();
+        Set<String> removed = new HashSet<>();
+        synchronized (this) {
+            flushQueued = false;
+            if (dirty.isEmpty()) return;
+            collectDirty(changed, removed);
+        }
+        long start = System.nanoTime();
+        try {
+            store.saveBatch(changed, removed);
+            AuthMetrics.get().sessionsSave.recordSince(start);
+        } catch (IOException ex) {
+            plugin.getLogger().warning("Flush of " + (changed.size() + removed.size()) + " session changes failed: " + ex);
+            // Повертаємо ключі у брудні, щоб спробувати ще раз на наступному такті
+            synchronized (this) {
+                dirty.addAll(changed.keySet());
+                dirty.addAll(removed);
+            }
+        }
+    }
+
+    /** Розкладає брудні ключі на змінені (копії) та видалені. Викликається під монітором. */
+    private void collectDirty(Map<String, SessionRecord> changed, Set<String> removed) {
+        for (String key : dirty) {
+            SessionRecord s = sessions.get(key);
+            if (s != null) changed.put(key, new SessionRecord(s));
+            else removed.add(key);
+        }
+        dirty.clear();
+    }
+
+    /** Завантажує сесії зі сховища та будує індекс закінчення. */
+    private void load() throws IOException {
+        sessions.clear();
+        expiries.clear();
+        store.loadAll(sessions);
         for (Map.Entry<String, SessionRecord> e : sessions.entrySet()) {
-            String base = "sessions." + e.getKey() + ".";
-            SessionRecord s = e.getValue();
-            y.set(base + "nickname", s.nickname);
-            y.set(base + "token", s.token);
-            y.set(base + "lastIp", s.lastIp);
-            y.set(base + "createdAt", s.createdAt);
-            y.set(base + "expiresAt", s.expiresAt);
+            expiries.add(new Expiry(e.getValue().expiresAt, e.getKey()));
+        }
+    }
+
+    /**
+     * Синхронно записує всі накопичені зміни у сховище.
+     * У режимі write-behind запис усе одно виконує фоновий потік, а ми лише чекаємо.
+     */
+    public void saveNow() {
+        if (!writeBehind || bg.isShutdown()) {
+            synchronized (this) {
+                writeDirty();
+            }
+            return;
+        }
+        try {
+            bg.submit(this::flush).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            plugin.getLogger().warning("Save sessions failed: " + ex.getCause());
+        }
+    }
+
+    /** Записує брудні ключі прямо з-під монітора сервісу. */
+    private void writeDirty() {
+        if (dirty.isEmpty()) return;
+        Map<String, SessionRecord> changed = new HashMap<>();
+        Set<String> removed = new HashSet<>();
+        collectDirty(changed, removed);
+        long start = System.nanoTime();
+        try {
+            store.saveBatch(changed, removed);
+            AuthMetrics.get().sessionsSave.recordSince(start);
+        } catch (IOException ex) {
+            plugin.getLogger().warning("Save sessions failed: " + ex);
+        }
+    }
+
+    /**
+     * Зупиняє фонові задачі та виконує фінальний запис, чекаючи не довше
+     * за вказаний час. Якщо не встигли — зміни за останні секунди буде втрачено,
+     * але сервер не зависне на вимкненні.
+     *
+     * @return false, якщо запис не завершився: тоді сховище лишається
+     *         відкритим, бо фоновий потік може досі в нього писати
+     */
+    public boolean close(long timeoutMs) {
+        if (network != null) network.close();
+        Future<?> last = bg.submit(this::flush);
+        bg.shutdown();
+        try {
+            last.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            plugin.getLogger().warning("Final sessions flush did not finish in " + timeoutMs + " ms");
+            bg.shutdownNow();
+            return false;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            bg.shutdownNow();
+            return false;
+        } catch (ExecutionException ex) {
+            plugin.getLogger().warning("Final sessions flush failed: " + ex.getCause());
         }
         try {
-            y.save(file);
+            store.close();
         } catch (IOException ex) {
-            plugin.getLogger().warning("Save sessions.yml failed: " + ex);
+            plugin.getLogger().warning("Close session store failed: " + ex);
+        }
+        return true;
+    }
+
+    /** Елемент індексу закінчення: момент завершення та ключ сесії. */
+    private static final class Expiry implements Comparable<Expiry> {
+        final long at;
+        final String key;
+
+        Expiry(long at, String key) {
+            this.at = at;
+            this.key = key;
+        }
+
+        @Override
+        public int compareTo(Expiry o) {
+            return Long.compare(at, o.at);
         }
     }
 }
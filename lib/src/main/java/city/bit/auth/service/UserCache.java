@@ -0,0 +1,67 @@
+package city.bit.auth.service;
+
+import city.bit.auth.model.UserRecord;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Обмежений LRU-кеш записів користувачів для лінивого режиму завантаження.
+ * Найдавніше використаний запис витісняється, коли кеш переповнений.
+ * Записи гравців онлайн сюди не потрапляють — вони закріплені окремо.
+ */
+final class UserCache {
+
+    private final int capacity;
+    private final LinkedHashMap<String, UserRecord> map;
+
+    // Лічильники для /bcauth stats
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    UserCache(int capacity) {
+        this.capacity = Math.max(16, capacity);
+        // accessOrder = true: get() переносить запис у "свіжий" кінець
+        this.map = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, UserRecord> eldest) {
+                if (size() > UserCache.this.capacity) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /** Повертає запис із кешу або null; рахує влучання та промахи. */
+    synchronized UserRecord get(String key) {
+        UserRecord u = map.get(key);
+        if (u != null) hits.increment();
+        else misses.increment();
+        return u;
+    }
+
+    synchronized void put(String key, UserRecord u) {
+        map.put(key, u);
+    }
+
+    synchronized UserRecord remove(String key) {
+        return map.remove(key);
+    }
+
+    synchronized int size() {
+        return map.size();
+    }
+
+    String debugStats() {
+        long h = hits.sum();
+        long m = misses.sum();
+        double ratio = h + m == 0 ? 0 : 100.0 * h / (h + m);
+        return "user cache: size=" + size() + "/" + capacity
+                + " hits=" + h + " misses=" + m + " evictions=" + evictions.sum()
+                + String.format(" hitRate=%.1f%%", ratio);
+    }
+}
@@ -0,0 +1,229 @@
+package city.bit.auth.service;
+
+import city.bit.auth.model.UserRecord;
+import city.bit.auth.sec.ParsedHash;
+import city.bit.auth.sec.PasswordHasher;
+import city.bit.auth.storage.TransferFormat;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Масовий імпорт та експорт акаунтів (/bcauth import, /bcauth export)
+ * у форматах {@link TransferFormat}.
+ *
+ * Файл читається потоково, по BATCH записів. Хеш у відомому форматі
+ * (algo:iterations:salt:hashBase64) переноситься як є; відкриті паролі
+ * хешуються паралельно у власному {@link ForkJoinPool}, щоб не займати
+ * пул входу гравців. Готовий пакет фіксується у сховищі однією операцією
+ * через {@link AuthService#importBatch}. Наявні акаунти не перезаписуються.
+ *
+ * Обидві операції блокують потік, що їх викликав: запускати лише асинхронно.
+ */
+public class UserTransfer {
+
+    // Скільки записів читається, хешується та фіксується за раз
+    private static final int BATCH = 1000;
+    // Скільки номерів некоректних рядків показувати в лозі
+    private static final int MAX_REPORTED = 10;
+
+    private final AuthService auth;
+    private final PasswordHasher hasher;
+    private final int parallelism;
+    private final Logger log;
+
+    /**
+     * @param threads потоки для хешування відкритих паролів; 0 або менше — усі ядра
+     */
+    public UserTransfer(AuthService auth, PasswordHasher hasher, int threads, Logger log) {
+        this.auth = auth;
+        this.hasher = hasher;
+        this.parallelism = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.log = log;
+    }
+
+    /** Підсумок імпорту. */
+    public static final class Result {
+        public int read;        // рядків із даними
+        public int added;       // нових акаунтів
+        public int existing;    // уже зареєстровані, пропущені
+        public int hashed;      // відкритих паролів, захешованих при імпорті
+        public int invalid;     // рядків, що не розбираються або без ніка чи пароля
+        public int unsupported; // хешів невідомого формату
+
+        @Override
+        public String toString() {
+            return "read=" + read + " added=" + added + " existing=" + existing + " hashed=" + hashed
+                    + " invalid=" + invalid + " unsupported=" + unsupported;
+        }
+    }
+
+    /**
+     * Імпортує акаунти з файлу. Після кожного пакета progress отримує
+     * проміжний підсумок (викликається з потоку імпорту).
+     *
+     * @param defaultLang мова для записів без поля lang
+     */
+    public Result importFile(File file, String defaultLang, Consumer<String> progress) throws IOException {
+        TransferFormat fmt = TransferFormat.of(file);
+        Result r = new Result();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try (BufferedReader in = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String[] header = null;
+            if (fmt == TransferFormat.CSV) {
+                String h = in.readLine();
+                if (h == null) return r;
+                header = TransferFormat.columns(h);
+            }
+            List<UserRecord> batch = new ArrayList<>(BATCH);
+            List<String> passwords = new ArrayList<>(BATCH);
+            String line;
+            int lineNo = header == null ? 0 : 1;
+            while ((line = in.readLine()) != null) {
+                lineNo++;
+                if (line.isBlank()) continue;
+                r.read++;
+                UserRecord u;
+                String password;
+                try {
+                    Map<String, String> f = fmt.parse(line, header);
+                    u = toRecord(f, defaultLang);
+                    password = f.get("password");
+                    String hash = u.passHash();
+                    if (hash != null && ParsedHash.parse(hash) == null) {
+                        // Хеш іншого плагіна без пароля перенести неможливо
+                        if (password == null) {
+                            r.unsupported++;
+                            report(file, lineNo, "unsupported hash format", r.unsupported);
+                            continue;
+                        }
+                        u.setPassHash(null);
+                    }
+                    if (u.passHash() != null) password = null;
+                    else if (password == null) throw new IllegalArgumentException("no hash or password");
+                } catch (IllegalArgumentException ex) {
+                    r.invalid++;
+                    report(file, lineNo, ex.getMessage(), r.invalid);
+                    continue;
+                }
+                batch.add(u);
+                passwords.add(password);
+                if (batch.size() == BATCH) {
+                    commit(pool, batch, passwords, r);
+                    progress.accept("Import " + file.getName() + ": " + r);
+                }
+            }
+            if (!batch.isEmpty()) commit(pool, batch, passwords, r);
+        } finally {
+            pool.shutdown();
+        }
+        return r;
+    }
+
+    /**
+     * Експортує всі акаунти у файл. Пишеться у тимчасовий файл поруч,
+     * який потім атомарно підміняє цільовий. Повертає кількість записів.
+     */
+    public int exportFile(File file) throws IOException {
+        TransferFormat fmt = TransferFormat.of(file);
+        File tmp = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp");
+        int[] n = {0};
+        try (FileOutputStream fos = new FileOutputStream(tmp);
+             BufferedWriter out = new BufferedWriter(new OutputStreamWriter(fos, StandardCharsets.UTF_8), 1 << 16)) {
+            if (fmt.header() != null) {
+                out.write(fmt.header());
+                out.newLine();
+            }
+            try {
+                auth.forEachUser((key, u) -> {
+                    try {
+                        out.write(fmt.format(key, u));
+                        out.newLine();
+                        n[0]++;
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+            } catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            }
+            out.flush();
+            fos.getChannel().force(true);
+        }
+        try {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        return n[0];
+    }
+
+    /** Хешує відкриті паролі пакета паралельно та фіксує пакет у сховищі. */
+    private void commit(ForkJoinPool pool, List<UserRecord> batch, List<String> passwords, Result r) throws IOException {
+        List<Integer> plain = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            // Уже зареєстровані акаунти все одно буде пропущено — не хешуємо їх марно
+            if (passwords.get(i) != null && !auth.isRegistered(batch.get(i).key())) plain.add(i);
+        }
+        if (!plain.isEmpty()) {
+            try {
+                pool.submit(() -> plain.parallelStream().forEach(i -> batch.get(i).setPassHash(hasher.hash(passwords.get(i))))).get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Import interrupted");
+            } catch (ExecutionException ex) {
+                throw new IOException("Hashing imported passwords failed", ex.getCause());
+            }
+            r.hashed += plain.size();
+        }
+        int added = auth.importBatch(batch);
+        r.added += added;
+        r.existing += batch.size() - added;
+        batch.clear();
+        passwords.clear();
+    }
+
+    /** Запис з полів рядка; passHash лишається null, якщо хешу немає. */
+    private UserRecord toRecord(Map<String, String> f, String defaultLang) {
+        String nick = f.get("nickname");
+        if (nick == null || nick.isBlank() || nick.length() > 32 || nick.chars().anyMatch(Character::isWhitespace)) {
+            throw new IllegalArgumentException("bad nickname '" + nick + "'");
+        }
+        UserRecord u = new UserRecord();
+        u.setNickname(nick);
+        String hash = f.get("hash");
+        u.setPassHash(hash);
+        u.setAlgo(ParsedHash.parse(hash) == null ? hasher.algo() : hash.substring(0, hash.indexOf(':')));
+        u.email = f.get("email");
+        u.setLang(f.getOrDefault("lang", defaultLang));
+        long now = System.currentTimeMillis();
+        u.createdAt = parseLong(f.get("createdAt"), now);
+        u.lastLoginAt = parseLong(f.get("lastLoginAt"), 0);
+        u.blocked = "true".equalsIgnoreCase(f.get("blocked")) || "1".equals(f.get("blocked"));
+        return u;
+    }
+
+    private static long parseLong(String v, long def) {
+        if (v == null) return def;
+        try {
+            return Long.parseLong(v.trim());
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("bad number '" + v + "'");
+        }
+    }
+
+    private void report(File file, int lineNo, String why, int count) {
+        if (count <= MAX_REPORTED) log.warning("Import " + file.getName() + " line " + lineNo + ": " + why);
+        else if (count == MAX_REPORTED + 1) log.warning("Import " + file.getName() + ": more skipped lines not shown");
+    }
+}
@@ -0,0 +1,77 @@
+package city.bit.auth.storage;
+
+import city.bit.auth.metrics.AuthMetrics;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Допоміжні методи для безпечного запису файлів.
+ * Дані спочатку пишуться у тимчасовий файл поруч, скидаються на диск,
+ * і лише потім тимчасовий файл атомарно перейменовується на цільовий.
+ * Якщо сервер впаде посеред запису, старий файл залишиться цілим.
+ * Тимчасовий файл щоразу має унікальне ім'я, тож два одночасні записи
+ * одного файлу не пишуть в один і той самий .tmp: виграє останнє
+ * перейменування, але кожен із файлів цілий.
+ * Розмір кожного запису потрапляє в {@link AuthMetrics}.
+ */
+public final class AtomicFiles {
+
+    /** Вміст, який пишеться потоком, без збирання всього файлу в пам'яті. */
+    public interface Content {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private AtomicFiles() {}
+
+    /** Атомарно замінює вміст файлу рядком у кодуванні UTF-8. */
+    public static void writeString(File target, String content) throws IOException {
+        write(target, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Атомарно замінює вміст файлу масивом байтів. */
+    public static void write(File target, byte[] data) throws IOException {
+        write(target, out -> out.write(data));
+    }
+
+    /** Атомарно замінює вміст файлу тим, що content запише в буферизований потік. */
+    public static void write(File target, Content content) throws IOException {
+        File dir = target.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Cannot create directory " + dir);
+        }
+        // Випадкова частина імені; права — звичайні, як у цільового файлу
+        File tmp = new File(dir, target.getName() + "." + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+        long size;
+        try {
+            try (FileOutputStream fos = new FileOutputStream(tmp);
+                 OutputStream out = new BufferedOutputStream(fos, 1 << 16)) {
+                content.writeTo(out);
+                out.flush();
+                // Гарантуємо, що байти дійсно на диску до перейменування
+                fos.getChannel().force(true);
+                size = fos.getChannel().size();
+            }
+            try {
+                Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                // Деякі файлові системи не вміють атомарного перейменування
+                Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | RuntimeException ex) {
+            Files.deleteIfExists(tmp.toPath());
+            throw ex;
+        }
+        AuthMetrics m = AuthMetrics.get();
+        m.fileWrite.record(size);
+        m.bytesWritten.add(size);
+    }
+}
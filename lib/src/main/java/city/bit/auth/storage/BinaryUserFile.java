@@ -0,0 +1,370 @@
+package city.bit.auth.storage;
+
+import city.bit.auth.model.UserRecord;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Незмінний знімок users.bin, відображений у пам'ять.
+ *
+ * Структура файлу (big-endian):
+ * заголовок (HEADER байт) | записи по RECORD байт | індекс | рядки | таблиця символів.
+ *
+ * Запис має фіксовану форму: createdAt, lastLoginAt, зсув рядків, ітерації,
+ * номери символів (algo, lang, алгоритм хешу), прапорці, а сіль і ключ
+ * хешу лежать сирими байтами, без Base64. Хеш, який не вкладається у цю
+ * форму (чужий формат, довга сіль), зберігається рядком як є.
+ *
+ * Індекс — відкрита адресація з лінійним пробуванням: у кожному слоті
+ * 32-бітний відбиток ключа та номер запису + 1 (0 — порожній слот).
+ * Заповнення не більше половини, тож пошук зазвичай торкається одного-двох
+ * слотів і одного рядка ключа. Жодних об'єктів на купі, крім самого відображення.
+ */
+final class BinaryUserFile {
+
+    private static final int MAGIC = 0x42435542; // "BCUB"
+    private static final int VERSION = 1;
+    private static final int HEADER = 64;
+    private static final int RECORD = 120;
+    private static final int SALT_MAX = 16;
+    private static final int HASH_MAX = 64;
+    private static final int NONE = 0xFFFF;
+    // Прапорці запису
+    private static final int BLOCKED = 1;
+    private static final int RAW_HASH = 2;
+
+    private final MappedByteBuffer map;
+    private final int count;
+    private final int mask;
+    private final long recordsOff;
+    private final long indexOff;
+    private final String[] symbols;
+
+    private BinaryUserFile(MappedByteBuffer map, int count, int slots, long recordsOff, long indexOff, String[] symbols) {
+        this.map = map;
+        this.count = count;
+        this.mask = slots - 1;
+        this.recordsOff = recordsOff;
+        this.indexOff = indexOff;
+        this.symbols = symbols;
+    }
+
+    /** Відображає файл у пам'ять і перевіряє заголовок. */
+    static BinaryUserFile open(File file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size < HEADER) throw new IOException("Truncated " + file.getName());
+            if (size > Integer.MAX_VALUE) throw new IOException(file.getName() + " is larger than 2 GiB");
+            MappedByteBuffer m = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            m.order(ByteOrder.BIG_ENDIAN);
+            if (m.getInt(0) != MAGIC || m.getInt(4) != VERSION) throw new IOException("Not a users.bin snapshot: " + file);
+            int count = m.getInt(8);
+            int slots = m.getInt(12);
+            long recordsOff = m.getLong(16);
+            long indexOff = m.getLong(24);
+            long symbolsOff = m.getLong(32);
+            if (count < 0 || Integer.bitCount(slots) != 1 || recordsOff + (long) count * RECORD > indexOff
+                    || indexOff + (long) slots * 8 > symbolsOff || symbolsOff > size) {
+                throw new IOException("Corrupt " + file.getName());
+            }
+            int pos = (int) symbolsOff;
+            int n = m.getInt(pos);
+            pos += 4;
+            String[] symbols = new String[n];
+            for (int i = 0; i < n; i++) {
+                int len = m.getShort(pos) & 0xFFFF;
+                symbols[i] = utf8(m, pos + 2, len).intern();
+                pos += 2 + len;
+            }
+            return new BinaryUserFile(m, count, slots, recordsOff, indexOff, symbols);
+        }
+    }
+
+    int count() { return count; }
+
+    /** Номер запису за ключем (нік у нижньому регістрі) або -1. */
+    int find(String key) {
+        if (count == 0) return -1;
+        byte[] k = key.getBytes(StandardCharsets.UTF_8);
+        int h = hash(k);
+        for (int slot = h & mask; ; slot = (slot + 1) & mask) {
+            int at = (int) (indexOff + (long) slot * 8);
+            int rec = map.getInt(at + 4);
+            if (rec == 0) return -1;
+            if (map.getInt(at) == h && keyEquals(rec - 1, k)) return rec - 1;
+        }
+    }
+
+    boolean blocked(int rec) {
+        return (map.get(base(rec) + 34) & BLOCKED) != 0;
+    }
+
+    /** Ключ запису (для обходу всіх акаунтів). */
+    String key(int rec) {
+        int s = (int) map.getLong(base(rec) + 16);
+        return utf8(map, s + 2, map.getShort(s) & 0xFFFF);
+    }
+
+    /** Збирає повний запис; passHash відновлюється у звичайному текстовому форматі. */
+    UserRecord read(int rec) {
+        return read(rec, key(rec));
+    }
+
+    /** Те саме, але з уже прочитаним ключем: запис посилатиметься на цей рядок. */
+    UserRecord read(int rec, String key) {
+        int b = base(rec);
+        UserRecord u = new UserRecord();
+        u.createdAt = map.getLong(b);
+        u.lastLoginAt = map.getLong(b + 8);
+        int s = (int) map.getLong(b + 16);
+        int iterations = map.getInt(b + 24);
+        u.setAlgo(symbol(map.getShort(b + 28)));
+        u.setLang(symbol(map.getShort(b + 30)));
+        String hashAlgo = symbol(map.getShort(b + 32));
+        int flags = map.get(b + 34);
+        u.blocked = (flags & BLOCKED) != 0;
+        // Рядки: ключ, нік, email, сирий хеш
+        int keyLen = map.getShort(s) & 0xFFFF;
+        s += 2 + keyLen;
+        int[] pos = {s};
+        u.setNickname(key, readString(pos));
+        u.email = readString(pos);
+        if ((flags & RAW_HASH) != 0) {
+            u.setPassHash(readString(pos));
+        } else {
+            byte[] salt = new byte[map.get(b + 35)];
+            byte[] dk = new byte[map.get(b + 36)];
+            map.get(b + 40, salt);
+            map.get(b + 40 + SALT_MAX, dk);
+            u.setPassHash(hashAlgo + ":" + iterations + ":" + Base64.getEncoder().encodeToString(salt)
+                    + ":" + Base64.getEncoder().encodeToString(dk));
+        }
+        return u;
+    }
+
+    private String symbol(short id) {
+        int i = id & 0xFFFF;
+        return i == NONE ? null : symbols[i];
+    }
+
+    private String readString(int[] pos) {
+        int len = map.getShort(pos[0]) & 0xFFFF;
+        if (len == NONE) {
+            pos[0] += 2;
+            return null;
+        }
+        String v = utf8(map, pos[0] + 2, len);
+        pos[0] += 2 + len;
+        return v;
+    }
+
+    private boolean keyEquals(int rec, byte[] k) {
+        int s = (int) map.getLong(base(rec) + 16);
+        if ((map.getShort(s) & 0xFFFF) != k.length) return false;
+        for (int i = 0; i < k.length; i++) if (map.get(s + 2 + i) != k[i]) return false;
+        return true;
+    }
+
+    private int base(int rec) {
+        return (int) (recordsOff + (long) rec * RECORD);
+    }
+
+    private static String utf8(ByteBuffer m, int at, int len) {
+        byte[] b = new byte[len];
+        m.get(at, b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    /** 32-бітний FNV-1a з перемішуванням; ніколи не 0, щоб 0 означав порожній відбиток. */
+    private static int hash(byte[] k) {
+        int h = 0x811C9DC5;
+        for (byte b : k) {
+            h ^= b & 0xFF;
+            h *= 0x01000193;
+        }
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        return h == 0 ? 1 : h;
+    }
+
+    /**
+     * Записує знімок у file через тимчасовий файл. Записи передаються
+     * по одному через {@link Writer#add}; їхня кількість має бути відома наперед,
+     * щоб одразу рахувати зсуви областей.
+     */
+    static Writer writer(File file, int count) throws IOException {
+        return new Writer(file, count);
+    }
+
+    static final class Writer implements Closeable {
+        private final File file;
+        private final File tmp;
+        private final File tmpStrings;
+        private final int count;
+        private final int slots;
+        private final long stringsOff;
+        private final DataOutputStream out;
+        private final DataOutputStream strings;
+        private final int[] fingerprints;
+        private final int[] refs;
+        private final Map<String, Integer> symbolIds = new HashMap<>();
+        private final List<String> symbolList = new ArrayList<>();
+        private long stringsLen;
+        private int added;
+        private boolean done;
+
+        private Writer(File file, int count) throws IOException {
+            this.file = file;
+            File dir = file.getAbsoluteFile().getParentFile();
+            this.tmp = new File(dir, file.getName() + ".tmp");
+            this.tmpStrings = new File(dir, file.getName() + ".strings.tmp");
+            this.count = count;
+            this.slots = Integer.highestOneBit(Math.max(2, count * 2 - 1)) << 1;
+            this.fingerprints = new int[slots];
+            this.refs = new int[slots];
+            this.stringsOff = HEADER + (long) count * RECORD + (long) slots * 8;
+            this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16));
+            this.strings = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpStrings), 1 << 16));
+            out.write(new byte[HEADER]);
+        }
+
+        void add(String key, UserRecord u) throws IOException {
+            if (added == count) throw new IOException("More records than announced: " + count);
+            byte[] k = key.getBytes(StandardCharsets.UTF_8);
+            int h = hash(k);
+            int slot = h & (slots - 1);
+            while (refs[slot] != 0) slot = (slot + 1) & (slots - 1);
+            fingerprints[slot] = h;
+            refs[slot] = added + 1;
+
+            String passHash = u.passHash();
+            String[] parts = passHash == null ? null : passHash.split(":", -1);
+            byte[] salt = null;
+            byte[] dk = null;
+            int iterations = 0;
+            if (parts != null && parts.length == 4) {
+                try {
+                    iterations = Integer.parseInt(parts[1]);
+                    salt = Base64.getDecoder().decode(parts[2]);
+                    dk = Base64.getDecoder().decode(parts[3]);
+                    // Відновлений рядок має збігатися байт у байт, інакше зберігаємо як є
+                    if (salt.length > SALT_MAX || dk.length > HASH_MAX
+                            || !passHash.equals(parts[0] + ":" + iterations + ":" + Base64.getEncoder().encodeToString(salt)
+                            + ":" + Base64.getEncoder().encodeToString(dk))) {
+                        salt = null;
+                    }
+                } catch (IllegalArgumentException ex) {
+                    salt = null;
+                }
+            }
+            boolean raw = salt == null;
+
+            out.writeLong(u.createdAt);
+            out.writeLong(u.lastLoginAt);
+            out.writeLong(stringsOff + stringsLen);
+            out.writeInt(raw ? 0 : iterations);
+            out.writeShort(symbol(u.algo()));
+            out.writeShort(symbol(u.lang()));
+            out.writeShort(raw ? NONE : symbol(parts[0]));
+            out.writeByte((u.blocked ? BLOCKED : 0) | (raw ? RAW_HASH : 0));
+            out.writeByte(raw ? 0 : salt.length);
+            out.writeByte(raw ? 0 : dk.length);
+            out.write(new byte[3]);
+            byte[] area = new byte[SALT_MAX + HASH_MAX];
+            if (!raw) {
+                System.arraycopy(salt, 0, area, 0, salt.length);
+                System.arraycopy(dk, 0, area, SALT_MAX, dk.length);
+            }
+            out.write(area);
+
+            string(k);
+            String nick = u.nickname();
+            string(nick == null ? null : nick.getBytes(StandardCharsets.UTF_8));
+            string(u.email == null ? null : u.email.getBytes(StandardCharsets.UTF_8));
+            if (raw) string(passHash == null ? null : passHash.getBytes(StandardCharsets.UTF_8));
+            added++;
+        }
+
+        /** Дописує індекс, рядки й символи, виправляє заголовок і підміняє файл. */
+        void finish() throws IOException {
+            if (added != count) throw new IOException("Expected " + count + " records, got " + added);
+            strings.close();
+            for (int i = 0; i < slots; i++) {
+                out.writeInt(fingerprints[i]);
+                out.writeInt(refs[i]);
+            }
+            out.flush();
+            Files.copy(tmpStrings.toPath(), out);
+            Files.delete(tmpStrings.toPath());
+            long symbolsOff = stringsOff + stringsLen;
+            out.writeInt(symbolList.size());
+            for (String s : symbolList) {
+                byte[] b = s.getBytes(StandardCharsets.UTF_8);
+                out.writeShort(b.length);
+                out.write(b);
+            }
+            out.close();
+            done = true;
+            ByteBuffer h = ByteBuffer.allocate(HEADER);
+            h.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(slots)
+                    .putLong(HEADER).putLong(HEADER + (long) count * RECORD).putLong(symbolsOff);
+            h.rewind();
+            try (FileChannel ch = FileChannel.open(tmp.toPath(), StandardOpenOption.WRITE)) {
+                ch.write(h, 0);
+                ch.force(true);
+            }
+            try {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+
+        /** Закриває потоки; якщо {@link #finish} не викликали — прибирає тимчасові файли. */
+        @Override
+        public void close() throws IOException {
+            if (done) return;
+            out.close();
+            strings.close();
+            Files.deleteIfExists(tmp.toPath());
+            Files.deleteIfExists(tmpStrings.toPath());
+        }
+
+        private int symbol(String s) throws IOException {
+            if (s == null) return NONE;
+            Integer id = symbolIds.get(s);
+            if (id != null) return id;
+            if (symbolList.size() == NONE) throw new IOException("Too many distinct algo/lang values");
+            symbolIds.put(s, symbolList.size());
+            symbolList.add(s);
+            return symbolList.size() - 1;
+        }
+
+        private void string(byte[] b) throws IOException {
+            if (b == null) {
+                strings.writeShort(NONE);
+                stringsLen += 2;
+                return;
+            }
+            if (b.length >= NONE) throw new IOException("String field longer than " + (NONE - 1) + " bytes");
+            strings.writeShort(b.length);
+            strings.write(b);
+            stringsLen += 2 + b.length;
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package city.bit.auth.storage;
+
+import city.bit.auth.model.UserRecord;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Бінарне сховище users.bin (storage.users.mode: binary) для великих баз.
+ *
+ * Основа — незмінний знімок {@link BinaryUserFile}, відображений у пам'ять:
+ * старт — це mmap замість розбору, а {@link #openIndex()} відповідає на
+ * "чи є такий акаунт" і "чи заблокований" прямо з хеш-індексу файлу.
+ * Повний запис збирається лише для того акаунта, який запитали.
+ *
+ * Зміни після знімка лежать у невеликій мапі overlay і дописуються в
+ * users.bin.journal (той самий формат, що й {@link UserJournal}). Коли журнал
+ * виростає, у фоні пишеться новий знімок: журнал ротується, знімок разом
+ * з overlay переписується у новий файл, який атомарно підміняє старий, а з
+ * overlay прибираються записи, що з того часу не змінювались.
+ *
+ * Файл підміняється переміщенням, поки старе відображення ще відкрите.
+ * У Linux це безпечно; у Windows переміщення може не вдатися, тоді знімок
+ * лишається старим, а зміни — у журналі.
+ */
+public class BinaryUserStore implements UserStore {
+
+    private final File file;
+    private final Logger log;
+    private final UserJournal journal;
+    private final int compactAfter;
+    private final ExecutorService compactor;
+    private final Object compactLock = new Object();
+    private final AtomicBoolean compactionQueued = new AtomicBoolean();
+    // Входи після знімка: журнал їх не бачить, але кожен лишає запис в overlay
+    private final AtomicInteger loginsSinceSnapshot = new AtomicInteger();
+    // Поточний знімок; null, поки users.bin ще не створено
+    private volatile BinaryUserFile snapshot;
+    // Записи, змінені після знімка (ті самі об'єкти, що й у сервісі)
+    private final Map<String, UserRecord> overlay = new ConcurrentHashMap<>();
+    private boolean opened;
+
+    public BinaryUserStore(File dataFolder, int compactAfter, boolean fsync, Logger log) {
+        this.file = new File(dataFolder, "users.bin");
+        this.log = log;
+        this.journal = new UserJournal(new File(dataFolder, "users.bin.journal"), fsync);
+        this.compactAfter = Math.max(1, compactAfter);
+        this.compactor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "BitCityAuth-users-compactor");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Записує users.bin з мапи записів (перетворення з users.yml).
+     * Наявний файл підміняється атомарно.
+     */
+    public static void write(File dataFolder, Map<String, UserRecord> users) throws IOException {
+        try (BinaryUserFile.Writer w = BinaryUserFile.writer(new File(dataFolder, "users.bin"), users.size())) {
+            for (Map.Entry<String, UserRecord> e : users.entrySet()) w.add(e.getKey(), e.getValue());
+            w.finish();
+        }
+    }
+
+    /**
+     * Читає всі записи users.bin разом із журналом, нічого не змінюючи
+     * на диску (перетворення у users.yml).
+     */
+    public static void readAll(File dataFolder, Map<String, UserRecord> into, Logger log) throws IOException {
+        File bin = new File(dataFolder, "users.bin");
+        if (bin.exists()) {
+            BinaryUserFile s = BinaryUserFile.open(bin);
+            for (int i = 0; i < s.count(); i++) {
+                String key = s.key(i);
+                into.put(key, s.read(i, key));
+            }
+        }
+        new UserJournal(new File(dataFolder, "users.bin.journal"), false).replay(into, log);
+    }
+
+    /** Відображає знімок і відтворює журнал. Повторні виклики нічого не роблять. */
+    private synchronized void open() throws IOException {
+        if (opened) return;
+        if (file.exists()) snapshot = BinaryUserFile.open(file);
+        int replayed = journal.replay(overlay, log);
+        if (replayed > 0) log.info("Replayed " + replayed + " users.bin.journal entries");
+        opened = true;
+    }
+
+    @Override
+    public void loadAll(Map<String, UserRecord> into) throws IOException {
+        open();
+        BinaryUserFile s = snapshot;
+        if (s != null) {
+            for (int i = 0; i < s.count(); i++) {
+                String key = s.key(i);
+                if (!overlay.containsKey(key)) into.put(key, s.read(i, key));
+            }
+        }
+        into.putAll(overlay);
+    }
+
+    @Override
+    public void loadIndex(BiConsumer<String, Boolean> sink) throws IOException {
+        open();
+        BinaryUserFile s = snapshot;
+        if (s != null) {
+            for (int i = 0; i < s.count(); i++) {
+                String key = s.key(i);
+                if (!overlay.containsKey(key)) sink.accept(key, s.blocked(i));
+            }
+        }
+        for (Map.Entry<String, UserRecord> e : overlay.entrySet()) sink.accept(e.getKey(), e.getValue().blocked);
+    }
+
+    /**
+     * Індекс поверх хеш-індексу знімка. На купі лежать лише ключі, додані
+     * або змінені після старту.
+     */
+    @Override
+    public UserIndex openIndex() throws IOException {
+        open();
+        return new MappedIndex();
+    }
+
+    @Override
+    public UserRecord load(String key) {
+        UserRecord u = overlay.get(key);
+        if (u != null) return u;
+        BinaryUserFile s = snapshot;
+        if (s == null) return null;
+        int i = s.find(key);
+        return i < 0 ? null : s.read(i, key);
+    }
+
+    @Override
+    public void saveLoginTime(String key, UserRecord u) {
+        // Як і в YAML, час входу потрапить у наступний знімок без рядка в журналі.
+        // Але вхід тримає запис в overlay, тож рахується до порогу знімка —
+        // інакше на сервері, де лише входять, overlay доріс би до всіх акаунтів
+        if (overlay.put(key, u) == null) loginsSinceSnapshot.incrementAndGet();
+        maybeCompact(false);
+    }
+
+    @Override
+    public void save(String key, UserRecord u) {
+        overlay.put(key, u);
+        boolean appended = true;
+        try {
+            journal.append(key, u);
+        } catch (IOException ex) {
+            log.warning("Append users.bin.journal failed, scheduling full snapshot: " + ex);
+            appended = false;
+        }
+        maybeCompact(!appended);
+    }
+
+    @Override
+    public void saveBatch(Map<String, UserRecord> batch) {
+        overlay.putAll(batch);
+        boolean appended = true;
+        try {
+            for (Map.Entry<String, UserRecord> e : batch.entrySet()) journal.append(e.getKey(), e.getValue());
+        } catch (IOException ex) {
+            log.warning("Append users.bin.journal failed, scheduling full snapshot: " + ex);
+            appended = false;
+        }
+        maybeCompact(!appended);
+    }
+
+    /** Синхронно пише новий знімок, якщо після попереднього щось змінилось. */
+    @Override
+    public void flush() throws IOException {
+        open();
+        if (overlay.isEmpty() && journal.entries() == 0 && file.exists()) return;
+        compactNow();
+    }
+
+    @Override
+    public void close() throws IOException {
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        journal.close();
+    }
+
+    private void maybeCompact(boolean force) {
+        boolean due = journal.entries() + loginsSinceSnapshot.get() >= compactAfter;
+        if ((force || due) && compactionQueued.compareAndSet(false, true)) {
+            compactor.execute(this::compactNow);
+        }
+    }
+
+    /**
+     * Пише новий знімок. Як і в {@link YamlUserStore}, журнал ротується до
+     * копіювання overlay, тож зміна, що потрапила в копію наполовину, є і в
+     * новому журналі. Після підміни файлу з overlay прибираються лише ті
+     * записи, поля яких досі збігаються з записаною копією; зміна, що прийшла
+     * пізніше, лишається в overlay (перевірка й видалення атомарні для ключа).
+     */
+    private void compactNow() {
+        synchronized (compactLock) {
+            compactionQueued.set(false);
+            loginsSinceSnapshot.set(0);
+            try {
+                journal.rotate();
+            } catch (IOException ex) {
+                log.warning("Rotate users.bin.journal failed: " + ex);
+                return;
+            }
+            Map<String, UserRecord> copy = new HashMap<>(overlay.size() * 2);
+            for (Map.Entry<String, UserRecord> e : overlay.entrySet()) copy.put(e.getKey(), new UserRecord(e.getValue()));
+            BinaryUserFile old = snapshot;
+            try {
+                int count = copy.size();
+                if (old != null) {
+                    for (int i = 0; i < old.count(); i++) if (!copy.containsKey(old.key(i))) count++;
+                }
+                try (BinaryUserFile.Writer w = BinaryUserFile.writer(file, count)) {
+                    if (old != null) {
+                        for (int i = 0; i < old.count(); i++) {
+                            String key = old.key(i);
+                            if (!copy.containsKey(key)) w.add(key, old.read(i));
+                        }
+                    }
+                    for (Map.Entry<String, UserRecord> e : copy.entrySet()) w.add(e.getKey(), e.getValue());
+                    w.finish();
+                }
+                snapshot = BinaryUserFile.open(file);
+                journal.dropRotated();
+            } catch (IOException ex) {
+                // Старий журнал лишається на диску і буде відтворений при наступному старті
+                log.warning("Save users.bin snapshot failed: " + ex);
+                return;
+            }
+            for (Map.Entry<String, UserRecord> e : copy.entrySet()) {
+                overlay.computeIfPresent(e.getKey(), (k, cur) -> cur.sameAs(e.getValue()) ? null : cur);
+            }
+        }
+    }
+
+    /**
+     * Індекс лінивого режиму: спершу ключі, додані чи змінені через сервіс,
+     * потім хеш-індекс поточного знімка.
+     */
+    private final class MappedIndex implements UserIndex {
+        private final Map<String, Boolean> changed = new ConcurrentHashMap<>();
+
+        MappedIndex() {
+            for (Map.Entry<String, UserRecord> e : overlay.entrySet()) changed.put(e.getKey(), e.getValue().blocked);
+        }
+
+        @Override
+        public boolean contains(String key) {
+            if (changed.containsKey(key)) return true;
+            BinaryUserFile s = snapshot;
+            return s != null && s.find(key) >= 0;
+        }
+
+        @Override
+        public boolean isBlocked(String key) {
+            Boolean v = changed.get(key);
+            if (v != null) return v;
+            BinaryUserFile s = snapshot;
+            if (s == null) return false;
+            int i = s.find(key);
+            return i >= 0 && s.blocked(i);
+        }
+
+        @Override
+        public void put(String key, boolean blocked) {
+            changed.put(key, blocked);
+        }
+
+        @Override
+        public int size() {
+            BinaryUserFile s = snapshot;
+            if (s == null) return changed.size();
+            int n = s.count();
+            for (String key : changed.keySet()) if (s.find(key) < 0) n++;
+            return n;
+        }
+
+        @Override
+        public void forEachKey(Consumer<String> action) {
+            BinaryUserFile s = snapshot;
+            if (s != null) {
+                for (int i = 0; i < s.count(); i++) {
+                    String key = s.key(i);
+                    if (!changed.containsKey(key)) action.accept(key);
+                }
+            }
+            for (String key : changed.keySet()) action.accept(key);
+        }
+    }
+}
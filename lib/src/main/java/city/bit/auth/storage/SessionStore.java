@@ -0,0 +1,27 @@
+package city.bit.auth.storage;
+
+import city.bit.auth.model.SessionRecord;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Сховище сесій. {@link city.bit.auth.service.SessionService} передає сюди
+ * накопичені зміни пакетами: нові/оновлені записи та ключі видалених сесій.
+ * Записи у пакеті — копії, сховище може зберігати їх у себе.
+ */
+public interface SessionStore {
+
+    /** Завантажує всі сесії у передану мапу. */
+    void loadAll(Map<String, SessionRecord> into) throws IOException;
+
+    /** Читає одну сесію за ключем або повертає null. */
+    SessionRecord load(String key) throws IOException;
+
+    /** Застосовує пакет змін: upsert для changed і видалення для removed. */
+    void saveBatch(Map<String, SessionRecord> changed, Set<String> removed) throws IOException;
+
+    /** Закриває сховище. */
+    void close() throws IOException;
+}
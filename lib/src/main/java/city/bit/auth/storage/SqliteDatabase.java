@@ -0,0 +1,61 @@
+package city.bit.auth.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Вбудована база SQLite у файлі auth.db.
+ * Драйвер org.sqlite.JDBC вже є у складі сервера Paper/Spigot, тож окремо
+ * його підключати не потрібно. Одне з'єднання спільне для сховищ
+ * користувачів і сесій; доступ до нього серіалізується через цей об'єкт.
+ */
+public class SqliteDatabase {
+
+    final Connection conn;
+
+    public SqliteDatabase(File file) throws IOException {
+        try {
+            Class.forName("org.sqlite.JDBC");
+            File dir = file.getAbsoluteFile().getParentFile();
+            if (dir != null) dir.mkdirs();
+            conn = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+            try (Statement st = conn.createStatement()) {
+                // WAL дозволяє читати під час запису, NORMAL — розумний компроміс для WAL
+                st.execute("PRAGMA journal_mode=WAL");
+                st.execute("PRAGMA synchronous=NORMAL");
+                st.execute("CREATE TABLE IF NOT EXISTS users ("
+                        + "user_key TEXT PRIMARY KEY, nickname TEXT NOT NULL, pass_hash TEXT NOT NULL, algo TEXT,"
+                        + " email TEXT, lang TEXT, created_at INTEGER NOT NULL, last_login_at INTEGER NOT NULL,"
+                        + " blocked INTEGER NOT NULL DEFAULT 0)");
+                st.execute("CREATE TABLE IF NOT EXISTS sessions ("
+                        + "user_key TEXT PRIMARY KEY, nickname TEXT NOT NULL, token TEXT, last_ip TEXT,"
+                        + " created_at INTEGER NOT NULL, expires_at INTEGER NOT NULL)");
+                st.execute("CREATE INDEX IF NOT EXISTS sessions_expires_at ON sessions(expires_at)");
+            }
+        } catch (ClassNotFoundException | SQLException ex) {
+            throw new IOException("Cannot open SQLite database " + file + ": " + ex, ex);
+        }
+    }
+
+    /** Чи порожня таблиця (використовується для одноразової міграції з YAML). */
+    public synchronized boolean isEmpty(String table) throws IOException {
+        try (Statement st = conn.createStatement();
+             java.sql.ResultSet rs = st.executeQuery("SELECT 1 FROM " + table + " LIMIT 1")) {
+            return !rs.next();
+        } catch (SQLException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    public synchronized void close() throws IOException {
+        try {
+            conn.close();
+        } catch (SQLException ex) {
+            throw new IOException(ex);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package city.bit.auth.storage;
+
+import city.bit.auth.model.SessionRecord;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Сховище сесій у SQLite. Пакет змін застосовується однією транзакцією:
+ * upsert для оновлених сесій і DELETE для видалених.
+ */
+public class SqliteSessionStore implements SessionStore {
+
+    private static final String COLS = "user_key, nickname, token, last_ip, created_at, expires_at";
+
+    private final SqliteDatabase db;
+    private final PreparedStatement selectOne;
+    private final PreparedStatement upsert;
+    private final PreparedStatement delete;
+
+    public SqliteSessionStore(SqliteDatabase db) throws IOException {
+        this.db = db;
+        try {
+            selectOne = db.conn.prepareStatement("SELECT " + COLS + " FROM sessions WHERE user_key = ?");
+            upsert = db.conn.prepareStatement("INSERT OR REPLACE INTO sessions (" + COLS + ") VALUES (?, ?, ?, ?, ?, ?)");
+            delete = db.conn.prepareStatement("DELETE FROM sessions WHERE user_key = ?");
+        } catch (SQLException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    @Override
+    public void loadAll(Map<String, SessionRecord> into) throws IOException {
+        synchronized (db) {
+            try (PreparedStatement ps = db.conn.prepareStatement("SELECT " + COLS + " FROM sessions");
+                 ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) into.put(rs.getString(1), read(rs));
+            } catch (SQLException ex) {
+                throw new IOException(ex);
+            }
+        }
+    }
+
+    @Override
+    public SessionRecord load(String key) throws IOException {
+        synchronized (db) {
+            try {
+                selectOne.setString(1, key);
+                try (ResultSet rs = selectOne.executeQuery()) {
+                    return rs.next() ? read(rs) : null;
+                }
+            } catch (SQLException ex) {
+                throw new IOException(ex);
+            }
+        }
+    }
+
+    @Override
+    public void saveBatch(Map<String, SessionRecord> changed, Set<String> removed) throws IOException {
+        if (changed.isEmpty() && removed.isEmpty()) return;
+        synchronized (db) {
+            try {
+                db.conn.setAutoCommit(false);
+                try {
+                    for (Map.Entry<String, SessionRecord> e : changed.entrySet()) {
+                        SessionRecord s = e.getValue();
+                        upsert.setString(1, e.getKey());
+                        upsert.setString(2, s.nickname);
+                        upsert.setString(3, s.token);
+                        upsert.setString(4, s.lastIp);
+                        upsert.setLong(5, s.createdAt);
+                        upsert.setLong(6, s.expiresAt);
+                        upsert.addBatch();
+                    }
+                    for (String key : removed) {
+                        delete.setString(1, key);
+                        delete.addBatch();
+                    }
+                    if (!changed.isEmpty()) upsert.executeBatch();
+                    if (!removed.isEmpty()) delete.executeBatch();
+                    db.conn.commit();
+                } catch (SQLException ex) {
+                    db.conn.rollback();
+                    throw ex;
+                } finally {
+                    db.conn.setAutoCommit(true);
+                }
+            } catch (SQLException ex) {
+                throw new IOException(ex);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (db) {
+            try {
+                selectOne.close();
+                upsert.close();
+                delete.close();
+            } catch (SQLException ex) {
+                throw new IOException(ex);
+            }
+        }
+    }
+
+    private static SessionRecord read(ResultSet rs) throws SQLException {
+        SessionRecord s = new SessionRecord();
+        s.nickname = rs.getString(2);
+        s.token = rs.getString(3);
+        s.lastIp = rs.getString(4);
+        s.createdAt = rs.getLong(5);
+        s.expiresAt = rs.getLong(6);
+        return s;
+    }
+}
@@ -0,0 +1,172 @@
+package city.bit.auth.storage;
+
+import city.bit.auth.model.UserRecord;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Сховище користувачів у SQLite. Кожна зміна — це оновлення одного рядка
+ * за первинним ключем через підготовлений запит, тож вартість запису
+ * не залежить від кількості акаунтів.
+ */
+public class SqliteUserStore implements UserStore {
+
+    private static final String COLS = "user_key, nickname, pass_hash, algo, email, lang, created_at, last_login_at, blocked";
+
+    private final SqliteDatabase db;
+    private final PreparedStatement selectOne;
+    private final PreparedStatement upsert;
+    private final PreparedStatement updateLogin;
+
+    public SqliteUserStore(SqliteDatabase db) throws IOException {
+        this.db = db;
+        try {
+            selectOne = db.conn.prepareStatement("SELECT " + COLS + " FROM users WHERE user_key = ?");
+            upsert = db.conn.prepareStatement("INSERT OR REPLACE INTO users (" + COLS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)");
+            updateLogin = db.conn.prepareStatement("UPDATE users SET last_login_at = ? WHERE user_key = ?");
+        } catch (SQLException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    @Override
+    public void loadAll(Map<String, UserRecord> into) throws IOException {
+        synchronized (db) {
+            try (PreparedStatement ps = db.conn.prepareStatement("SELECT " + COLS + " FROM users");
+                 ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    // Запис і мапа ділять один рядок-ключ
+                    String key = rs.getString(1);
+                    into.put(key, read(rs, key));
+                }
+            } catch (SQLException ex) {
+                throw new IOException(ex);
+            }
+        }
+    }
+
+    @Override
+    public void loadIndex(BiConsumer<String, Boolean> sink) throws IOException {
+        synchronized (db) {
+            try (PreparedStatement ps = db.conn.prepareStatement("SELECT user_key, blocked FROM users");
+                 ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) sink.accept(rs.getString(1), rs.getInt(2) != 0);
+            } catch (SQLException ex) {
+                throw new IOException(ex);
+            }
+        }
+    }
+
+    @Override
+    public UserRecord load(String key) throws IOException {
+        synchronized (db) {
+            try {
+                selectOne.setString(1, key);
+                try (ResultSet rs = selectOne.executeQuery()) {
+                    return rs.next() ? read(rs, key) : null;
+                }
+            } catch (SQLException ex) {
+                throw new IOException(ex);
+            }
+        }
+    }
+
+    @Override
+    public void save(String key, UserRecord u) throws IOException {
+        synchronized (db) {
+            try {
+                bind(upsert, key, u);
+                upsert.executeUpdate();
+            } catch (SQLException ex) {
+                throw new IOException(ex);
+            }
+        }
+    }
+
+    @Override
+    public void saveLoginTime(String key, UserRecord u) throws IOException {
+        synchronized (db) {
+            try {
+                updateLogin.setLong(1, u.lastLoginAt);
+                updateLogin.setString(2, key);
+                updateLogin.executeUpdate();
+            } catch (SQLException ex) {
+                throw new IOException(ex);
+            }
+        }
+    }
+
+    /** Пакетний запис в одній транзакції. */
+    @Override
+    public void saveBatch(Map<String, UserRecord> batch) throws IOException {
+        if (batch.isEmpty()) return;
+        synchronized (db) {
+            try {
+                db.conn.setAutoCommit(false);
+                try {
+                    for (Map.Entry<String, UserRecord> e : batch.entrySet()) {
+                        bind(upsert, e.getKey(), e.getValue());
+                        upsert.addBatch();
+                    }
+                    upsert.executeBatch();
+                    db.conn.commit();
+                } catch (SQLException ex) {
+                    db.conn.rollback();
+                    throw ex;
+                } finally {
+                    db.conn.setAutoCommit(true);
+                }
+            } catch (SQLException ex) {
+                throw new IOException(ex);
+            }
+        }
+    }
+
+    @Override
+    public void flush() {
+        // Кожна зміна вже зафіксована у базі
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (db) {
+            try {
+                selectOne.close();
+                upsert.close();
+                updateLogin.close();
+            } catch (SQLException ex) {
+                throw new IOException(ex);
+            }
+        }
+    }
+
+    private static void bind(PreparedStatement ps, String key, UserRecord u) throws SQLException {
+        ps.setString(1, key);
+        ps.setString(2, u.nickname());
+        ps.setString(3, u.passHash());
+        ps.setString(4, u.algo());
+        ps.setString(5, u.email);
+        ps.setString(6, u.lang());
+        ps.setLong(7, u.createdAt);
+        ps.setLong(8, u.lastLoginAt);
+        ps.setInt(9, u.blocked ? 1 : 0);
+    }
+
+    private static UserRecord read(ResultSet rs, String key) throws SQLException {
+        UserRecord u = new UserRecord();
+        u.setNickname(key, rs.getString(2));
+        u.setPassHash(rs.getString(3));
+        u.setAlgo(rs.getString(4));
+        u.email = rs.getString(5);
+        u.setLang(rs.getString(6));
+        u.createdAt = rs.getLong(7);
+        u.lastLoginAt = rs.getLong(8);
+        u.blocked = rs.getInt(9) != 0;
+        return u;
+    }
+}
@@ -0,0 +1,165 @@
+package city.bit.auth.storage;
+
+import city.bit.auth.config.AuthSettings;
+import city.bit.auth.model.SessionRecord;
+import city.bit.auth.model.UserRecord;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Вибір і відкриття сховищ за параметром storage.backend у config.yml:
+ * "yaml" (за замовчуванням) або "sqlite". Для yaml акаунти можуть лежати
+ * в users.bin (storage.users.mode: binary); між users.yml і users.bin
+ * дані перетворюються автоматично при першому старті з новим режимом.
+ *
+ * При першому запуску з sqlite, якщо база ще порожня, дані автоматично
+ * переносяться з users.yml або users.bin та з sessions.yml. Перенесені
+ * файли акаунтів перейменовуються в *.converted-{час}; sessions.yml не змінюється.
+ */
+public final class Storage {
+
+    public final UserStore users;
+    public final SessionStore sessions;
+    // База SQLite, якщо вибрано цей бекенд
+    private final SqliteDatabase db;
+
+    private Storage(UserStore users, SessionStore sessions, SqliteDatabase db) {
+        this.users = users;
+        this.sessions = sessions;
+        this.db = db;
+    }
+
+    /** Відкриває сховища відповідно до конфігурації. */
+    public static Storage open(File dataFolder, AuthSettings cfg, Logger log) throws IOException {
+        String backend = cfg.storageBackend;
+        switch (backend) {
+            case "yaml": {
+                UserStore users;
+                if ("binary".equals(cfg.usersMode)) {
+                    convertUsers(dataFolder, true, log);
+                    users = new BinaryUserStore(dataFolder, cfg.usersCompactAfter, cfg.usersJournalFsync, log);
+                } else {
+                    convertUsers(dataFolder, false, log);
+                    users = new YamlUserStore(dataFolder,
+                            "journal".equals(cfg.usersMode),
+                            cfg.usersCompactAfter,
+                            cfg.usersJournalFsync,
+                            log);
+                }
+                return new Storage(users, new YamlSessionStore(dataFolder), null);
+            }
+            case "sqlite": {
+                SqliteDatabase db = new SqliteDatabase(new File(dataFolder, cfg.sqliteFile));
+                SqliteUserStore users = new SqliteUserStore(db);
+                SqliteSessionStore sessions = new SqliteSessionStore(db);
+                if (db.isEmpty("users")) migrateUsers(dataFolder, users, log);
+                if (db.isEmpty("sessions") && new File(dataFolder, "sessions.yml").exists()) {
+                    Map<String, SessionRecord> all = new HashMap<>();
+                    new YamlSessionStore(dataFolder).loadAll(all);
+                    sessions.saveBatch(all, Collections.emptySet());
+                    log.info("Migrated " + all.size() + " sessions from sessions.yml to SQLite");
+                }
+                return new Storage(users, sessions, db);
+            }
+            default:
+                throw new IOException("Unknown storage.backend: " + backend);
+        }
+    }
+
+    /**
+     * Переносить акаунти в порожню базу SQLite з новішого з наборів
+     * users.yml і users.bin (кожен разом зі своїм журналом). Обидва набори
+     * потім відкладаються в *.converted-{час}, щоб повернення на yaml не
+     * підхопило застарілі дані.
+     */
+    private static void migrateUsers(File dataFolder, UserStore users, Logger log) throws IOException {
+        File[] yml = {new File(dataFolder, "users.yml"), new File(dataFolder, "users.journal")};
+        File[] bin = {new File(dataFolder, "users.bin"), new File(dataFolder, "users.bin.journal")};
+        long ymlAt = lastModified(yml);
+        long binAt = lastModified(bin);
+        if (ymlAt < 0 && binAt < 0) return;
+        Map<String, UserRecord> all = new HashMap<>();
+        boolean fromBinary = binAt > ymlAt;
+        if (fromBinary) {
+            BinaryUserStore.readAll(dataFolder, all, log);
+        } else {
+            new YamlUserStore(dataFolder, false, 1, false, log).loadAll(all);
+        }
+        users.saveBatch(all);
+        log.info("Migrated " + all.size() + " users from " + (fromBinary ? "users.bin" : "users.yml") + " to SQLite");
+        long stamp = System.currentTimeMillis();
+        archive(yml, stamp, log);
+        archive(bin, stamp, log);
+    }
+
+    /**
+     * Перетворення між users.yml і users.bin при зміні storage.users.mode.
+     * Файл разом із незакритим журналом вважається одним набором; набір
+     * іншого формату перетворюється, якщо він новіший за потрібний (або
+     * потрібного ще немає). Після перетворення обидва старі набори
+     * перейменовуються в *.converted-{час}, тож при наступній зміні режиму
+     * застарілий файл не підхопиться. Якщо новіший саме потрібний набір,
+     * залишки іншого формату так само відкладаються вбік із попередженням.
+     *
+     * @param toBinary true — з users.yml у users.bin, false — навпаки
+     */
+    private static void convertUsers(File dataFolder, boolean toBinary, Logger log) throws IOException {
+        File[] yml = {new File(dataFolder, "users.yml"), new File(dataFolder, "users.journal")};
+        File[] bin = {new File(dataFolder, "users.bin"), new File(dataFolder, "users.bin.journal")};
+        File[] source = toBinary ? yml : bin;
+        File[] target = toBinary ? bin : yml;
+        long sourceAt = lastModified(source);
+        if (sourceAt < 0) return;
+        long stamp = System.currentTimeMillis();
+        if (lastModified(target) >= sourceAt) {
+            log.warning("Both users.yml and users.bin exist and " + target[0].getName()
+                    + " is newer; keeping it and moving the older " + source[0].getName() + " aside");
+            archive(source, stamp, log);
+            return;
+        }
+        Map<String, UserRecord> all = new HashMap<>();
+        if (toBinary) {
+            new YamlUserStore(dataFolder, false, 1, false, log).loadAll(all);
+        } else {
+            BinaryUserStore.readAll(dataFolder, all, log);
+        }
+        // Старий набір цільового формату не повинен відтворитись поверх свіжого файлу
+        archive(target, stamp, log);
+        if (toBinary) {
+            BinaryUserStore.write(dataFolder, all);
+        } else {
+            new YamlUserStore(dataFolder, false, 1, false, log).saveBatch(all);
+        }
+        archive(source, stamp, log);
+        log.info("Converted " + all.size() + " users from " + source[0].getName() + " to " + target[0].getName());
+    }
+
+    /** Найпізніший час зміни серед наявних файлів набору; -1 — жодного немає. */
+    private static long lastModified(File... files) {
+        long at = -1;
+        for (File f : files) if (f.exists()) at = Math.max(at, f.lastModified());
+        return at;
+    }
+
+    /** Перейменовує наявні файли набору в name.converted-stamp. */
+    private static void archive(File[] files, long stamp, Logger log) throws IOException {
+        for (File f : files) {
+            if (!f.exists()) continue;
+            File to = new File(f.getParentFile(), f.getName() + ".converted-" + stamp);
+            Files.move(f.toPath(), to.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            log.info("Moved " + f.getName() + " to " + to.getName());
+        }
+    }
+
+    /** Закриває сховища. Викликається після того, як сервіси записали все своє. */
+    public void close() throws IOException {
+        if (db != null) db.close();
+    }
+}
@@ -0,0 +1,225 @@
+package city.bit.auth.storage;
+
+import city.bit.auth.model.UserRecord;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Рядкові формати для /bcauth import та /bcauth export: CSV із заголовком
+ * і JSON Lines (один плоский об'єкт на рядок). Обидва читаються й пишуться
+ * по одному рядку, тож файл будь-якого розміру не потрапляє в пам'ять цілком.
+ *
+ * Поля: nickname, password (лише для імпорту, відкритий пароль),
+ * hash (algo:iterations:salt:hashBase64), email, lang, createdAt,
+ * lastLoginAt, blocked. Відсутні поля — null.
+ *
+ * CSV — за RFC 4180, але без переносів рядків усередині значень.
+ */
+public enum TransferFormat {
+    CSV, JSONL;
+
+    /** Колонки, які пише експорт, у порядку CSV-заголовка. */
+    public static final String[] EXPORT_FIELDS = {"nickname", "hash", "email", "lang", "createdAt", "lastLoginAt", "blocked"};
+
+    /** Формат за розширенням файлу: .csv або .jsonl/.json. */
+    public static TransferFormat of(File f) throws IOException {
+        String n = f.getName().toLowerCase(Locale.ROOT);
+        if (n.endsWith(".csv")) return CSV;
+        if (n.endsWith(".jsonl") || n.endsWith(".json")) return JSONL;
+        throw new IOException("Unknown file format (expected .csv or .jsonl): " + f.getName());
+    }
+
+    /**
+     * Розбирає один рядок даних у мапу поле -> значення.
+     *
+     * @param header назви колонок CSV (ігнорується для JSONL)
+     * @throws IllegalArgumentException якщо рядок не розбирається
+     */
+    public Map<String, String> parse(String line, String[] header) {
+        return this == CSV ? parseCsv(line, header) : parseJson(line);
+    }
+
+    /** Рядок заголовка CSV або null для JSONL. */
+    public String header() {
+        return this == CSV ? String.join(",", EXPORT_FIELDS) : null;
+    }
+
+    /** Колонки з рядка заголовка CSV. */
+    public static String[] columns(String headerLine) {
+        String[] cols = splitCsv(headerLine.startsWith("\uFEFF") ? headerLine.substring(1) : headerLine);
+        for (int i = 0; i < cols.length; i++) cols[i] = cols[i].trim();
+        return cols;
+    }
+
+    /** Форматує запис у рядок (без переносу в кінці). */
+    public String format(String key, UserRecord u) {
+        String nick = u.nickname();
+        String[] v = {nick == null ? key : nick, u.passHash(), u.email, u.lang(),
+                Long.toString(u.createdAt), Long.toString(u.lastLoginAt), Boolean.toString(u.blocked)};
+        StringBuilder sb = new StringBuilder(160);
+        if (this == CSV) {
+            for (int i = 0; i < v.length; i++) {
+                if (i > 0) sb.append(',');
+                if (v[i] != null) csvField(sb, v[i]);
+            }
+        } else {
+            sb.append('{');
+            for (int i = 0; i < v.length; i++) {
+                if (i > 0) sb.append(',');
+                sb.append('"').append(EXPORT_FIELDS[i]).append("\":");
+                // Числа та boolean пишемо без лапок
+                if (v[i] == null) sb.append("null");
+                else if (i >= 4) sb.append(v[i]);
+                else jsonString(sb, v[i]);
+            }
+            sb.append('}');
+        }
+        return sb.toString();
+    }
+
+    // === CSV ===
+
+    private static Map<String, String> parseCsv(String line, String[] header) {
+        String[] vals = splitCsv(line);
+        Map<String, String> out = new HashMap<>();
+        for (int i = 0; i < header.length && i < vals.length; i++) {
+            if (!vals[i].isEmpty()) out.put(header[i], vals[i]);
+        }
+        return out;
+    }
+
+    private static String[] splitCsv(String line) {
+        List<String> out = new ArrayList<>();
+        StringBuilder cur = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        cur.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    cur.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                out.add(cur.toString());
+                cur.setLength(0);
+            } else {
+                cur.append(c);
+            }
+        }
+        if (quoted) throw new IllegalArgumentException("Unterminated quote");
+        out.add(cur.toString());
+        return out.toArray(new String[0]);
+    }
+
+    private static void csvField(StringBuilder sb, String v) {
+        if (v.indexOf(',') < 0 && v.indexOf('"') < 0) {
+            sb.append(v);
+            return;
+        }
+        sb.append('"').append(v.replace("\"", "\"\"")).append('"');
+    }
+
+    // === JSON Lines ===
+
+    /** Плоский об'єкт: значення — рядки, числа, true/false або null. */
+    private static Map<String, String> parseJson(String line) {
+        Map<String, String> out = new HashMap<>();
+        int[] pos = {skipWs(line, 0)};
+        expect(line, pos, '{');
+        if (peek(line, pos) == '}') return out;
+        while (true) {
+            String name = readString(line, pos);
+            expect(line, pos, ':');
+            char c = peek(line, pos);
+            String value;
+            if (c == '"') {
+                value = readString(line, pos);
+            } else {
+                int start = pos[0];
+                while (pos[0] < line.length() && ",} \t".indexOf(line.charAt(pos[0])) < 0) pos[0]++;
+                value = line.substring(start, pos[0]);
+                if (value.isEmpty()) throw new IllegalArgumentException("Missing value for " + name);
+                if ("null".equals(value)) value = null;
+            }
+            if (value != null) out.put(name, value);
+            char next = peek(line, pos);
+            pos[0]++;
+            if (next == '}') return out;
+            if (next != ',') throw new IllegalArgumentException("Expected , or } at " + pos[0]);
+        }
+    }
+
+    private static String readString(String s, int[] pos) {
+        expect(s, pos, '"');
+        StringBuilder sb = new StringBuilder();
+        int i = pos[0];
+        while (i < s.length()) {
+            char c = s.charAt(i++);
+            if (c == '"') {
+                pos[0] = i;
+                return sb.toString();
+            }
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            if (i >= s.length()) break;
+            char e = s.charAt(i++);
+            switch (e) {
+                case 'n': sb.append('\n'); break;
+                case 't': sb.append('\t'); break;
+                case 'r': sb.append('\r'); break;
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'u':
+                    if (i + 4 > s.length()) throw new IllegalArgumentException("Bad \\u escape");
+                    sb.append((char) Integer.parseInt(s.substring(i, i + 4), 16));
+                    i += 4;
+                    break;
+                default: sb.append(e); // \" \\ \/
+            }
+        }
+        throw new IllegalArgumentException("Unterminated string");
+    }
+
+    private static void jsonString(StringBuilder sb, String v) {
+        sb.append('"');
+        for (int i = 0; i < v.length(); i++) {
+            char c = v.charAt(i);
+            if (c == '"' || c == '\\') sb.append('\\').append(c);
+            else if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+            else sb.append(c);
+        }
+        sb.append('"');
+    }
+
+    private static void expect(String s, int[] pos, char c) {
+        if (peek(s, pos) != c) throw new IllegalArgumentException("Expected " + c + " at " + pos[0]);
+        pos[0]++;
+    }
+
+    /** Пропускає пробіли й повертає наступний символ (0 — кінець рядка). */
+    private static char peek(String s, int[] pos) {
+        pos[0] = skipWs(s, pos[0]);
+        return pos[0] < s.length() ? s.charAt(pos[0]) : 0;
+    }
+
+    private static int skipWs(String s, int i) {
+        while (i < s.length() && Character.isWhitespace(s.charAt(i))) i++;
+        return i;
+    }
+}
@@ -0,0 +1,49 @@
+package city.bit.auth.storage;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Індекс "ключ -> заблокований" для лінивого режиму
+ * {@link city.bit.auth.service.AuthService}. За замовчуванням це мапа в пам'яті,
+ * заповнена через {@link UserStore#loadIndex}; сховище з власним індексом
+ * на диску може відповідати на ці запити без копії всіх ключів на купі.
+ *
+ * Усі методи потокобезпечні.
+ */
+public interface UserIndex {
+
+    boolean contains(String key);
+
+    boolean isBlocked(String key);
+
+    /** Додає ключ або змінює його прапорець блокування. */
+    void put(String key, boolean blocked);
+
+    int size();
+
+    /** Обходить усі ключі (кожен рівно один раз). */
+    void forEachKey(Consumer<String> action);
+
+    /** Індекс у звичайній мапі. */
+    static UserIndex inMemory() {
+        Map<String, Boolean> map = new ConcurrentHashMap<>();
+        return new UserIndex() {
+            @Override
+            public boolean contains(String key) { return map.containsKey(key); }
+
+            @Override
+            public boolean isBlocked(String key) { return map.getOrDefault(key, Boolean.FALSE); }
+
+            @Override
+            public void put(String key, boolean blocked) { map.put(key, blocked); }
+
+            @Override
+            public int size() { return map.size(); }
+
+            @Override
+            public void forEachKey(Consumer<String> action) { map.keySet().forEach(action); }
+        };
+    }
+}
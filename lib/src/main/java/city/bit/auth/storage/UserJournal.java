@@ -0,0 +1,215 @@
+package city.bit.auth.storage;
+
+import city.bit.auth.metrics.AuthMetrics;
+import city.bit.auth.model.UserRecord;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Журнал змін користувачів, що доповнюється лише в кінець (append-only).
+ * Кожна мутація — це один рядок із повним станом одного запису, тому
+ * вартість запису не залежить від кількості акаунтів.
+ *
+ * Формат рядка (поля розділені табуляцією):
+ * U key nickname passHash algo email lang createdAt lastLoginAt blocked
+ *
+ * Під час ущільнення поточний журнал перейменовується у users.journal.old,
+ * і новий журнал починається з нуля. Після успішного запису знімка
+ * старий журнал видаляється. Повторне відтворення записів безпечне,
+ * бо кожен рядок містить повний стан запису.
+ */
+public class UserJournal implements Closeable {
+
+    private static final int FIELDS = 10;
+    private static final String NULL = "\\N";
+
+    private final File file;
+    private final File rotated;
+    private final boolean fsync;
+
+    private FileOutputStream out;
+    // Кількість записів у поточному журналі (після останнього ущільнення)
+    private int entries;
+
+    public UserJournal(File file, boolean fsync) {
+        this.file = file;
+        this.rotated = new File(file.getPath() + ".old");
+        this.fsync = fsync;
+    }
+
+    /** Відкриває журнал для дописування. */
+    public synchronized void open() throws IOException {
+        if (out != null) return;
+        out = new FileOutputStream(file, true);
+    }
+
+    /** Дописує один запис у кінець журналу. */
+    public synchronized void append(String key, UserRecord u) throws IOException {
+        if (out == null) open();
+        StringBuilder sb = new StringBuilder(160);
+        sb.append('U');
+        field(sb, key);
+        field(sb, u.nickname());
+        field(sb, u.passHash());
+        field(sb, u.algo());
+        field(sb, u.email);
+        field(sb, u.lang());
+        field(sb, Long.toString(u.createdAt));
+        field(sb, Long.toString(u.lastLoginAt));
+        field(sb, u.blocked ? "1" : "0");
+        sb.append('\n');
+        byte[] line = sb.toString().getBytes(StandardCharsets.UTF_8);
+        out.write(line);
+        AuthMetrics.get().bytesWritten.add(line.length);
+        if (fsync) out.getChannel().force(false);
+        entries++;
+    }
+
+    /** Кількість записів, доданих після останнього ущільнення. */
+    public synchronized int entries() { return entries; }
+
+    /**
+     * Переводить поточний журнал у стан "на ущільнення" та починає новий.
+     * Якщо попереднє ущільнення не завершилось, поточні записи дописуються
+     * до старого журналу, щоб нічого не загубити.
+     */
+    public synchronized void rotate() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+        if (file.exists()) {
+            if (rotated.exists()) {
+                Files.write(rotated.toPath(), Files.readAllBytes(file.toPath()), StandardOpenOption.APPEND);
+                Files.delete(file.toPath());
+            } else {
+                Files.move(file.toPath(), rotated.toPath());
+            }
+        }
+        entries = 0;
+        open();
+    }
+
+    /** Видаляє старий журнал після того, як знімок успішно записано. */
+    public synchronized void dropRotated() throws IOException {
+        Files.deleteIfExists(rotated.toPath());
+    }
+
+    /** Видаляє обидва журнали (наприклад, після повного збереження у режимі yaml). */
+    public synchronized void deleteAll() throws IOException {
+        close();
+        Files.deleteIfExists(rotated.toPath());
+        Files.deleteIfExists(file.toPath());
+        entries = 0;
+    }
+
+    /**
+     * Відтворює старий, а потім поточний журнал поверх уже завантаженого знімка.
+     * Повертає кількість застосованих записів.
+     */
+    public synchronized int replay(Map<String, UserRecord> into, Logger log) throws IOException {
+        int n = replayFile(rotated, into, log);
+        int cur = replayFile(file, into, log);
+        entries = cur;
+        return n + cur;
+    }
+
+    private static int replayFile(File f, Map<String, UserRecord> into, Logger log) throws IOException {
+        if (!f.exists()) return 0;
+        int applied = 0;
+        int lineNo = 0;
+        try (BufferedReader r = Files.newBufferedReader(f.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                lineNo++;
+                if (line.isEmpty()) continue;
+                String[] p = split(line);
+                if (p == null || p.length != FIELDS || !"U".equals(p[0])) {
+                    // Найчастіше це обірваний останній рядок після аварійної зупинки
+                    log.warning("Skipping damaged journal line " + lineNo + " in " + f.getName());
+                    continue;
+                }
+                try {
+                    UserRecord u = new UserRecord();
+                    u.setNickname(p[1], p[2]);
+                    u.setPassHash(p[3]);
+                    u.setAlgo(p[4]);
+                    u.email = p[5];
+                    u.setLang(p[6]);
+                    u.createdAt = Long.parseLong(p[7]);
+                    u.lastLoginAt = Long.parseLong(p[8]);
+                    u.blocked = "1".equals(p[9]);
+                    into.put(p[1], u);
+                    applied++;
+                } catch (NumberFormatException ex) {
+                    log.warning("Skipping damaged journal line " + lineNo + " in " + f.getName());
+                }
+            }
+        }
+        return applied;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+
+    private static void field(StringBuilder sb, String v) {
+        sb.append('\t');
+        if (v == null) {
+            sb.append(NULL);
+            return;
+        }
+        for (int i = 0; i < v.length(); i++) {
+            char c = v.charAt(i);
+            switch (c) {
+                case '\\': sb.append("\\\\"); break;
+                case '\t': sb.append("\\t"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                default: sb.append(c);
+            }
+        }
+    }
+
+    /** Розбирає рядок журналу на поля. Повертає null, якщо екранування зіпсоване. */
+    private static String[] split(String line) {
+        // Табуляції всередині значень екрановані, тож кожна "сира" табуляція — роздільник
+        String[] parts = line.split("\t", -1);
+        if (parts.length != FIELDS) return null;
+        for (int i = 0; i < parts.length; i++) {
+            String v = parts[i];
+            if (NULL.equals(v)) {
+                parts[i] = null;
+                continue;
+            }
+            if (v.indexOf('\\') < 0) continue;
+            StringBuilder sb = new StringBuilder(v.length());
+            for (int k = 0; k < v.length(); k++) {
+                char c = v.charAt(k);
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                if (++k >= v.length()) return null;
+                switch (v.charAt(k)) {
+                    case '\\': sb.append('\\'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    default: return null;
+                }
+            }
+            parts[i] = sb.toString();
+        }
+        return parts;
+    }
+}
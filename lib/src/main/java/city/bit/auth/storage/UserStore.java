@@ -0,0 +1,58 @@
+package city.bit.auth.storage;
+
+import city.bit.auth.model.UserRecord;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Сховище облікових записів. {@link city.bit.auth.service.AuthService} тримає
+ * записи у пам'яті, а сховище відповідає лише за те, як вони лежать на диску.
+ * Ключ — нік у нижньому регістрі.
+ *
+ * Методи зміни викликаються з різних потоків (під замком смуги конкретного
+ * ключа), тож реалізації мають бути потокобезпечними.
+ */
+public interface UserStore {
+
+    /** Завантажує всі записи у передану мапу. */
+    void loadAll(Map<String, UserRecord> into) throws IOException;
+
+    /**
+     * Передає для кожного акаунта лише ключ і прапорець блокування.
+     * Використовується лінивим режимом, де в пам'яті живе тільки індекс ключів.
+     */
+    void loadIndex(BiConsumer<String, Boolean> sink) throws IOException;
+
+    /**
+     * Відкриває індекс ключів для лінивого режиму. Типово — мапа в пам'яті,
+     * заповнена через {@link #loadIndex}.
+     */
+    default UserIndex openIndex() throws IOException {
+        UserIndex index = UserIndex.inMemory();
+        loadIndex(index::put);
+        return index;
+    }
+
+    /** Читає один запис за ключем або повертає null. */
+    UserRecord load(String key) throws IOException;
+
+    /** Зберігає один змінений або новий запис. */
+    void save(String key, UserRecord u) throws IOException;
+
+    /**
+     * Фіксує лише час останнього входу. Сховища, що записують дані
+     * знімками, можуть нічого не робити: поле потрапить у наступний знімок.
+     */
+    void saveLoginTime(String key, UserRecord u) throws IOException;
+
+    /** Зберігає пакет записів за одну операцію. */
+    void saveBatch(Map<String, UserRecord> batch) throws IOException;
+
+    /** Гарантує, що всі прийняті зміни лежать на диску. */
+    void flush() throws IOException;
+
+    /** Закриває сховище; перед цим виконує {@link #flush()}. */
+    void close() throws IOException;
+}
@@ -0,0 +1,364 @@
+package city.bit.auth.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.BiConsumer;
+
+/**
+ * Потоковий читач users.yml та sessions.yml без побудови дерева YamlConfiguration.
+ *
+ * Розуміє саме ту форму, яку пише плагін: одна секція верхнього рівня,
+ * у ній записи "ключ:" з відступом 2, а в них поля "назва: значення"
+ * з відступом 4. Значення — звичайні скаляри або рядки в одинарних чи
+ * подвійних лапках. Перенесені на кілька рядків звичайні й одинарні
+ * значення склеюються через пробіл, як у YAML; багаторядкові рядки в
+ * подвійних лапках (там перенос може бути екранований "\") і значення з
+ * порожнім рядком усередині віддаються YamlConfiguration. Запис будується
+ * одразу з рядків файлу; у пам'яті ніколи не лежить весь документ.
+ *
+ * Великий файл ділиться на частини за межами записів і читається кількома
+ * потоками; записи потрапляють у приймач у порядку файлу з викликаючого потоку.
+ *
+ * Якщо трапляється щось інше (потокові колекції, якорі, блочні скаляри,
+ * інші секції), {@link #read} повертає false, і викликач читає файл
+ * звичайним YamlConfiguration — ручні правки файлу не ламають старт.
+ */
+final class YamlRecordReader {
+
+    /** Створює запис із ключа та значень полів (null — поля немає). */
+    interface Factory<T> {
+        T create(String key, String[] values);
+    }
+
+    // Частина файлу на один потік; менші файли читаються в одному потоці
+    private static final long CHUNK = 4L << 20;
+    private static final int BUF = 1 << 16;
+
+    private final String section;
+    private final String[] fields;
+
+    /**
+     * @param section назва секції верхнього рівня ("users", "sessions")
+     * @param fields  назви полів; їхні значення передаються у {@link Factory} у цьому порядку
+     */
+    YamlRecordReader(String section, String... fields) {
+        this.section = section;
+        this.fields = fields;
+    }
+
+    /**
+     * Читає всі записи секції у приймач. Повертає false, якщо форма файлу
+     * не підтримується; тоді приймач міг отримати частину записів, і
+     * викликач має почати наново.
+     */
+    <T> boolean read(File file, Factory<T> factory, BiConsumer<String, T> into) throws IOException {
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = ch.size();
+            int parts = (int) Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), size / CHUNK));
+            if (parts == 1) {
+                Chunk<T> c = new Chunk<>(ch, 0, size, true, factory);
+                c.run();
+                return c.drain(into);
+            }
+            List<CompletableFuture<Chunk<T>>> futures = new ArrayList<>(parts);
+            for (int i = 0; i < parts; i++) {
+                Chunk<T> c = new Chunk<>(ch, size * i / parts, size * (i + 1) / parts, i == 0, factory);
+                futures.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        c.run();
+                    } catch (IOException ex) {
+                        throw new CompletionException(ex);
+                    }
+                    return c;
+                }));
+            }
+            boolean ok = true;
+            for (CompletableFuture<Chunk<T>> f : futures) {
+                Chunk<T> c;
+                try {
+                    c = f.join();
+                } catch (CompletionException ex) {
+                    if (ex.getCause() instanceof IOException io) throw io;
+                    throw ex;
+                }
+                ok = ok && c.drain(into);
+            }
+            return ok;
+        }
+    }
+
+    /** Число з поля; як і YamlConfiguration.getLong, при помилці — типове значення. */
+    static long toLong(String v, long def) {
+        if (v == null) return def;
+        try {
+            return Long.parseLong(v);
+        } catch (NumberFormatException ex) {
+            return def;
+        }
+    }
+
+    /** Логічне значення YAML 1.1 (true/yes/on), як його розуміє SnakeYAML. */
+    static boolean toBoolean(String v) {
+        return v != null && (v.equalsIgnoreCase("true") || v.equalsIgnoreCase("yes") || v.equalsIgnoreCase("on"));
+    }
+
+    /** Форма файлу не та, яку вміє читати цей клас. */
+    private static final class Unsupported extends Exception {
+        Unsupported(String msg) {
+            super(msg, null, false, false);
+        }
+    }
+
+    /**
+     * Одна частина файлу. Їй належать записи, рядок-ключ яких починається
+     * в [start, end); останній запис дочитується і за межею end.
+     */
+    private final class Chunk<T> {
+        private final FileChannel ch;
+        private final long start;
+        private final long end;
+        private final boolean first;
+        private final Factory<T> factory;
+
+        private final List<String> keys = new ArrayList<>();
+        private final List<T> records = new ArrayList<>();
+        private boolean unsupported;
+
+        // Буфер читання та поточний рядок
+        private final ByteBuffer buf = ByteBuffer.allocate(BUF);
+        private long bufPos;
+        private byte[] line = new byte[256];
+        private int len;
+        private long lineStart;
+
+        // Поточний запис
+        private String key;
+        private final String[] values = new String[fields.length];
+        // Поле, значення якого ще може продовжитись наступними рядками
+        private int field = -1;
+        private StringBuilder raw;
+        // Усередині значення трапився порожній рядок (у YAML це перенос, а не пробіл)
+        private boolean gap;
+
+        Chunk(FileChannel ch, long start, long end, boolean first, Factory<T> factory) {
+            this.ch = ch;
+            this.start = start;
+            this.end = end;
+            this.first = first;
+            this.factory = factory;
+            buf.limit(0);
+        }
+
+        void run() throws IOException {
+            try {
+                parse();
+            } catch (Unsupported ex) {
+                unsupported = true;
+                keys.clear();
+                records.clear();
+            }
+        }
+
+        boolean drain(BiConsumer<String, T> into) {
+            if (unsupported) return false;
+            for (int i = 0; i < keys.size(); i++) into.accept(keys.get(i), records.get(i));
+            keys.clear();
+            records.clear();
+            return true;
+        }
+
+        private void parse() throws IOException, Unsupported {
+            bufPos = start;
+            // Частина починається з середини рядка: пропускаємо його до кінця
+            if (!first) {
+                bufPos = start - 1;
+                if (!nextLine()) return;
+            }
+            boolean header = !first;
+            while (nextLine()) {
+                int indent = 0;
+                while (indent < len && line[indent] == ' ') indent++;
+                if (indent == len || line[indent] == '#') { // порожній рядок або коментар
+                    if (indent == len && raw != null) gap = true;
+                    continue;
+                }
+                if (line[indent] == '\t') throw new Unsupported("tab indentation");
+                if (indent == 0) {
+                    // Єдиний дозволений рядок верхнього рівня — заголовок секції на початку файлу
+                    if (header || !isKeyLine(0, section)) throw new Unsupported("top-level key");
+                    header = true;
+                    continue;
+                }
+                if (!header) throw new Unsupported("content before section");
+                if (indent == 2) {
+                    if (lineStart >= end) break; // наступний запис належить іншій частині
+                    finishRecord();
+                    key = keyOf(2);
+                } else if (indent == 4) {
+                    if (key == null) continue; // хвіст запису з попередньої частини
+                    finishField();
+                    startField();
+                } else if (indent > 4) {
+                    if (key == null) continue;
+                    if (field == -2) continue; // продовження невідомого поля
+                    if (raw == null) throw new Unsupported("nested value");
+                    if (raw.length() > 0 && raw.charAt(0) == '"') throw new Unsupported("multi-line double-quoted value");
+                    if (gap) throw new Unsupported("blank line inside value");
+                    raw.append(' ').append(text(indent, len).trim());
+                } else {
+                    throw new Unsupported("unexpected indentation");
+                }
+            }
+            finishRecord();
+        }
+
+        /** Рядок "ключ:" без значення: початок вкладеної мапи. */
+        private boolean isKeyLine(int from, String name) {
+            int e = trimEnd();
+            byte[] b = name.getBytes(StandardCharsets.UTF_8);
+            if (e - from != b.length + 1 || line[e - 1] != ':') return false;
+            return Arrays.equals(line, from, from + b.length, b, 0, b.length);
+        }
+
+        private String keyOf(int from) throws Unsupported {
+            int e = trimEnd();
+            if (e - from < 2 || line[e - 1] != ':') throw new Unsupported("record line is not a mapping key");
+            return scalar(text(from, e - 1).trim());
+        }
+
+        private void startField() throws Unsupported {
+            int colon = -1;
+            for (int i = 4; i < len; i++) {
+                if (line[i] == ':' && (i + 1 == len || line[i + 1] == ' ')) {
+                    colon = i;
+                    break;
+                }
+                if (line[i] == '"' || line[i] == '\'') throw new Unsupported("quoted field name");
+            }
+            if (colon < 0) throw new Unsupported("field line without value");
+            String name = text(4, colon);
+            field = -2;
+            for (int i = 0; i < fields.length; i++) {
+                if (fields[i].equals(name)) {
+                    field = i;
+                    break;
+                }
+            }
+            String v = text(colon + 1, len).trim();
+            if (v.isEmpty() && field >= 0) throw new Unsupported("nested field " + name);
+            char c = v.isEmpty() ? 0 : v.charAt(0);
+            if (c == '{' || c == '[' || c == '&' || c == '*' || c == '!' || c == '|' || c == '>') {
+                throw new Unsupported("complex value for " + name);
+            }
+            raw = field >= 0 ? new StringBuilder(v) : null;
+            gap = false;
+        }
+
+        private void finishField() throws Unsupported {
+            if (field >= 0 && raw != null) values[field] = scalar(raw.toString());
+            field = -1;
+            raw = null;
+            gap = false;
+        }
+
+        private void finishRecord() throws Unsupported {
+            finishField();
+            if (key != null) {
+                keys.add(key);
+                records.add(factory.create(key, values.clone()));
+            }
+            key = null;
+            Arrays.fill(values, null);
+        }
+
+        /** Значення скаляра: без лапок, з розібраними екрануваннями; null для null/~. */
+        private String scalar(String v) throws Unsupported {
+            if (v.isEmpty()) return null;
+            char q = v.charAt(0);
+            if (q == '\'') {
+                if (v.length() < 2 || v.charAt(v.length() - 1) != '\'') throw new Unsupported("unterminated quote");
+                return v.substring(1, v.length() - 1).replace("''", "'");
+            }
+            if (q == '"') {
+                if (v.length() < 2 || v.charAt(v.length() - 1) != '"') throw new Unsupported("unterminated quote");
+                return unescape(v.substring(1, v.length() - 1));
+            }
+            int comment = v.indexOf(" #");
+            if (comment >= 0) v = v.substring(0, comment).trim();
+            if (v.equals("null") || v.equals("~") || v.equals("Null") || v.equals("NULL")) return null;
+            return v;
+        }
+
+        private String unescape(String s) throws Unsupported {
+            if (s.indexOf('\\') < 0) return s;
+            StringBuilder sb = new StringBuilder(s.length());
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                if (++i >= s.length()) throw new Unsupported("bad escape");
+                char e = s.charAt(i);
+                switch (e) {
+                    case 'n' -> sb.append('\n');
+                    case 't' -> sb.append('\t');
+                    case 'r' -> sb.append('\r');
+                    case '0' -> sb.append('\0');
+                    case ' ', '"', '\\', '/' -> sb.append(e);
+                    case 'x', 'u', 'U' -> {
+                        int n = e == 'x' ? 2 : e == 'u' ? 4 : 8;
+                        if (i + n >= s.length()) throw new Unsupported("bad escape");
+                        sb.appendCodePoint(Integer.parseInt(s.substring(i + 1, i + 1 + n), 16));
+                        i += n;
+                    }
+                    default -> throw new Unsupported("escape \\" + e);
+                }
+            }
+            return sb.toString();
+        }
+
+        private String text(int from, int to) {
+            return new String(line, from, to - from, StandardCharsets.UTF_8);
+        }
+
+        private int trimEnd() {
+            int e = len;
+            while (e > 0 && line[e - 1] == ' ') e--;
+            return e;
+        }
+
+        /** Читає наступний рядок у line/len (без \r\n). false — кінець файлу. */
+        private boolean nextLine() throws IOException {
+            len = 0;
+            lineStart = bufPos - buf.remaining();
+            boolean any = false;
+            while (true) {
+                if (!buf.hasRemaining()) {
+                    buf.clear();
+                    int n = ch.read(buf, bufPos);
+                    buf.flip();
+                    if (n <= 0) return any;
+                    bufPos += n;
+                }
+                any = true;
+                byte b = buf.get();
+                if (b == '\n') {
+                    if (len > 0 && line[len - 1] == '\r') len--;
+                    return true;
+                }
+                if (len == line.length) line = Arrays.copyOf(line, len * 2);
+                line[len++] = b;
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package city.bit.auth.storage;
+
+import city.bit.auth.model.SessionRecord;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Сховище сесій за замовчуванням: sessions.yml.
+ * Файл перезаписується цілком, але лише один раз на пакет змін.
+ */
+public class YamlSessionStore implements SessionStore {
+
+    private static final YamlRecordReader READER = new YamlRecordReader("sessions",
+            "nickname", "token", "lastIp", "createdAt", "expiresAt");
+
+    private final File file;
+    // Поточний вміст sessions.yml (власні копії записів)
+    private final Map<String, SessionRecord> rows = new HashMap<>();
+
+    public YamlSessionStore(File dataFolder) {
+        this.file = new File(dataFolder, "sessions.yml");
+    }
+
+    /** Завантажує сесії з файлу sessions.yml (потоково, див. {@link YamlRecordReader}). */
+    @Override
+    public synchronized void loadAll(Map<String, SessionRecord> into) throws IOException {
+        rows.clear();
+        if (!file.exists()) return;
+        if (!READER.read(file, YamlSessionStore::record, rows::put)) {
+            rows.clear();
+            loadDom();
+        }
+        for (Map.Entry<String, SessionRecord> e : rows.entrySet()) into.put(e.getKey(), new SessionRecord(e.getValue()));
+    }
+
+    private static SessionRecord record(String key, String[] v) {
+        SessionRecord s = new SessionRecord();
+        s.nickname = v[0] != null ? v[0] : key;
+        s.token = v[1] != null ? v[1] : "";
+        s.lastIp = v[2];
+        s.createdAt = YamlRecordReader.toLong(v[3], System.currentTimeMillis());
+        s.expiresAt = YamlRecordReader.toLong(v[4], 0);
+        return s;
+    }
+
+    /** Запасний шлях для файлів, форму яких змінили вручну. */
+    private void loadDom() {
+        YamlConfiguration y = YamlConfiguration.loadConfiguration(file);
+        if (!y.isConfigurationSection("sessions")) return;
+        for (String key : y.getConfigurationSection("sessions").getKeys(false)) {
+            String base = "sessions." + key + ".";
+            SessionRecord s = new SessionRecord();
+            s.nickname = y.getString(base + "nickname", key);
+            s.token = y.getString(base + "token", "");
+            s.lastIp = y.getString(base + "lastIp", null);
+            s.createdAt = y.getLong(base + "createdAt", System.currentTimeMillis());
+            s.expiresAt = y.getLong(base + "expiresAt", 0);
+            rows.put(key, s);
+        }
+    }
+
+    @Override
+    public synchronized SessionRecord load(String key) {
+        SessionRecord s = rows.get(key);
+        return s == null ? null : new SessionRecord(s);
+    }
+
+    /** Застосовує пакет змін і перезаписує sessions.yml один раз. */
+    @Override
+    public synchronized void saveBatch(Map<String, SessionRecord> changed, Set<String> removed) throws IOException {
+        rows.putAll(changed);
+        for (String key : removed) rows.remove(key);
+        YamlConfiguration y = new YamlConfiguration();
+        for (Map.Entry<String, SessionRecord> e : rows.entrySet()) {
+            String base = "sessions." + e.getKey() + ".";
+            SessionRecord s = e.getValue();
+            y.set(base + "nickname", s.nickname);
+            y.set(base + "token", s.token);
+            y.set(base + "lastIp", s.lastIp);
+            y.set(base + "createdAt", s.createdAt);
+            y.set(base + "expiresAt", s.expiresAt);
+        }
+        AtomicFiles.writeString(file, y.saveToString());
+    }
+
+    @Override
+    public void close() {
+        // Усі зміни записуються одразу в saveBatch, тримати відкритим нічого
+    }
+}
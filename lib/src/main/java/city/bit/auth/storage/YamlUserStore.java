@@ -0,0 +1,262 @@
+package city.bit.auth.storage;
+
+import city.bit.auth.model.UserRecord;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.logging.Logger;
+
+/**
+ * Сховище за замовчуванням: users.yml.
+ *
+ * Працює у двох режимах (storage.users.mode):
+ * "yaml" — повний перезапис users.yml після кожної зміни;
+ * "journal" — кожна зміна дописується одним рядком у users.journal,
+ * а users.yml перезаписується як знімок у фоні, коли журнал виростає.
+ *
+ * Оскільки YAML-файл можна записати лише цілком, сховище тримає власну
+ * мапу посилань на ті самі об'єкти {@link UserRecord}, що й сервіс.
+ * Через це лінивий режим завантаження з YAML не економить пам'ять —
+ * для великих баз варто обрати sqlite.
+ */
+public class YamlUserStore implements UserStore {
+
+    private static final YamlRecordReader READER = new YamlRecordReader("users",
+            "nickname", "passHash", "algo", "email", "lang", "createdAt", "lastLoginAt", "blocked");
+
+    private final File file;
+    private final Logger log;
+    // Журнал змін (у режимі yaml лише відтворюється при старті)
+    private final UserJournal journal;
+    // Після скількох записів у журналі запускати ущільнення у знімок
+    private final int compactAfter;
+    // Фоновий потік для ущільнення журналу; null у режимі yaml
+    private final ExecutorService compactor;
+    // Окремий замок для ущільнення, щоб знімки ніколи не записувались навперейми
+    private final Object compactLock = new Object();
+    // Замок повного перезапису у режимі yaml
+    private final Object saveLock = new Object();
+    private final AtomicBoolean compactionQueued = new AtomicBoolean();
+    // Поточний вміст "документа" users.yml
+    private final Map<String, UserRecord> rows = new ConcurrentHashMap<>();
+
+    public YamlUserStore(File dataFolder, boolean journaled, int compactAfter, boolean fsync, Logger log) {
+        this.file = new File(dataFolder, "users.yml");
+        this.log = log;
+        this.journal = new UserJournal(new File(dataFolder, "users.journal"), fsync);
+        this.compactAfter = Math.max(1, compactAfter);
+        if (journaled) {
+            compactor = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "BitCityAuth-users-compactor");
+                t.setDaemon(true);
+                return t;
+            });
+        } else {
+            compactor = null;
+        }
+    }
+
+    /**
+     * Завантажує користувачів із файлу users.yml та відтворює журнал змін поверх нього.
+     * Файл читається потоково ({@link YamlRecordReader}); якщо його форму змінили
+     * вручну так, що потоковий читач її не розуміє, — через YamlConfiguration.
+     */
+    @Override
+    public void loadAll(Map<String, UserRecord> into) throws IOException {
+        rows.clear();
+        if (file.exists() && !READER.read(file, YamlUserStore::record, rows::put)) {
+            log.info("users.yml has a non-standard layout, loading it with YamlConfiguration");
+            rows.clear();
+            loadDom();
+        }
+        int replayed = journal.replay(rows, log);
+        if (replayed > 0) log.info("Replayed " + replayed + " users.journal entries");
+        into.putAll(rows);
+    }
+
+    /** Запис із полів у порядку {@link #READER}; типові значення ті самі, що й у {@link #loadDom}. */
+    private static UserRecord record(String key, String[] v) {
+        UserRecord u = new UserRecord();
+        // Нік тримається як ключ і маска регістру, тож рядок ключа спільний із мапою
+        u.setNickname(key, v[0]);
+        u.setPassHash(v[1] != null ? v[1] : "");
+        u.setAlgo(v[2] != null ? v[2] : "pbkdf2");
+        u.email = v[3];
+        u.setLang(v[4] != null ? v[4] : "ua");
+        u.createdAt = YamlRecordReader.toLong(v[5], System.currentTimeMillis());
+        u.lastLoginAt = YamlRecordReader.toLong(v[6], 0);
+        u.blocked = YamlRecordReader.toBoolean(v[7]);
+        return u;
+    }
+
+    private void loadDom() {
+        YamlConfiguration y = YamlConfiguration.loadConfiguration(file);
+        if (!y.isConfigurationSection("users")) return;
+        for (String key : y.getConfigurationSection("users").getKeys(false)) {
+            String base = "users." + key + ".";
+            UserRecord u = new UserRecord();
+            u.setNickname(key, y.getString(base + "nickname", key));
+            u.setPassHash(y.getString(base + "passHash", ""));
+            u.setAlgo(y.getString(base + "algo", "pbkdf2"));
+            u.email = y.getString(base + "email", null);
+            u.setLang(y.getString(base + "lang", "ua"));
+            u.createdAt = y.getLong(base + "createdAt", System.currentTimeMillis());
+            u.lastLoginAt = y.getLong(base + "lastLoginAt", 0);
+            u.blocked = y.getBoolean(base + "blocked", false);
+            rows.put(key, u);
+        }
+    }
+
+    @Override
+    public void loadIndex(BiConsumer<String, Boolean> sink) throws IOException {
+        // YAML не має індексу, тож читаємо всі записи
+        loadAll(new HashMap<>());
+        for (Map.Entry<String, UserRecord> e : rows.entrySet()) sink.accept(e.getKey(), e.getValue().blocked);
+    }
+
+    @Override
+    public UserRecord load(String key) {
+        return rows.get(key);
+    }
+
+    @Override
+    public void saveLoginTime(String key, UserRecord u) {
+        // Час входу змінюється у спільному об'єкті й потрапить у наступний знімок
+        rows.putIfAbsent(key, u);
+    }
+
+    /**
+     * Фіксує зміну одного запису. У режимі журналу це один короткий рядок
+     * у кінці файлу, інакше — повний перезапис.
+     */
+    @Override
+    public void save(String key, UserRecord u) throws IOException {
+        rows.put(key, u);
+        if (compactor == null) {
+            saveAll();
+            return;
+        }
+        boolean appended = true;
+        try {
+            journal.append(key, u);
+        } catch (IOException ex) {
+            // Не вдалося дописати журнал — страхуємось позачерговим знімком
+            log.warning("Append users.journal failed, scheduling full snapshot: " + ex);
+            appended = false;
+        }
+        maybeCompact(!appended);
+    }
+
+    @Override
+    public void saveBatch(Map<String, UserRecord> batch) throws IOException {
+        rows.putAll(batch);
+        if (compactor == null) {
+            saveAll();
+            return;
+        }
+        boolean appended = true;
+        try {
+            for (Map.Entry<String, UserRecord> e : batch.entrySet()) journal.append(e.getKey(), e.getValue());
+        } catch (IOException ex) {
+            log.warning("Append users.journal failed, scheduling full snapshot: " + ex);
+            appended = false;
+        }
+        maybeCompact(!appended);
+    }
+
+    /**
+     * Зберігає актуальні дані користувачів у файл users.yml.
+     * У режимі журналу це синхронне ущільнення: знімок + очищення журналу.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (compactor != null) {
+            compactNow();
+        } else {
+            saveAll();
+        }
+    }
+
+    /** Завершує роботу: дочікується ущільнення та записує фінальний знімок. */
+    @Override
+    public void close() throws IOException {
+        if (compactor != null) {
+            compactor.shutdown();
+            try {
+                compactor.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+        journal.close();
+    }
+
+    private void maybeCompact(boolean force) {
+        if ((force || journal.entries() >= compactAfter) && compactionQueued.compareAndSet(false, true)) {
+            compactor.execute(this::compactNow);
+        }
+    }
+
+    private void saveAll() throws IOException {
+        synchronized (saveLock) {
+            AtomicFiles.writeString(file, toYaml(rows).saveToString());
+            // Якщо раніше працювали у режимі журналу, він уже врахований у знімку
+            journal.deleteAll();
+        }
+    }
+
+    /**
+     * Ущільнює журнал. Спочатку починаємо новий журнал, а вже потім копіюємо
+     * записи без жодного глобального замка. Зміна, що потрапила у копію
+     * наполовину, обов'язково є і в новому журналі, тож при відтворенні
+     * її стан відновиться повністю.
+     * Ніколи не викликається з-під замка смуги.
+     */
+    private void compactNow() {
+        synchronized (compactLock) {
+            compactionQueued.set(false);
+            try {
+                journal.rotate();
+            } catch (IOException ex) {
+                log.warning("Rotate users.journal failed: " + ex);
+                return;
+            }
+            Map<String, UserRecord> copy = new HashMap<>(rows.size() * 2);
+            for (Map.Entry<String, UserRecord> e : rows.entrySet()) copy.put(e.getKey(), new UserRecord(e.getValue()));
+            try {
+                AtomicFiles.writeString(file, toYaml(copy).saveToString());
+                journal.dropRotated();
+            } catch (IOException ex) {
+                // Старий журнал лишається на диску і буде відтворений при наступному старті
+                log.warning("Save users.yml snapshot failed: " + ex);
+            }
+        }
+    }
+
+    private static YamlConfiguration toYaml(Map<String, UserRecord> src) {
+        YamlConfiguration y = new YamlConfiguration();
+        for (Map.Entry<String, UserRecord> e : src.entrySet()) {
+            String base = "users." + e.getKey() + ".";
+            UserRecord u = e.getValue();
+            y.set(base + "nickname", u.nickname());
+            y.set(base + "passHash", u.passHash());
+            y.set(base + "algo", u.algo());
+            y.set(base + "email", u.email);
+            y.set(base + "lang", u.lang());
+            y.set(base + "createdAt", u.createdAt);
+            y.set(base + "lastLoginAt", u.lastLoginAt);
+            y.set(base + "blocked", u.blocked);
+        }
+        return y;
+    }
+}
@@ -0,0 +1,88 @@
+package city.bit.auth.ui;
+
+import city.bit.auth.model.AuthState;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Контексти гравців онлайн та живий лічильник тих, хто ще не авторизувався.
+ *
+ * Поки лічильник дорівнює нулю, {@link #isLocked(UUID)} відповідає одним
+ * читанням volatile-поля, без пошуку в мапі. Про кожен перехід лічильника
+ * між нулем і ненулем повідомляється через onChange — за ним
+ * {@link AuthListener} реєструє або знімає {@link AuthGateListener}.
+ *
+ * Гравців, що були онлайн до ввімкнення плагіна, бере під контроль
+ * {@link AuthListener#adoptOnlinePlayers}. Якщо ж контексту все одно немає,
+ * а неавторизовані є, гравець вважається заблокованим: краще зайве
+ * обмеження, ніж дії без входу.
+ */
+public final class AuthGate {
+
+    private final Map<UUID, PlayerContext> players = new ConcurrentHashMap<>();
+    private final AtomicInteger unauthed = new AtomicInteger();
+    private final Runnable onChange;
+
+    public AuthGate(Runnable onChange) {
+        this.onChange = onChange;
+    }
+
+    /** Створює контекст гравця, що щойно зайшов. */
+    public PlayerContext track(UUID id, AuthState state, String lang) {
+        PlayerContext c = new PlayerContext(state, lang);
+        PlayerContext old = players.put(id, c);
+        if (old != null) adjust(old.state, null);
+        adjust(null, state);
+        return c;
+    }
+
+    /** Прибирає контекст гравця, що вийшов. */
+    public PlayerContext forget(UUID id) {
+        PlayerContext c = players.remove(id);
+        if (c != null) adjust(c.state, null);
+        return c;
+    }
+
+    /** Змінює стан гравця й оновлює лічильник. */
+    public void setState(UUID id, AuthState state) {
+        PlayerContext c = players.get(id);
+        if (c == null) return;
+        AuthState old;
+        synchronized (c) {
+            old = c.state;
+            c.state = state;
+        }
+        adjust(old, state);
+    }
+
+    /** Контекст гравця або null. */
+    public PlayerContext context(UUID id) {
+        return players.get(id);
+    }
+
+    /** Чи треба обмежувати дії цього гравця. */
+    public boolean isLocked(UUID id) {
+        if (unauthed.get() == 0) return false; // звичайний випадок: усі вже увійшли
+        PlayerContext c = players.get(id);
+        return c == null || c.state != AuthState.AUTHENTICATED;
+    }
+
+    /** Кількість гравців онлайн, які ще не авторизувались. */
+    public int unauthenticated() {
+        return unauthed.get();
+    }
+
+    private void adjust(AuthState old, AuthState now) {
+        boolean was = old != null && old != AuthState.AUTHENTICATED;
+        boolean is = now != null && now != AuthState.AUTHENTICATED;
+        if (was == is) return;
+        if (is) {
+            if (unauthed.incrementAndGet() == 1) onChange.run();
+        } else {
+            if (unauthed.decrementAndGet() == 0) onChange.run();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package city.bit.auth.ui;
+
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.EntityDamageEvent;
+import org.bukkit.event.player.PlayerCommandPreprocessEvent;
+import org.bukkit.event.player.PlayerInteractEvent;
+import org.bukkit.event.player.PlayerMoveEvent;
+
+/**
+ * Блокування дій до авторизації. Зареєстрований лише тоді, коли на сервері
+ * є хоча б один неавторизований гравець, тож у звичайному режимі
+ * найчастіші події сервера (рух гравців) взагалі не доходять до плагіна.
+ */
+public class AuthGateListener implements Listener {
+
+    private final AuthGate gate;
+
+    public AuthGateListener(AuthGate gate) {
+        this.gate = gate;
+    }
+
+    @EventHandler(ignoreCancelled = true)
+    public void onMove(PlayerMoveEvent e) {
+        // Якщо гравець не авторизований — забороняємо рухатися
+        if (gate.isLocked(e.getPlayer().getUniqueId())) {
+            if (e.getFrom().distanceSquared(e.getTo()) > 0) e.setTo(e.getFrom());
+        }
+    }
+
+    @EventHandler(ignoreCancelled = true)
+    public void onInteract(PlayerInteractEvent e) {
+        if (gate.isLocked(e.getPlayer().getUniqueId())) e.setCancelled(true);
+    }
+
+    @EventHandler(ignoreCancelled = true)
+    public void onDamage(EntityDamageEvent e) {
+        if (e.getEntity() instanceof Player p && gate.isLocked(p.getUniqueId())) e.setCancelled(true);
+    }
+
+    @EventHandler(ignoreCancelled = true)
+    public void onCmd(PlayerCommandPreprocessEvent e) {
+        if (gate.isLocked(e.getPlayer().getUniqueId())) {
+            // Блокуємо всі команди до входу
+            e.setCancelled(true);
+            e.getPlayer().sendMessage("Please use GUI to login/register.");
+        }
+    }
+}
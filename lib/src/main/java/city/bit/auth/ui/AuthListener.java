@@ -3,25 +3,32 @@ package city.bit.auth.ui;
 import city.bit.auth.BitCityAuthPlugin;
 import city.bit.auth.i18n.MessageBundle;
 import city.bit.auth.i18n.Msg;
+import city.bit.auth.metrics.AuthMetrics;
 import city.bit.auth.model.AuthState;
 import city.bit.auth.service.AuthService;
 import city.bit.auth.service.SessionService;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
+import org.bukkit.NamespacedKey;
 import org.bukkit.entity.Player;
 import org.bukkit.event.*;
-import org.bukkit.event.entity.EntityDamageEvent;
 import org.bukkit.event.inventory.InventoryClickEvent;
 import org.bukkit.event.inventory.InventoryCloseEvent;
 import org.bukkit.event.player.*;
 import org.bukkit.plugin.Plugin;
 
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Головний слухач подій, пов'язаних з авторизацією.
  * Він контролює кожен крок: від приєднання до сервера до успішного входу.
+ * Стан кожного гравця живе в одному {@link PlayerContext} всередині {@link AuthGate};
+ * блокування руху, команд тощо винесене в {@link AuthGateListener}, який
+ * зареєстрований лише поки є неавторизовані гравці.
+ * Автологіни, кіки за бездіяльність і час від входу до авторизації
+ * рахуються в {@link AuthMetrics}.
  */
 public class AuthListener implements Listener {
 
@@ -32,14 +39,16 @@ public class AuthListener implements Listener {
     private final GuiFactory gui;
     private final Location lobby;
 
-    // Стан гравця: авторизований/неавторизований тощо
-    private final Map<UUID, AuthState> state = new ConcurrentHashMap<>();
-    // Обрана мова для кожного гравця
-    private final Map<UUID, String> lang = new ConcurrentHashMap<>();
-    // Тимчасове збереження введеного пароля (для підтвердження)
-    private final Map<UUID, String> tempPass = new ConcurrentHashMap<>();
-    // Ідентифікатори завдань, що викидають гравця за бездіяльність
-    private final Map<UUID, Integer> idleTask = new ConcurrentHashMap<>();
+    // Контексти гравців онлайн і лічильник неавторизованих
+    private final AuthGate gate = new AuthGate(this::syncGateListener);
+    private final AuthGateListener gateListener = new AuthGateListener(gate);
+    // Чи зареєстрований зараз gateListener (змінюється лише в основному потоці)
+    private boolean gateRegistered;
+    // Рішення, підготовлені у AsyncPlayerPreLoginEvent, чекають на PlayerJoinEvent
+    private final Map<UUID, JoinContext> prepared = new ConcurrentHashMap<>();
+    // Cookie, у якому клієнт носить токен сесії між вузлами
+    private final NamespacedKey sessionCookie;
+    private final AuthMetrics metrics = AuthMetrics.get();
 
     public AuthListener(BitCityAuthPlugin plugin, MessageBundle msgs, AuthService auth, SessionService sessions, GuiFactory gui, Location lobby) {
         this.plugin = plugin;
@@ -48,75 +57,182 @@ public class AuthListener implements Listener {
         this.sessions = sessions;
         this.gui = gui;
         this.lobby = lobby;
+        this.sessionCookie = new NamespacedKey(plugin, "session");
     }
 
     // === Події приєднання та виходу гравця ===
 
+    /**
+     * Готує все для входу ще до того, як гравець з'явиться у світі.
+     * Подія приходить в окремому потоці, тож тут можна читати сховища
+     * та чекати на замки, не затримуючи такт сервера.
+     */
+    @EventHandler(priority = EventPriority.NORMAL)
+    public void onPreLogin(AsyncPlayerPreLoginEvent e) {
+        if (e.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) return;
+        purgeStalePrepared();
+        String name = e.getName();
+        // Заблокованих адміністратором не пускаємо навіть у лобі
+        if (auth.isBlocked(name)) {
+            e.disallow(AsyncPlayerPreLoginEvent.Result.KICK_OTHER, msgs.t(Msg.ERROR_BLOCKED));
+            return;
+        }
+        // У лінивому режимі підтягуємо запис зі сховища і тримаємо його, поки гравець онлайн
+        auth.pin(name);
+        // Автологін: підписаний токен сесії, термін і IP (strict — точно, soft — та сама мережа).
+        // session_ip_match: off вимикає автологін
+        String ip = e.getAddress() == null ? null : e.getAddress().getHostAddress();
+        boolean auto = sessions.canResume(name, ip);
+        prepared.put(e.getUniqueId(), new JoinContext(name, auto, System.currentTimeMillis()));
+    }
+
+    /** Якщо інший плагін заборонив вхід після нас — прибираємо підготовлені дані. */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPreLoginResult(AsyncPlayerPreLoginEvent e) {
+        if (e.getLoginResult() == AsyncPlayerPreLoginEvent.Result.ALLOWED) return;
+        if (prepared.remove(e.getUniqueId()) != null) auth.unpin(e.getName());
+    }
+
     @EventHandler(priority = EventPriority.HIGHEST)
     public void onJoin(PlayerJoinEvent e) {
         Player p = e.getPlayer();
-        // Визначаємо мову за замовчуванням з конфігу
-        lang.put(p.getUniqueId(), msgs.getDefaultLang());
         // Телепортуємо гравця у лобі авторизації
         if (lobby.getWorld() != null) p.teleport(lobby);
-        // Перевіряємо, чи є активна сесія та збіг IP для автологіну
-        String ip = getIp(p);
-        var sess = sessions.get(p.getName());
-        boolean softIp = "soft".equalsIgnoreCase(plugin.getConfig().getString("auth.session_ip_match","soft"));
-        if (sess != null && sess.lastIp != null && ip != null && ip.equals(sess.lastIp)) {
+        JoinContext ctx = prepared.remove(p.getUniqueId());
+        if (ctx == null) {
+            // Підготовки не було (наприклад, плагін перезавантажили з гравцями онлайн).
+            // Автологін не робимо, а запис закріплюємо поза основним потоком.
+            String name = p.getName();
+            Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> auth.pin(name));
+        }
+        boolean auto = ctx != null && ctx.autoLogin;
+        // Мова за замовчуванням з конфігу
+        gate.track(p.getUniqueId(), auto ? AuthState.AUTHENTICATED : AuthState.UNAUTH, msgs.getDefaultLang());
+        if (auto) {
             // Якщо все співпадає — автоматично авторизуємо
+            metrics.autoLogins.increment();
             authorize(p);
             return;
         }
-        // Якщо ні — блокуємо гравця та відкриваємо GUI
-        state.put(p.getUniqueId(), AuthState.UNAUTH);
+        // Якщо ні — гравець заблокований, відкриваємо GUI
+        lock(p);
+    }
+
+    /**
+     * Бере під контроль гравців, які вже були онлайн при ввімкненні плагіна
+     * (/reload): PlayerJoinEvent для них не прийде, тож без цього вони
+     * лишились би без контексту й без обмежень. Викликається в основному потоці.
+     */
+    public void adoptOnlinePlayers() {
+        for (Player p : Bukkit.getOnlinePlayers()) {
+            if (gate.context(p.getUniqueId()) != null) continue;
+            String name = p.getName();
+            Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> auth.pin(name));
+            gate.track(p.getUniqueId(), AuthState.UNAUTH, msgs.getDefaultLang());
+            lock(p);
+        }
+    }
+
+    /** Відкриває меню входу неавторизованому гравцеві та запускає таймер кіка. */
+    private void lock(Player p) {
         openGui(p);
         startIdleKick(p);
+        resumeFromCookie(p);
+    }
+
+    /**
+     * Гравець міг принести токен сесії в cookie (наприклад, після переходу
+     * з іншого вузла з тим самим session_secret.key). Токен перевіряється без
+     * сховища сесій; якщо він дійсний, а акаунт існує й не заблокований —
+     * авторизуємо, поки гравець ще в меню.
+     */
+    private void resumeFromCookie(Player p) {
+        String name = p.getName();
+        String ip = getIp(p);
+        p.retrieveCookie(sessionCookie).whenComplete((bytes, err) -> {
+            if (err != null || bytes == null || bytes.length == 0) return;
+            String token = new String(bytes, StandardCharsets.US_ASCII);
+            if (!sessions.canResumeWithToken(name, ip, token)) return;
+            if (!plugin.isEnabled()) return;
+            // Колбек приходить у мережевому потоці, тож сесію чіпаємо лише в основному
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                PlayerContext c = gate.context(p.getUniqueId());
+                if (!p.isOnline() || c == null || c.state == AuthState.AUTHENTICATED || c.pending.get()) return;
+                // Токен сам по собі не доводить, що акаунт ще існує чи не заблокований
+                if (!auth.isRegistered(name) || auth.isBlocked(name)) return;
+                // Переносимо сесію на цей вузол, щоб наступний вхід пройшов і без cookie
+                sessions.createOrRefresh(name, ip);
+                metrics.cookieResumes.increment();
+                authorize(p);
+            });
+        });
     }
 
     @EventHandler
     public void onQuit(PlayerQuitEvent e) {
-        UUID id = e.getPlayer().getUniqueId();
-        state.remove(id);
-        lang.remove(id);
-        tempPass.remove(id);
         cancelIdleKick(e.getPlayer());
+        gate.forget(e.getPlayer().getUniqueId());
+        auth.unpin(e.getPlayer().getName());
     }
 
     // === Допоміжні методи ===
 
-    private void openGui(Player p) {
-        gui.openAuthGui(p, lang.get(p.getUniqueId()));
-        // Виводимо невеликий заголовок
-        p.sendTitle(" ", msgs.t(Msg.GUI_TITLE, lang.get(p.getUniqueId())), 10, 60, 10);
-    }
-
-    // === Блокування дій до авторизації ===
-
-    @EventHandler(ignoreCancelled = true)
-    public void onMove(PlayerMoveEvent e) {
-        // Якщо гравець не авторизований — забороняємо рухатися
-        if (!isAuthed(e.getPlayer())) {
-            if (e.getFrom().distanceSquared(e.getTo()) > 0) e.setTo(e.getFrom());
+    /**
+     * Прибирає контексти гравців, які пройшли AsyncPlayerPreLoginEvent,
+     * але так і не зайшли (наприклад, обірвалось з'єднання).
+     */
+    private void purgeStalePrepared() {
+        long cutoff = System.currentTimeMillis() - 60_000L;
+        for (Map.Entry<UUID, JoinContext> en : prepared.entrySet()) {
+            JoinContext c = en.getValue();
+            if (c.preparedAt < cutoff && prepared.remove(en.getKey(), c)) auth.unpin(c.name);
         }
     }
 
-    @EventHandler(ignoreCancelled = true)
-    public void onInteract(PlayerInteractEvent e) {
-        if (!isAuthed(e.getPlayer())) e.setCancelled(true);
+    private void openGui(Player p) {
+        PlayerContext c = gate.context(p.getUniqueId());
+        if (c == null) return;
+        gui.openAuthGui(p, c.lang);
+        // Виводимо невеликий заголовок
+        p.sendTitle(" ", msgs.t(Msg.GUI_TITLE, c.lang), 10, 60, 10);
     }
 
-    @EventHandler(ignoreCancelled = true)
-    public void onDamage(EntityDamageEvent e) {
-        if (e.getEntity() instanceof Player p && !isAuthed(p)) e.setCancelled(true);
+    /**
+     * Планує повторне відкриття меню через кілька тактів. Запити, що прийшли
+     * за цей час (закриття, випадковий чат, зміна мови), зливаються в одне
+     * відкриття. Можна викликати з будь-якого потоку.
+     */
+    private void requestGui(Player p) {
+        PlayerContext c = gate.context(p.getUniqueId());
+        if (c == null || !c.reopenQueued.compareAndSet(false, true)) return;
+        long delay = plugin.settings().guiReopenDebounceTicks;
+        Bukkit.getScheduler().runTaskLater(plugin, () -> {
+            c.reopenQueued.set(false);
+            if (!p.isOnline() || c.state != AuthState.UNAUTH) return;
+            // Меню потрібною мовою вже відкрите — нічого не робимо
+            if (p.getOpenInventory().getTopInventory().getHolder(false) instanceof AuthMenuHolder m
+                    && m.lang.equals(c.lang)) return;
+            openGui(p);
+        }, delay);
     }
 
-    @EventHandler(ignoreCancelled = true)
-    public void onCmd(PlayerCommandPreprocessEvent e) {
-        if (!isAuthed(e.getPlayer())) {
-            // Блокуємо всі команди до входу
-            e.setCancelled(true);
-            e.getPlayer().sendMessage("Please use GUI to login/register.");
+    /**
+     * Реєструє {@link AuthGateListener}, коли з'являється перший неавторизований
+     * гравець, і знімає його, коли авторизувались усі. Зміни списку слухачів
+     * робимо лише в основному потоці.
+     */
+    private void syncGateListener() {
+        if (!Bukkit.isPrimaryThread()) {
+            if (plugin.isEnabled()) Bukkit.getScheduler().runTask(plugin, this::syncGateListener);
+            return;
+        }
+        boolean need = gate.unauthenticated() > 0;
+        if (need && !gateRegistered) {
+            Bukkit.getPluginManager().registerEvents(gateListener, plugin);
+            gateRegistered = true;
+        } else if (!need && gateRegistered) {
+            HandlerList.unregisterAll(gateListener);
+            gateRegistered = false;
         }
     }
 
@@ -124,62 +240,91 @@ public class AuthListener implements Listener {
 
     @EventHandler
     public void onChat(AsyncPlayerChatEvent e) {
+        if (gate.unauthenticated() == 0) return; // усі вже авторизовані
         Player p = e.getPlayer();
-        if (isAuthed(p)) return; // якщо вже авторизований, не заважаємо
+        PlayerContext c = gate.context(p.getUniqueId());
+        if (c == null || c.state == AuthState.AUTHENTICATED) return; // якщо вже авторизований, не заважаємо
         e.setCancelled(true); // не показуємо його повідомлення іншим
-        AuthState st = state.getOrDefault(p.getUniqueId(), AuthState.UNAUTH);
-        switch (st) {
+        switch (c.state) {
             case AWAITING_INPUT: {
-                String awaiting = tempPass.get(p.getUniqueId()); // якщо null -> це перший ввід
+                String awaiting = c.tempPass; // якщо null -> це перший ввід
                 String txt = e.getMessage().trim();
                 // Перевірка мінімальної довжини пароля
-                if (txt.length() < plugin.getConfig().getInt("auth.password.min_length", 8)) {
-                    p.sendMessage(msgs.t(Msg.ERROR_SIMPLE_PASS, lang.get(p.getUniqueId())));
+                if (txt.length() < plugin.settings().passwordMinLength) {
+                    p.sendMessage(msgs.t(Msg.ERROR_SIMPLE_PASS, c.lang));
+                    return;
+                }
+                // Поширені паролі забороняємо лише при реєстрації; перевірка — до будь-якого хешування
+                if (awaiting == null && plugin.settings().disallowCommonPasswords
+                        && plugin.commonPasswords().contains(txt) && !auth.isRegistered(p.getName())) {
+                    p.sendMessage(msgs.t(Msg.ERROR_SIMPLE_PASS, c.lang));
                     return;
                 }
                 if (awaiting == null) {
                     // Перший ввід пароля
-                    tempPass.put(p.getUniqueId(), txt);
-                    p.sendMessage(msgs.t(Msg.PROMPT_REPEAT_PASS, lang.get(p.getUniqueId())));
+                    c.tempPass = txt;
+                    p.sendMessage(msgs.t(Msg.PROMPT_REPEAT_PASS, c.lang));
                 } else {
                     // Підтвердження
                     if (!awaiting.equals(txt)) {
-                        p.sendMessage(msgs.t(Msg.ERROR_PASS_MISMATCH, lang.get(p.getUniqueId())));
-                        tempPass.remove(p.getUniqueId());
+                        p.sendMessage(msgs.t(Msg.ERROR_PASS_MISMATCH, c.lang));
+                        c.tempPass = null;
                         return;
                     }
+                    c.tempPass = null;
+                    // Поки пароль хешується, повторний ввід ігноруємо
+                    if (!c.pending.compareAndSet(false, true)) return;
+                    String name = p.getName();
+                    String ip = getIp(p);
                     // Якщо користувач ще не зареєстрований — створюємо акаунт
-                    boolean registered = auth.isRegistered(p.getName());
+                    boolean registered = auth.isRegistered(name);
                     if (!registered) {
-                        if (auth.isBlocked(p.getName())) {
-                            p.sendMessage(msgs.t(Msg.ERROR_BLOCKED, lang.get(p.getUniqueId())));
+                        if (auth.isBlocked(name)) {
+                            c.pending.set(false);
+                            p.sendMessage(msgs.t(Msg.ERROR_BLOCKED, c.lang));
                             return;
                         }
-                        String res = auth.register(p.getName(), txt, lang.get(p.getUniqueId()));
-                        if ("ok".equals(res)) {
-                            p.sendMessage(msgs.t(Msg.SUCCESS_REGISTERED, lang.get(p.getUniqueId())));
-                            sessions.createOrRefresh(p.getName(), getIp(p));
-                            authorize(p);
-                        } else {
-                            p.sendMessage(msgs.t(Msg.ERROR_ALREADY_REGISTERED, lang.get(p.getUniqueId())));
-                        }
+                        auth.registerAsync(name, txt, c.lang, ip).whenComplete((res, err) -> {
+                            // Сесію оновлюємо ще в потоці пулу, щоб не писати на диск в основному потоці
+                            if (err == null && "ok".equals(res)) sessions.createOrRefresh(name, ip);
+                            onMainThread(p, c, () -> {
+                                if (err != null) {
+                                    p.sendMessage(msgs.t(Msg.ERROR_LOCKED, c.lang));
+                                } else if ("ok".equals(res)) {
+                                    // Новий запис щойно в кеші, закріплюємо його до виходу гравця
+                                    auth.pin(name);
+                                    p.sendMessage(msgs.t(Msg.SUCCESS_REGISTERED, c.lang));
+                                    authorize(p);
+                                } else if ("quota".equals(res)) {
+                                    p.sendMessage(msgs.t(Msg.ERROR_REGISTRATION_LIMIT, c.lang));
+                                } else {
+                                    p.sendMessage(msgs.t(Msg.ERROR_ALREADY_REGISTERED, c.lang));
+                                }
+                            });
+                        });
                     } else {
-                        // Якщо користувач існує — перевіряємо пароль і авторизуємо
-                        if (auth.verify(p.getName(), txt)) {
-                            p.sendMessage(msgs.t(Msg.SUCCESS_LOGGED_IN, lang.get(p.getUniqueId())));
-                            sessions.createOrRefresh(p.getName(), getIp(p));
-                            authorize(p);
-                        } else {
-                            p.sendMessage(msgs.t(Msg.ERROR_NOT_REGISTERED, lang.get(p.getUniqueId())));
-                        }
+                        // Якщо користувач існує — перевіряємо пароль і авторизуємо.
+                        // Спроби понад ліміт відхиляються ще до хешування й приходять як err
+                        auth.verifyAsync(name, txt, ip).whenComplete((ok, err) -> {
+                            if (err == null && ok) sessions.createOrRefresh(name, ip);
+                            onMainThread(p, c, () -> {
+                                if (err != null) {
+                                    p.sendMessage(msgs.t(Msg.ERROR_LOCKED, c.lang));
+                                } else if (ok) {
+                                    p.sendMessage(msgs.t(Msg.SUCCESS_LOGGED_IN, c.lang));
+                                    authorize(p);
+                                } else {
+                                    p.sendMessage(msgs.t(Msg.ERROR_NOT_REGISTERED, c.lang));
+                                }
+                            });
+                        });
                     }
-                    tempPass.remove(p.getUniqueId());
                 }
                 break;
             }
             default: {
                 // Якщо гравець не у стані вводу — повертаємо йому GUI
-                Bukkit.getScheduler().runTask(plugin, () -> openGui(p));
+                requestGui(p);
             }
         }
     }
@@ -189,69 +334,95 @@ public class AuthListener implements Listener {
     @EventHandler
     public void onInvClick(InventoryClickEvent e) {
         if (!(e.getWhoClicked() instanceof Player p)) return;
-        if (isAuthed(p)) return;
-        if (e.getView().getTitle().equalsIgnoreCase(msgs.t(Msg.GUI_TITLE, lang.get(p.getUniqueId())))) {
-            e.setCancelled(true); // забороняємо брати предмети
-            int slot = e.getRawSlot();
-            if (slot == 11) { // Кнопка "Зареєструватись"
-                state.put(p.getUniqueId(), AuthState.AWAITING_INPUT);
-                p.closeInventory();
-                p.sendMessage(msgs.t(Msg.PROMPT_ENTER_PASS, lang.get(p.getUniqueId())));
-            } else if (slot == 13) { // "Увійти" (так само, як і реєстрація)
-                state.put(p.getUniqueId(), AuthState.AWAITING_INPUT);
-                p.closeInventory();
-                p.sendMessage(msgs.t(Msg.PROMPT_ENTER_PASS, lang.get(p.getUniqueId())));
-            } else if (slot == 15) { // Change pass — поки що не реалізовано
-                p.sendMessage("Change password: TODO");
-            } else if (slot == 20) { // Recover — поки що не реалізовано
-                p.sendMessage("Recover: TODO");
-            } else if (slot == 22) { // Перемикач мови
-                String L = lang.get(p.getUniqueId());
-                lang.put(p.getUniqueId(), "ua".equalsIgnoreCase(L) ? "en" : "ua");
-                Bukkit.getScheduler().runTask(plugin, () -> openGui(p));
-            } else if (slot == 24) { // Довідка
-                p.sendMessage("Use Register/Login buttons. Your chat input is private.");
-            }
+        // Наше меню впізнаємо за власником інвентаря, а не за заголовком
+        if (!(e.getInventory().getHolder(false) instanceof AuthMenuHolder menu)) return;
+        e.setCancelled(true); // забороняємо брати предмети
+        PlayerContext c = gate.context(p.getUniqueId());
+        if (c == null || c.state == AuthState.AUTHENTICATED) return;
+        int slot = e.getRawSlot();
+        if (slot == GuiFactory.SLOT_REGISTER) { // Кнопка "Зареєструватись"
+            gate.setState(p.getUniqueId(), AuthState.AWAITING_INPUT);
+            p.closeInventory();
+            p.sendMessage(msgs.t(Msg.PROMPT_ENTER_PASS, c.lang));
+        } else if (slot == GuiFactory.SLOT_LOGIN) { // "Увійти" (так само, як і реєстрація)
+            gate.setState(p.getUniqueId(), AuthState.AWAITING_INPUT);
+            p.closeInventory();
+            p.sendMessage(msgs.t(Msg.PROMPT_ENTER_PASS, c.lang));
+        } else if (slot == GuiFactory.SLOT_CHANGE_PASS) { // Change pass — поки що не реалізовано
+            p.sendMessage("Change password: TODO");
+        } else if (slot == GuiFactory.SLOT_RECOVER) { // Recover — поки що не реалізовано
+            p.sendMessage("Recover: TODO");
+        } else if (slot == GuiFactory.SLOT_LANG) { // Перемикач мови: по колу серед усіх завантажених мов
+            c.lang = msgs.nextLang(menu.lang);
+            requestGui(p);
+        } else if (slot == GuiFactory.SLOT_HELP) { // Довідка
+            p.sendMessage("Use Register/Login buttons. Your chat input is private.");
         }
     }
 
     @EventHandler
     public void onInvClose(InventoryCloseEvent e) {
+        if (!(e.getInventory().getHolder(false) instanceof AuthMenuHolder)) return;
         Player p = (Player) e.getPlayer();
-        if (!isAuthed(p)) {
-            // Якщо гравець закрив меню, одразу відкриваємо його знову
-            Bukkit.getScheduler().runTask(plugin, () -> openGui(p));
+        PlayerContext c = gate.context(p.getUniqueId());
+        // Гравець, який натиснув кнопку і вводить пароль у чаті, меню назад не отримує
+        if (c != null && c.state == AuthState.UNAUTH) {
+            // Якщо гравець закрив меню, відкриваємо його знову
+            requestGui(p);
         }
     }
 
     // === Допоміжні методи ===
 
     private boolean isAuthed(Player p) {
-        return state.getOrDefault(p.getUniqueId(), AuthState.UNAUTH) == AuthState.AUTHENTICATED;
+        PlayerContext c = gate.context(p.getUniqueId());
+        return c == null || c.state == AuthState.AUTHENTICATED;
     }
 
     private void authorize(Player p) {
-        state.put(p.getUniqueId(), AuthState.AUTHENTICATED);
+        gate.setState(p.getUniqueId(), AuthState.AUTHENTICATED);
+        // Токен у cookie дозволить відновити сесію на іншому вузлі без пароля
+        String token = sessions.token(p.getName());
+        if (token != null) p.storeCookie(sessionCookie, token.getBytes(StandardCharsets.US_ASCII));
         cancelIdleKick(p); // відміняємо таймер кіка
         p.closeInventory();
-        p.sendTitle("§a✔", msgs.t(Msg.SUCCESS_LOGGED_IN, lang.get(p.getUniqueId())), 10, 40, 10);
+        PlayerContext c = gate.context(p.getUniqueId());
+        if (c != null) metrics.joinToAuth.recordSince(c.joinedAt);
+        p.sendTitle("§a✔", msgs.t(Msg.SUCCESS_LOGGED_IN, c == null ? null : c.lang), 10, 40, 10);
         // За бажанням можна телепортувати гравця у світ гри
     }
 
+    /**
+     * Повертає результат асинхронної перевірки в основний потік сервера.
+     * Якщо гравець уже вийшов або плагін вимикається — нічого не робимо.
+     */
+    private void onMainThread(Player p, PlayerContext c, Runnable r) {
+        if (!plugin.isEnabled()) return;
+        Bukkit.getScheduler().runTask(plugin, () -> {
+            c.pending.set(false);
+            if (p.isOnline()) r.run();
+        });
+    }
+
     private void startIdleKick(Player p) {
         cancelIdleKick(p);
-        int sec = plugin.getConfig().getInt("ui.idle_kick_seconds", 60);
+        PlayerContext c = gate.context(p.getUniqueId());
+        if (c == null) return;
+        int sec = plugin.settings().idleKickSeconds;
         int taskId = Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, () -> {
             if (!isAuthed(p) && p.isOnline()) {
+                metrics.idleKicks.increment();
                 p.kickPlayer("Auth timeout");
             }
         }, sec * 20L);
-        idleTask.put(p.getUniqueId(), taskId);
+        c.idleTask = taskId;
     }
 
     private void cancelIdleKick(Player p) {
-        Integer id = idleTask.remove(p.getUniqueId());
-        if (id != null) Bukkit.getScheduler().cancelTask(id);
+        PlayerContext c = gate.context(p.getUniqueId());
+        if (c == null || c.idleTask < 0) return;
+        Bukkit.getScheduler().cancelTask(c.idleTask);
+        c.idleTask = -1;
     }
 
     private String getIp(Player p) {
@@ -0,0 +1,23 @@
+package city.bit.auth.ui;
+
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
+
+/**
+ * Власник інвентаря меню авторизації. За ним слухач впізнає наше меню
+ * без порівняння заголовків і знає, якою мовою меню було відкрите.
+ */
+final class AuthMenuHolder implements InventoryHolder {
+
+    final String lang;
+    private Inventory inventory;
+
+    AuthMenuHolder(String lang) {
+        this.lang = lang;
+    }
+
+    void setInventory(Inventory inventory) { this.inventory = inventory; }
+
+    @Override
+    public Inventory getInventory() { return inventory; }
+}
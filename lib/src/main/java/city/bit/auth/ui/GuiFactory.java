@@ -9,13 +9,31 @@ import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * Відповідає за створення графічного інтерфейсу авторизації.
  * У Spigot GUI реалізований як інвентар з предметами-кнопками.
+ *
+ * Кнопки для кожної мови будуються один раз і зберігаються як шаблон.
+ * Шаблон ніколи не змінюється: сервер копіює предмети, коли кладе їх в інвентар.
  */
 public class GuiFactory {
 
+    // Розмір меню: 3x9 клітинок
+    static final int SIZE = 27;
+    // Слоти кнопок
+    static final int SLOT_REGISTER = 9 + 2;
+    static final int SLOT_LOGIN = 9 + 4;
+    static final int SLOT_CHANGE_PASS = 9 + 6;
+    static final int SLOT_RECOVER = 18 + 2;
+    static final int SLOT_LANG = 18 + 4;
+    static final int SLOT_HELP = 18 + 6;
+
     private final MessageBundle msgs;
+    // Мова -> готовий вміст меню
+    private final Map<String, ItemStack[]> templates = new ConcurrentHashMap<>();
 
     public GuiFactory(MessageBundle msgs) {
         this.msgs = msgs;
@@ -28,19 +46,33 @@ public class GuiFactory {
      * вибір мови та довідка.
      */
     public Inventory openAuthGui(Player p, String lang) {
-        Inventory inv = Bukkit.createInventory(null, 27, msgs.t(Msg.GUI_TITLE, lang));
-        // Ряд 2: Register/Login/ChangePass
-        inv.setItem(9 + 2, button(Material.LIME_WOOL, msgs.t(Msg.GUI_REGISTER, lang)));
-        inv.setItem(9 + 4, button(Material.IRON_DOOR, msgs.t(Msg.GUI_LOGIN, lang)));
-        inv.setItem(9 + 6, button(Material.ANVIL, msgs.t(Msg.GUI_CHANGE_PASS, lang)));
-        // Ряд 3: Recover/Language/Help
-        inv.setItem(18 + 2, button(Material.PAPER, msgs.t(Msg.GUI_RECOVER, lang)));
-        inv.setItem(18 + 4, button(Material.BOOK, msgs.t(Msg.GUI_LANG, lang)));
-        inv.setItem(18 + 6, button(Material.COMPASS, msgs.t(Msg.GUI_HELP, lang)));
+        AuthMenuHolder holder = new AuthMenuHolder(lang);
+        Inventory inv = Bukkit.createInventory(holder, SIZE, msgs.t(Msg.GUI_TITLE, lang));
+        holder.setInventory(inv);
+        inv.setContents(templates.computeIfAbsent(lang, this::buildTemplate));
         p.openInventory(inv);
         return inv;
     }
 
+    /** Скидає шаблони після перезавантаження перекладів. */
+    public void invalidate() {
+        templates.clear();
+    }
+
+    /** Будує вміст меню для однієї мови. */
+    private ItemStack[] buildTemplate(String lang) {
+        ItemStack[] items = new ItemStack[SIZE];
+        // Ряд 2: Register/Login/ChangePass
+        items[SLOT_REGISTER] = button(Material.LIME_WOOL, msgs.t(Msg.GUI_REGISTER, lang));
+        items[SLOT_LOGIN] = button(Material.IRON_DOOR, msgs.t(Msg.GUI_LOGIN, lang));
+        items[SLOT_CHANGE_PASS] = button(Material.ANVIL, msgs.t(Msg.GUI_CHANGE_PASS, lang));
+        // Ряд 3: Recover/Language/Help
+        items[SLOT_RECOVER] = button(Material.PAPER, msgs.t(Msg.GUI_RECOVER, lang));
+        items[SLOT_LANG] = button(Material.BOOK, msgs.t(Msg.GUI_LANG, lang));
+        items[SLOT_HELP] = button(Material.COMPASS, msgs.t(Msg.GUI_HELP, lang));
+        return items;
+    }
+
     /**
      * Створює предмет-кнопку з вказаним матеріалом та назвою.
      */
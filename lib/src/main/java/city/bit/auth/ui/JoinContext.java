@@ -0,0 +1,20 @@
+package city.bit.auth.ui;
+
+/**
+ * Дані про гравця, підготовлені заздалегідь у AsyncPlayerPreLoginEvent
+ * (поза основним потоком). Обробник PlayerJoinEvent лише читає готове рішення.
+ */
+final class JoinContext {
+    // Нік, під яким гравець проходив перевірку
+    final String name;
+    // Чи можна авторизувати гравця автоматично за активною сесією
+    final boolean autoLogin;
+    // Коли контекст підготовлено; для прибирання, якщо гравець так і не зайшов
+    final long preparedAt;
+
+    JoinContext(String name, boolean autoLogin, long preparedAt) {
+        this.name = name;
+        this.autoLogin = autoLogin;
+        this.preparedAt = preparedAt;
+    }
+}
@@ -0,0 +1,35 @@
+package city.bit.auth.ui;
+
+import city.bit.auth.model.AuthState;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Усе, що слухач знає про одного гравця онлайн, в одному об'єкті:
+ * стан авторизації, мова, перший ввід пароля, таймер кіка та прапорці.
+ * Стан змінюється лише через {@link AuthGate}, щоб лічильник
+ * неавторизованих гравців не розходився з реальністю.
+ */
+public final class PlayerContext {
+    // Стан гравця: авторизований/неавторизований тощо
+    volatile AuthState state;
+    // Обрана мова
+    volatile String lang;
+    // Тимчасове збереження введеного пароля (для підтвердження)
+    volatile String tempPass;
+    // Ідентифікатор завдання, що викидає гравця за бездіяльність; -1 — немає
+    volatile int idleTask = -1;
+    // Пароль гравця зараз перевіряється у пулі хешування
+    final AtomicBoolean pending = new AtomicBoolean();
+    // Повторне відкриття меню вже заплановане
+    final AtomicBoolean reopenQueued = new AtomicBoolean();
+    // Момент входу на сервер (System.nanoTime()) для метрики joinToAuth
+    final long joinedAt = System.nanoTime();
+
+    PlayerContext(AuthState state, String lang) {
+        this.state = state;
+        this.lang = lang;
+    }
+
+    public AuthState state() { return state; }
+}
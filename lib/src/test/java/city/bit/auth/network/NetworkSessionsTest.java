@@ -0,0 +1,169 @@
+package city.bit.auth.network;
+
+import city.bit.auth.config.AuthSettings;
+import city.bit.auth.model.SessionRecord;
+import city.bit.auth.sec.SessionTokens;
+import city.bit.auth.service.SessionService;
+import city.bit.auth.storage.SessionStore;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.plugin.Plugin;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Мережеві сесії на двох {@link SessionService}, з'єднаних
+ * {@link LocalSessionBus}: шина доставляє синхронно, тож після виклику
+ * на одному вузлі подію вже застосовано на іншому.
+ */
+class NetworkSessionsTest {
+
+    private static final byte[] SECRET = "test-secret-test-secret-test-sec".getBytes(StandardCharsets.US_ASCII);
+    private static final String IP = "10.0.0.1";
+
+    @TempDir
+    Path dir;
+
+    private final List<SessionService> nodes = new ArrayList<>();
+
+    @AfterEach
+    void closeNodes() {
+        for (SessionService s : nodes) s.close(5000);
+    }
+
+    @Test
+    void createOnOneNodeIsLocalResumeOnAnother() throws Exception {
+        LocalSessionBus bus = new LocalSessionBus();
+        SessionService a = node("a", bus, SECRET);
+        SessionService b = node("b", bus, SECRET);
+
+        a.createOrRefresh("Steve", IP);
+
+        assertNotNull(b.get("steve"));
+        assertTrue(b.canResume("Steve", IP));
+        assertFalse(b.canResume("Steve", "10.9.9.9"));
+        assertEquals(a.token("Steve"), b.token("Steve"));
+    }
+
+    @Test
+    void lateCreateDoesNotResurrectInvalidatedSession() throws Exception {
+        LocalSessionBus bus = new LocalSessionBus();
+        List<byte[]> wire = tap(bus);
+        SessionService a = node("a", bus, SECRET);
+        SessionService b = node("b", bus, SECRET);
+
+        a.createOrRefresh("Steve", IP);
+        a.invalidate("Steve");
+        assertEquals(2, wire.size());
+        assertNull(b.get("Steve"));
+
+        // Те саме "створення" приходить удруге, вже після анулювання
+        bus.connect().publish(wire.get(0));
+        assertNull(b.get("Steve"));
+
+        // Вузол, якому події прийшли в зворотному порядку
+        LocalSessionBus other = new LocalSessionBus();
+        SessionService c = node("c", other, SECRET);
+        SessionTransport feed = other.connect();
+        feed.publish(wire.get(1));
+        feed.publish(wire.get(0));
+        assertNull(c.get("Steve"));
+        assertFalse(c.canResume("Steve", IP));
+    }
+
+    @Test
+    void revokeSpreadsThroughGenerations() throws Exception {
+        LocalSessionBus bus = new LocalSessionBus();
+        SessionService a = node("a", bus, SECRET);
+        SessionService b = node("b", bus, SECRET);
+
+        a.createOrRefresh("Steve", IP);
+        String cookie = a.token("Steve");
+        assertTrue(b.canResumeWithToken("Steve", IP, cookie));
+
+        // Відкликання на B робить недійсним токен, виданий на A, і на самому A
+        b.invalidate("Steve");
+        assertFalse(a.canResumeWithToken("Steve", IP, cookie));
+        assertFalse(b.canResumeWithToken("Steve", IP, cookie));
+
+        // Новий вхід на A видає токен нового покоління, який приймають обидва
+        a.createOrRefresh("Steve", IP);
+        String fresh = a.token("Steve");
+        assertNotEquals(cookie, fresh);
+        assertTrue(a.canResumeWithToken("Steve", IP, fresh));
+        assertTrue(b.canResumeWithToken("Steve", IP, fresh));
+    }
+
+    @Test
+    void unsignedOrForeignEventsAreIgnored() throws Exception {
+        LocalSessionBus bus = new LocalSessionBus();
+        SessionService a = node("a", bus, SECRET);
+        SessionService b = node("b", bus, SECRET);
+        a.createOrRefresh("Steve", IP);
+
+        long version = (System.currentTimeMillis() + 1000) << 20;
+        byte[] wipe = new SessionEvent(SessionEvent.Type.INVALIDATE, "x", "steve", version, 1, null).encode();
+        SessionTransport intruder = bus.connect();
+        intruder.publish(wipe);
+        intruder.publish(new SessionTokens(new byte[32], dir.toFile()).seal(wipe));
+        assertTrue(b.canResume("Steve", IP));
+
+        // Підпис правильний, але версія з далекого майбутнього
+        byte[] future = new SessionEvent(SessionEvent.Type.INVALIDATE, "x", "steve", Long.MAX_VALUE, 1, null).encode();
+        intruder.publish(new SessionTokens(SECRET, dir.toFile()).seal(future));
+        assertTrue(b.canResume("Steve", IP));
+    }
+
+    /** Підключає до шини слухача, що збирає всі повідомлення. */
+    private static List<byte[]> tap(LocalSessionBus bus) throws Exception {
+        List<byte[]> wire = new ArrayList<>();
+        bus.connect().start(wire::add);
+        return wire;
+    }
+
+    private SessionService node(String id, LocalSessionBus bus, byte[] secret) throws Exception {
+        File folder = dir.resolve(id).toFile();
+        assertTrue(folder.mkdirs());
+        Plugin plugin = plugin(folder);
+        AuthSettings settings = AuthSettings.load(new YamlConfiguration());
+        SessionTokens tokens = new SessionTokens(secret, folder);
+        SessionService s = new SessionService(plugin, () -> settings, new MemorySessionStore(), tokens,
+                new NetworkSessions(id, bus.connect(), tokens, plugin.getLogger()));
+        nodes.add(s);
+        return s;
+    }
+
+    /** Мінімальний {@link Plugin}: сервісу сесій потрібні лише лог і папка. */
+    private static Plugin plugin(File folder) {
+        Logger log = Logger.getLogger("BitCityAuth-test");
+        return (Plugin) Proxy.newProxyInstance(Plugin.class.getClassLoader(), new Class<?>[]{Plugin.class},
+                (proxy, m, args) -> switch (m.getName()) {
+                    case "getLogger" -> log;
+                    case "getDataFolder" -> folder;
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "TestPlugin[" + folder + "]";
+                    default -> throw new UnsupportedOperationException("Not stubbed: " + m.getName());
+                });
+    }
+
+    /** Сховище сесій у пам'яті: тест перевіряє мережу, а не файли. */
+    private static final class MemorySessionStore implements SessionStore {
+        @Override public void loadAll(Map<String, SessionRecord> into) {}
+        @Override public SessionRecord load(String key) { return null; }
+        @Override public void saveBatch(Map<String, SessionRecord> changed, Set<String> removed) {}
+        @Override public void close() {}
+    }
+}
@@ -2,3 +2,5 @@ rootProject.name = "BitCityAuthPlugin"
 
 // Багатомодульний проєкт. Включаємо підмодуль lib, з якого і збираємо jar.
 include(":lib")
+// JMH-бенчмарки; у jar плагіна не потрапляють
+include(":benchmarks")